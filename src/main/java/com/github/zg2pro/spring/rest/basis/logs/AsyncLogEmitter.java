@@ -0,0 +1,218 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.logs;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * hands the exchanges captured by the interceptors over to a background
+ * daemon thread, which formats and writes them, so a slow appender does not
+ * add to the latency of the rest calls. The exchanges wait in a bounded
+ * lock-free ring buffer, what happens when it is full is decided by the
+ * OverflowPolicy. The counters can be exposed to your monitoring.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public class AsyncLogEmitter implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncLogEmitter.class);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final BoundedRingBuffer<LoggedExchange> ring;
+    private final OverflowPolicy overflowPolicy;
+    private final Consumer<LoggedExchange> writer;
+    private final Thread consumer;
+    private final LongAdder published = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    //callers inside emit(), the writer stops once none can still publish
+    private final LongAdder emitting = new LongAdder();
+    private volatile boolean running = true;
+
+    /**
+     * starts the background writer thread
+     *
+     * @param capacity size of the ring buffer, rounded up to a power of two
+     * @param overflowPolicy what to do when the ring buffer is full
+     * @param writer formats and writes an exchange, called on the background
+     * thread only
+     */
+    public AsyncLogEmitter(int capacity, OverflowPolicy overflowPolicy, Consumer<LoggedExchange> writer) {
+        if (overflowPolicy == null || writer == null) {
+            throw new IllegalArgumentException("please provide an overflow policy and a writer");
+        }
+        this.ring = new BoundedRingBuffer<>(capacity);
+        this.overflowPolicy = overflowPolicy;
+        this.writer = writer;
+        this.consumer = new Thread(this::consume, "zg2pro-async-log-emitter");
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+    }
+
+    /**
+     * @param exchange the exchange to log
+     * @return false if the exchange was dropped
+     */
+    public boolean emit(LoggedExchange exchange) {
+        emitting.increment();
+        try {
+            return publish(exchange);
+        } finally {
+            emitting.decrement();
+        }
+    }
+
+    private boolean publish(LoggedExchange exchange) {
+        if (!running) {
+            dropped.increment();
+            return false;
+        }
+        if (ring.offer(exchange)) {
+            published.increment();
+            return true;
+        }
+        if (overflowPolicy == OverflowPolicy.BLOCK && running) {
+            blocked.increment();
+            while (running) {
+                LockSupport.parkNanos(FULL_PARK_NANOS);
+                if (ring.offer(exchange)) {
+                    published.increment();
+                    return true;
+                }
+            }
+        }
+        dropped.increment();
+        return false;
+    }
+
+    private void consume() {
+        while (running) {
+            if (!drain()) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        //a caller which saw running before close() may still be publishing,
+        //the last drain comes after all of them left emit()
+        while (true) {
+            boolean quiet = emitting.sum() == 0;
+            drain();
+            if (quiet) {
+                return;
+            }
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+        }
+    }
+
+    private boolean drain() {
+        boolean any = false;
+        LoggedExchange exchange;
+        while ((exchange = ring.poll()) != null) {
+            any = true;
+            try {
+                writer.accept(exchange);
+                written.increment();
+            } catch (RuntimeException re) {
+                failed.increment();
+                logger.warn("could not write a logged exchange", re);
+            }
+        }
+        return any;
+    }
+
+    /**
+     * @return number of exchanges accepted in the ring buffer
+     */
+    public long getPublishedCount() {
+        return published.sum();
+    }
+
+    /**
+     * @return number of exchanges lost because the ring buffer was full
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return number of times a caller thread had to wait for a free slot
+     */
+    public long getBlockedCount() {
+        return blocked.sum();
+    }
+
+    /**
+     * @return number of exchanges written by the background thread
+     */
+    public long getWrittenCount() {
+        return written.sum();
+    }
+
+    /**
+     * @return number of exchanges whose writing failed
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * @return number of exchanges waiting in the ring buffer
+     */
+    public int getPendingCount() {
+        return ring.size();
+    }
+
+    public int getCapacity() {
+        return ring.capacity();
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * stops the background thread once the pending exchanges are written,
+     * including the ones being published while close() is called, exchanges
+     * emitted afterwards are dropped
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            consumer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.logs;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import org.slf4j.event.Level;
+
+/**
+ *
+ * Tee logging interceptor whose exchanges are formatted and written by the
+ * background thread of an AsyncLogEmitter instead of the caller thread. The
+ * caller thread only takes a snapshot of the LoggedExchange and publishes it
+ * into a lock-free ring buffer.
+ *
+ * Call close() on the emitter when the interceptor is not used anymore.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public class AsyncLoggingRequestInterceptor extends TeeLoggingRequestInterceptor {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private final AsyncLogEmitter emitter;
+
+    /**
+     * UTF-8, 10000 bytes previews, DEBUG level, 1024 pending exchanges at most
+     * and exchanges dropped beyond
+     */
+    public AsyncLoggingRequestInterceptor() {
+        this(StandardCharsets.UTF_8, 10000, Level.DEBUG, DEFAULT_CAPACITY, OverflowPolicy.DROP);
+    }
+
+    /**
+     * @param encoding
+     * @param maxBodyLength the size of the previews logged, in bytes
+     * @param level
+     * @param capacity number of exchanges waiting to be written at most
+     * @param overflowPolicy what to do with an exchange when capacity is
+     * reached
+     */
+    public AsyncLoggingRequestInterceptor(Charset encoding, int maxBodyLength, Level level,
+            int capacity, OverflowPolicy overflowPolicy) {
+        super(encoding, maxBodyLength, level);
+        this.emitter = new AsyncLogEmitter(capacity, overflowPolicy, this::write);
+    }
+
+    public AsyncLogEmitter getEmitter() {
+        return emitter;
+    }
+
+    @Override
+    protected void emit(LoggedExchange exchange) {
+        emitter.emit(exchange.snapshot());
+    }
+
+}
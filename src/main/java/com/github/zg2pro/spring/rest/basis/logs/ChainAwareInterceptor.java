@@ -0,0 +1,68 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.logs;
+
+import java.net.URI;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+
+/**
+ *
+ * an interceptor telling LoggingRequestFactory what it needs from the chain,
+ * interceptors not implementing it are considered always enabled and reading
+ * the response body eagerly
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public interface ChainAwareInterceptor extends ClientHttpRequestInterceptor {
+
+    /**
+     * @return false when the interceptor would do nothing (typically its log
+     * level is disabled), if no interceptor of the chain is enabled the request
+     * is created directly by the underlying factory
+     */
+    boolean isEnabled();
+
+    /**
+     * called by LoggingRequestFactory when a request is created, on the thread
+     * which will execute it, so the interceptor can leave the chain for this
+     * request only (sampling for instance)
+     *
+     * @param uri the uri of the request
+     * @param method the http method of the request
+     * @return false when the interceptor would do nothing for this request
+     */
+    default boolean isEnabled(URI uri, HttpMethod method) {
+        return isEnabled();
+    }
+
+    /**
+     * @return true when the interceptor reads the response body before giving
+     * it back, in which case the response must be buffered so the body can be
+     * read again
+     */
+    boolean isBufferingRequired();
+
+}
@@ -0,0 +1,152 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.logs;
+
+import org.springframework.http.HttpHeaders;
+
+/**
+ *
+ * an exchange kept by the FlightRecorderInterceptor because it was slow or
+ * failed, with its headers on top of the bounded previews, and where the time
+ * went: connection, request write, time to first byte and body read. The
+ * phases are in nanoseconds, -1 when they could not be observed (connection
+ * and request write are only seen through the pooled request factory)
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public class FlightRecord extends LoggedExchange {
+
+    private final long sequence;
+    private final HttpHeaders requestHeaders;
+    private final HttpHeaders responseHeaders;
+    private final boolean failed;
+    private final String failure;
+    private final long connectNanos;
+    private final long requestNanos;
+    private final long bodyReadNanos;
+
+    /**
+     * @param sequence the number of the record since the recorder was
+     * created
+     * @param exchange the exchange captured
+     * @param requestHeaders copied
+     * @param responseHeaders copied, can be null if no response was received
+     * @param failed true when the exchange failed
+     * @param failure the message of the I/O error, null if a response was
+     * received
+     */
+    public FlightRecord(long sequence, LoggedExchange exchange,
+            HttpHeaders requestHeaders, HttpHeaders responseHeaders,
+            boolean failed, String failure) {
+        this(sequence, exchange, requestHeaders, responseHeaders, failed, failure, -1, -1, -1);
+    }
+
+    /**
+     * @param sequence the number of the record since the recorder was
+     * created
+     * @param exchange the exchange captured
+     * @param requestHeaders copied
+     * @param responseHeaders copied, can be null if no response was received
+     * @param failed true when the exchange failed
+     * @param failure the message of the I/O error, null if a response was
+     * received
+     * @param connectNanos time until a connection was ready, -1 if unknown
+     * @param requestNanos time to write the request once connected, -1 if
+     * unknown
+     * @param bodyReadNanos time spent waiting for the response body, -1 if
+     * no response was received
+     */
+    public FlightRecord(long sequence, LoggedExchange exchange,
+            HttpHeaders requestHeaders, HttpHeaders responseHeaders,
+            boolean failed, String failure,
+            long connectNanos, long requestNanos, long bodyReadNanos) {
+        super(exchange.getUri(), exchange.getMethod(), exchange.getStatus(),
+                exchange.getStartMillis(), exchange.getResponseNanos(), exchange.getTotalNanos(),
+                exchange.requestPreviewBytes(), exchange.requestPreviewLength(),
+                exchange.responsePreviewBytes(), exchange.responsePreviewLength(),
+                exchange.getThreadName());
+        this.sequence = sequence;
+        this.requestHeaders = copy(requestHeaders);
+        this.responseHeaders = copy(responseHeaders);
+        this.failed = failed;
+        this.failure = failure;
+        this.connectNanos = connectNanos;
+        this.requestNanos = requestNanos;
+        this.bodyReadNanos = bodyReadNanos;
+    }
+
+    private static HttpHeaders copy(HttpHeaders headers) {
+        HttpHeaders copy = new HttpHeaders();
+        if (headers != null) {
+            copy.putAll(headers);
+        }
+        return HttpHeaders.readOnlyHttpHeaders(copy);
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public HttpHeaders getRequestHeaders() {
+        return requestHeaders;
+    }
+
+    public HttpHeaders getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    /**
+     * @return true when the response was an error for the error handler of
+     * the recorder, or when no response was received
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    public String getFailure() {
+        return failure;
+    }
+
+    public long getConnectNanos() {
+        return connectNanos;
+    }
+
+    public long getRequestNanos() {
+        return requestNanos;
+    }
+
+    /**
+     * @return the time until the response headers were received, the same as
+     * the response time
+     */
+    public long getTimeToFirstByteNanos() {
+        return getResponseNanos();
+    }
+
+    public long getBodyReadNanos() {
+        return bodyReadNanos;
+    }
+
+}
@@ -0,0 +1,339 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.logs;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.github.zg2pro.spring.rest.basis.exceptions.RestTemplateErrorHandler;
+import com.github.zg2pro.spring.rest.basis.metrics.ExchangePhases;
+import com.github.zg2pro.spring.rest.basis.metrics.ExchangeTimings;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.ResponseErrorHandler;
+
+/**
+ *
+ * always-on interceptor keeping in memory the last exchanges which were slower
+ * than a threshold or failed, so they can be dumped after an incident without
+ * running the whole traffic in DEBUG logs. The exchanges are tracked the same
+ * way as TeeLoggingRequestInterceptor does (bounded previews, no buffering),
+ * and only the ones recorded get their headers copied.
+ *
+ * The records tell where the time went: connection and request write come
+ * from the ExchangePhases marked by the pooled request factory (the ones of
+ * the template when it tracks them, its own ones otherwise), the time to
+ * first byte and the body read are measured here.
+ *
+ * The records live in a fixed size ring, the oldest ones being overwritten.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public class FlightRecorderInterceptor implements ChainAwareInterceptor {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .enable(SerializationFeature.INDENT_OUTPUT)
+            .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+
+    private final AtomicReferenceArray<FlightRecord> ring;
+    private final AtomicLong sequence = new AtomicLong();
+    private final int maxPreviewLength;
+    private final PreviewBuffers buffers;
+    private final Charset encoding;
+    private volatile long slowThresholdNanos;
+    private volatile boolean enabled = true;
+    private ResponseErrorHandler errorHandler = new RestTemplateErrorHandler();
+    private volatile Redactor redactor;
+
+    /**
+     * keeps the last 256 exchanges slower than 1 second or failed, with 1024
+     * bytes previews decoded as UTF-8
+     */
+    public FlightRecorderInterceptor() {
+        this(256, 1000, 1024, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param capacity the number of exchanges kept
+     * @param slowThresholdMillis the exchanges lasting at least that long are
+     * recorded
+     * @param maxPreviewLength the size of the bodies previews, in bytes
+     * @param encoding used to decode the previews in the dumps
+     */
+    public FlightRecorderInterceptor(int capacity, long slowThresholdMillis, int maxPreviewLength, Charset encoding) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("please provide a capacity of at least one record");
+        }
+        if (maxPreviewLength < 0) {
+            throw new IllegalArgumentException("please provide a positive preview length");
+        }
+        if (encoding == null) {
+            throw new IllegalArgumentException("please provide an encoding");
+        }
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.maxPreviewLength = maxPreviewLength;
+        this.buffers = new PreviewBuffers(maxPreviewLength);
+        this.encoding = encoding;
+        setSlowThresholdMillis(slowThresholdMillis);
+    }
+
+    public long getSlowThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(slowThresholdNanos);
+    }
+
+    public void setSlowThresholdMillis(long slowThresholdMillis) {
+        if (slowThresholdMillis < 0) {
+            throw new IllegalArgumentException("please provide a positive threshold");
+        }
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+    }
+
+    /**
+     * @param errorHandler decides which responses are failures, by default the
+     * RestTemplateErrorHandler (4xx and 5xx)
+     */
+    public void setErrorHandler(ResponseErrorHandler errorHandler) {
+        if (errorHandler == null) {
+            throw new IllegalArgumentException("please provide an error handler");
+        }
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * @param redactor masks the sensitive json fields and headers of the
+     * records, null to keep them as they are
+     */
+    public void setRedactor(Redactor redactor) {
+        this.redactor = redactor;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return false, only a bounded preview is copied while the body is read
+     */
+    @Override
+    public boolean isBufferingRequired() {
+        return false;
+    }
+
+    public int getCapacity() {
+        return ring.length();
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        if (!enabled) {
+            return execution.execute(request, body);
+        }
+        final long startMillis = System.currentTimeMillis();
+        final long start = System.nanoTime();
+        final String threadName = Thread.currentThread().getName();
+        ExchangePhases current = ExchangePhases.current();
+        ExchangePhases own = current == null && request.getMethod() != null
+                ? ExchangePhases.start(request.getURI(), request.getMethod()) : null;
+        ExchangeTimings sent = null;
+        ClientHttpResponse response;
+        try {
+            response = execution.execute(request, body);
+        } catch (IOException ioe) {
+            long elapsed = System.nanoTime() - start;
+            sent = sent(current, own);
+            record(new LoggedExchange(request.getURI(), String.valueOf(request.getMethod()),
+                    -1, startMillis, elapsed, elapsed, body, Math.min(body.length, maxPreviewLength),
+                    body, 0, threadName), request.getHeaders(), null, true, String.valueOf(ioe.getMessage()),
+                    sent, -1);
+            throw ioe;
+        } finally {
+            if (sent == null) {
+                sent = sent(current, own);
+            }
+        }
+        final long responseNanos = System.nanoTime() - start;
+        final ExchangeTimings phases = sent;
+        final int status = response.getRawStatusCode();
+        final boolean failed = errorHandler.hasError(response);
+        final HttpHeaders responseHeaders = response.getHeaders();
+        return new TeeClientHttpResponse(response, buffers.acquire(), (preview, length, readNanos) -> {
+            try {
+                long totalNanos = System.nanoTime() - start;
+                if (failed || totalNanos >= slowThresholdNanos) {
+                    //borrows the previews, the record copies them once
+                    record(new LoggedExchange(request.getURI(), String.valueOf(request.getMethod()),
+                            status, startMillis, responseNanos, totalNanos,
+                            body, Math.min(body.length, maxPreviewLength), preview, length, threadName),
+                            request.getHeaders(), responseHeaders, failed, null, phases, readNanos);
+                }
+            } finally {
+                buffers.release(preview);
+            }
+        }, redactor);
+    }
+
+    /**
+     * @return the connection and request write seen so far, null when no
+     * phases are tracked
+     */
+    private static ExchangeTimings sent(ExchangePhases current, ExchangePhases own) {
+        if (own != null) {
+            return own.end();
+        }
+        return current == null ? null : current.snapshot();
+    }
+
+    private void record(LoggedExchange exchange, HttpHeaders requestHeaders, HttpHeaders responseHeaders,
+            boolean failed, String failure, ExchangeTimings sent, long bodyReadNanos) {
+        Redactor r = redactor;
+        if (r != null) {
+            requestHeaders = r.redact(requestHeaders);
+            responseHeaders = r.redact(responseHeaders);
+        }
+        long seq = sequence.getAndIncrement();
+        //the only copy of the borrowed previews
+        FlightRecord record = new FlightRecord(seq, exchange, requestHeaders, responseHeaders, failed, failure,
+                sent == null ? -1 : sent.getConnectNanos(), sent == null ? -1 : sent.getRequestNanos(),
+                bodyReadNanos);
+        if (r != null) {
+            //the request preview of the record is its own, masked in place
+            r.redact(record.requestPreviewBytes(), 0, record.requestPreviewLength());
+        }
+        ring.set((int) (seq % ring.length()), record);
+    }
+
+    /**
+     * @return the records currently in the ring, oldest first
+     */
+    public List<FlightRecord> getRecords() {
+        List<FlightRecord> records = new ArrayList<>(ring.length());
+        for (int i = 0; i < ring.length(); i++) {
+            FlightRecord fr = ring.get(i);
+            if (fr != null) {
+                records.add(fr);
+            }
+        }
+        records.sort(Comparator.comparingLong(FlightRecord::getSequence));
+        return records;
+    }
+
+    public void clear() {
+        for (int i = 0; i < ring.length(); i++) {
+            ring.set(i, null);
+        }
+    }
+
+    /**
+     * @return the records as a json array, oldest first
+     */
+    public String toJson() {
+        try {
+            return MAPPER.writeValueAsString(toMaps());
+        } catch (IOException ioe) {
+            throw new IllegalStateException("the flight records could not be serialized", ioe);
+        }
+    }
+
+    /**
+     * @param writer receives the records as a json array, oldest first, it is
+     * not closed
+     * @throws IOException
+     */
+    public void dump(Writer writer) throws IOException {
+        MAPPER.writeValue(writer, toMaps());
+    }
+
+    /**
+     * @param file the file to write the records to, replaced if it exists
+     * @return the file
+     * @throws IOException
+     */
+    public Path dumpToFile(Path file) throws IOException {
+        try (Writer w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            dump(w);
+        }
+        return file;
+    }
+
+    private List<Map<String, Object>> toMaps() {
+        List<Map<String, Object>> maps = new ArrayList<>();
+        for (FlightRecord fr : getRecords()) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("sequence", fr.getSequence());
+            m.put("start", fr.getStartMillis());
+            m.put("thread", fr.getThreadName());
+            m.put("method", fr.getMethod());
+            m.put("uri", fr.getUri());
+            m.put("status", fr.getStatus());
+            m.put("failed", fr.isFailed());
+            if (fr.getFailure() != null) {
+                m.put("failure", fr.getFailure());
+            }
+            m.put("response-ms", TimeUnit.NANOSECONDS.toMillis(fr.getResponseNanos()));
+            m.put("total-ms", TimeUnit.NANOSECONDS.toMillis(fr.getTotalNanos()));
+            putPhase(m, "connect-us", fr.getConnectNanos());
+            putPhase(m, "request-us", fr.getRequestNanos());
+            putPhase(m, "first-byte-us", fr.getTimeToFirstByteNanos());
+            putPhase(m, "body-read-us", fr.getBodyReadNanos());
+            m.put("request-headers", fr.getRequestHeaders());
+            m.put("request-preview", encoding.decode(fr.getRequestPreview()).toString());
+            m.put("response-headers", fr.getResponseHeaders());
+            m.put("response-preview", encoding.decode(fr.getResponsePreview()).toString());
+            maps.add(m);
+        }
+        return maps;
+    }
+
+    /**
+     * the phases are often under a millisecond, the unknown ones are left out
+     */
+    private static void putPhase(Map<String, Object> m, String key, long nanos) {
+        if (nanos >= 0) {
+            m.put(key, TimeUnit.NANOSECONDS.toMicros(nanos));
+        }
+    }
+
+}
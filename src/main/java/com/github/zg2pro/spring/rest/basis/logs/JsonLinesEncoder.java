@@ -0,0 +1,369 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.logs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ *
+ * encodes a LoggedExchange as one json line, directly as UTF-8 bytes into a
+ * buffer reused by the thread, no String is built on the way: numbers are
+ * written digit by digit, the previews are escaped byte by byte when they are
+ * UTF-8 (or ASCII), decoded into a reused CharBuffer otherwise. A multi-byte
+ * character cut at the end of a UTF-8 preview is left out, the malformed
+ * bytes (binary or gzip bodies) become U+FFFD so the line stays valid json.
+ *
+ * {"start":1497543876123,"thread":"main","method":"GET","uri":"http://...",
+ * "status":200,"response-us":1250,"total-us":1310,"request":"...",
+ * "response":"..."}
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public class JsonLinesEncoder {
+
+    private static final int INITIAL_CAPACITY = 4096;
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] START = ascii("{\"start\":");
+    private static final byte[] THREAD = ascii(",\"thread\":");
+    private static final byte[] METHOD = ascii(",\"method\":");
+    private static final byte[] URI = ascii(",\"uri\":");
+    private static final byte[] STATUS = ascii(",\"status\":");
+    private static final byte[] RESPONSE_US = ascii(",\"response-us\":");
+    private static final byte[] TOTAL_US = ascii(",\"total-us\":");
+    private static final byte[] REQUEST = ascii(",\"request\":");
+    private static final byte[] RESPONSE = ascii(",\"response\":");
+    private static final byte[] END = ascii("}\n");
+    private static final byte[] NULL = ascii("null");
+
+    private final Charset bodyEncoding;
+    private final boolean utf8Body;
+    private final ThreadLocal<Buffer> buffers = ThreadLocal.withInitial(Buffer::new);
+
+    /**
+     * @param bodyEncoding the encoding of the bodies previews
+     */
+    public JsonLinesEncoder(Charset bodyEncoding) {
+        if (bodyEncoding == null) {
+            throw new IllegalArgumentException("please provide the encoding of the bodies");
+        }
+        this.bodyEncoding = bodyEncoding;
+        this.utf8Body = StandardCharsets.UTF_8.equals(bodyEncoding)
+                || StandardCharsets.US_ASCII.equals(bodyEncoding);
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * writes the json line of the exchange, new line included
+     *
+     * @param exchange the exchange to encode
+     * @param os receives the line in one write() call
+     * @throws IOException
+     */
+    public void writeTo(LoggedExchange exchange, OutputStream os) throws IOException {
+        Buffer b = encode(exchange);
+        os.write(b.bytes, 0, b.length);
+    }
+
+    /**
+     * @param exchange the exchange to encode
+     * @return the json line, without the new line
+     */
+    public String toString(LoggedExchange exchange) {
+        Buffer b = encode(exchange);
+        return new String(b.bytes, 0, b.length - 1, StandardCharsets.UTF_8);
+    }
+
+    Buffer encode(LoggedExchange e) {
+        Buffer b = buffers.get();
+        b.length = 0;
+        b.append(START);
+        b.appendLong(e.getStartMillis());
+        b.append(THREAD);
+        b.appendString(e.getThreadName());
+        b.append(METHOD);
+        b.appendString(e.getMethod());
+        b.append(URI);
+        b.appendString(e.getUri());
+        b.append(STATUS);
+        b.appendLong(e.getStatus());
+        b.append(RESPONSE_US);
+        b.appendLong(e.getResponseNanos() / 1000);
+        b.append(TOTAL_US);
+        b.appendLong(e.getTotalNanos() / 1000);
+        b.append(REQUEST);
+        appendBody(b, e.requestPreviewBytes(), e.requestPreviewLength());
+        b.append(RESPONSE);
+        appendBody(b, e.responsePreviewBytes(), e.responsePreviewLength());
+        b.append(END);
+        return b;
+    }
+
+    private void appendBody(Buffer b, byte[] body, int length) {
+        if (utf8Body) {
+            b.appendUtf8(body, completeLength(body, length));
+        } else {
+            b.appendDecoded(body, length, bodyEncoding);
+        }
+    }
+
+    /**
+     * @return the length of the preview without the multi-byte sequence cut
+     * at its end, if any
+     */
+    static int completeLength(byte[] utf8, int length) {
+        //at most 3 continuation bytes before the leading byte
+        for (int i = length - 1; i >= 0 && i >= length - 4; i--) {
+            int c = utf8[i] & 0xff;
+            if (c < 0x80) {
+                return length;
+            }
+            if (c >= 0xc0) {
+                int expected = c >= 0xf0 ? 4 : c >= 0xe0 ? 3 : 2;
+                return length - i >= expected ? length : i;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * growable byte array kept by a thread
+     */
+    static final class Buffer {
+
+        private byte[] bytes = new byte[INITIAL_CAPACITY];
+        private int length;
+        private CharsetDecoder decoder;
+        private CharBuffer chars;
+
+        int length() {
+            return length;
+        }
+
+        byte[] bytes() {
+            return bytes;
+        }
+
+        private void ensure(int more) {
+            if (length + more > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + more));
+            }
+        }
+
+        private void append(byte[] ascii) {
+            ensure(ascii.length);
+            System.arraycopy(ascii, 0, bytes, length, ascii.length);
+            length += ascii.length;
+        }
+
+        private void appendLong(long v) {
+            ensure(20);
+            if (v < 0) {
+                bytes[length++] = '-';
+                if (v == Long.MIN_VALUE) {
+                    //cannot be negated, never a duration anyway
+                    v = Long.MAX_VALUE;
+                } else {
+                    v = -v;
+                }
+            }
+            int digits = 1;
+            for (long p = v; p >= 10; p /= 10) {
+                digits++;
+            }
+            for (int i = length + digits - 1; i >= length; i--) {
+                bytes[i] = (byte) ('0' + (v % 10));
+                v /= 10;
+            }
+            length += digits;
+        }
+
+        private void appendUtf8(byte[] utf8, int len) {
+            ensure(len * 6 + 2);
+            bytes[length++] = '"';
+            for (int i = 0; i < len; i++) {
+                int c = utf8[i] & 0xff;
+                if (c < 0x80) {
+                    appendAscii(c);
+                    continue;
+                }
+                int n = sequenceLength(utf8, i, len);
+                if (n == 0) {
+                    //binary or another charset, same as CodingErrorAction.REPLACE
+                    bytes[length++] = (byte) 0xef;
+                    bytes[length++] = (byte) 0xbf;
+                    bytes[length++] = (byte) 0xbd;
+                } else {
+                    //well-formed sequences are copied as they are
+                    System.arraycopy(utf8, i, bytes, length, n);
+                    length += n;
+                    i += n - 1;
+                }
+            }
+            bytes[length++] = '"';
+        }
+
+        /**
+         * @return the length of the well-formed multi-byte sequence starting
+         * at i, 0 if it is malformed (no overlong forms nor surrogates)
+         */
+        private static int sequenceLength(byte[] utf8, int i, int len) {
+            int c = utf8[i] & 0xff;
+            int n;
+            int min = 0x80;
+            int max = 0xbf;
+            if (c >= 0xc2 && c <= 0xdf) {
+                n = 2;
+            } else if (c >= 0xe0 && c <= 0xef) {
+                n = 3;
+                if (c == 0xe0) {
+                    min = 0xa0;
+                } else if (c == 0xed) {
+                    max = 0x9f;
+                }
+            } else if (c >= 0xf0 && c <= 0xf4) {
+                n = 4;
+                if (c == 0xf0) {
+                    min = 0x90;
+                } else if (c == 0xf4) {
+                    max = 0x8f;
+                }
+            } else {
+                return 0;
+            }
+            if (i + n > len) {
+                return 0;
+            }
+            int second = utf8[i + 1] & 0xff;
+            if (second < min || second > max) {
+                return 0;
+            }
+            for (int k = 2; k < n; k++) {
+                if ((utf8[i + k] & 0xc0) != 0x80) {
+                    return 0;
+                }
+            }
+            return n;
+        }
+
+        private void appendDecoded(byte[] body, int bodyLength, Charset charset) {
+            if (decoder == null || !decoder.charset().equals(charset)) {
+                decoder = charset.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            }
+            int maxChars = (int) Math.ceil(bodyLength * (double) decoder.maxCharsPerByte());
+            if (chars == null || chars.capacity() < maxChars) {
+                chars = CharBuffer.allocate(Math.max(maxChars, 256));
+            }
+            chars.clear();
+            decoder.reset();
+            decoder.decode(ByteBuffer.wrap(body, 0, bodyLength), chars, true);
+            decoder.flush(chars);
+            chars.flip();
+            appendString(chars);
+        }
+
+        private void appendString(CharSequence s) {
+            if (s == null) {
+                append(NULL);
+                return;
+            }
+            ensure(s.length() * 6 + 2);
+            bytes[length++] = '"';
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    appendAscii(c);
+                } else if (c < 0x800) {
+                    bytes[length++] = (byte) (0xc0 | (c >> 6));
+                    bytes[length++] = (byte) (0x80 | (c & 0x3f));
+                } else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+                        && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    bytes[length++] = (byte) (0xf0 | (cp >> 18));
+                    bytes[length++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                    bytes[length++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                    bytes[length++] = (byte) (0x80 | (cp & 0x3f));
+                } else if (Character.isSurrogate(c)) {
+                    //lone surrogate, not encodable
+                    bytes[length++] = '?';
+                } else {
+                    bytes[length++] = (byte) (0xe0 | (c >> 12));
+                    bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    bytes[length++] = (byte) (0x80 | (c & 0x3f));
+                }
+            }
+            bytes[length++] = '"';
+        }
+
+        private void appendAscii(int c) {
+            switch (c) {
+                case '"':
+                    bytes[length++] = '\\';
+                    bytes[length++] = '"';
+                    break;
+                case '\\':
+                    bytes[length++] = '\\';
+                    bytes[length++] = '\\';
+                    break;
+                case '\n':
+                    bytes[length++] = '\\';
+                    bytes[length++] = 'n';
+                    break;
+                case '\r':
+                    bytes[length++] = '\\';
+                    bytes[length++] = 'r';
+                    break;
+                case '\t':
+                    bytes[length++] = '\\';
+                    bytes[length++] = 't';
+                    break;
+                default:
+                    if (c < 0x20 || c == 0x7f) {
+                        bytes[length++] = '\\';
+                        bytes[length++] = 'u';
+                        bytes[length++] = '0';
+                        bytes[length++] = '0';
+                        bytes[length++] = HEX[c >> 4];
+                        bytes[length++] = HEX[c & 0xf];
+                    } else {
+                        bytes[length++] = (byte) c;
+                    }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.logs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import org.slf4j.event.Level;
+
+/**
+ *
+ * Tee logging interceptor writing each exchange as one json line (see
+ * JsonLinesEncoder) instead of the banner lines. With an OutputStream sink
+ * (a FileOutputStream, a socket...) the line is written as bytes and the
+ * encoding does not allocate, the rest of the path only a few small wrappers
+ * per exchange, the previews being reused; without sink it is logged as a
+ * single event, which costs one String per exchange.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public class JsonLinesLoggingRequestInterceptor extends TeeLoggingRequestInterceptor {
+
+    private final JsonLinesEncoder encoder;
+    private final OutputStream sink;
+
+    /**
+     * UTF-8 previews of 10000 bytes, logged at DEBUG level
+     */
+    public JsonLinesLoggingRequestInterceptor() {
+        super();
+        this.encoder = new JsonLinesEncoder(getEncoding());
+        this.sink = null;
+    }
+
+    /**
+     * @param encoding
+     * @param maxBodyLength the size of the previews, in bytes
+     * @param level the log level, also the level enabling the interceptor when
+     * there is a sink
+     * @param sink receives the json lines, null to send them to the logger
+     */
+    public JsonLinesLoggingRequestInterceptor(Charset encoding, int maxBodyLength, Level level, OutputStream sink) {
+        super(encoding, maxBodyLength, level);
+        this.encoder = new JsonLinesEncoder(encoding);
+        this.sink = sink;
+    }
+
+    public JsonLinesEncoder getEncoder() {
+        return encoder;
+    }
+
+    @Override
+    protected void write(LoggedExchange exchange) {
+        if (sink == null) {
+            log("{}", encoder.toString(exchange));
+            return;
+        }
+        try {
+            //one write per line, lines of concurrent exchanges do not mix
+            synchronized (sink) {
+                encoder.writeTo(exchange, sink);
+            }
+        } catch (IOException ioe) {
+            //the exchange itself must not fail because of its log
+            log("json line of {} could not be written: {}", exchange.getUri(), ioe.getMessage());
+        }
+    }
+
+}
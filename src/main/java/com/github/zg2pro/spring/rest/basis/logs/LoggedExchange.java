@@ -0,0 +1,187 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.logs;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ *
+ * immutable snapshot of a request/response exchange, captured on the caller
+ * thread and logged later on, possibly by another thread. The bodies are only
+ * kept as bounded previews.
+ *
+ * The tee interceptors hand over exchanges which borrow their previews from
+ * the arrays reused by the thread: they are valid until emit() returns, call
+ * snapshot() to keep one longer.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public class LoggedExchange {
+
+    private final URI uriRef;
+    //built from uriRef the first time it is asked for
+    private String uri;
+    private final String method;
+    private final int status;
+    private final long startMillis;
+    private final long responseNanos;
+    private final long totalNanos;
+    private final byte[] requestPreview;
+    private final int requestPreviewLength;
+    private final byte[] responsePreview;
+    private final int responsePreviewLength;
+    private final String threadName;
+    private final boolean borrowed;
+
+    /**
+     * @param uri the uri called
+     * @param method the http method
+     * @param status the raw http status, -1 if no response was received
+     * @param startMillis epoch time at which the request started
+     * @param responseNanos time until the response status and headers
+     * @param totalNanos time until the response body was read and closed
+     * @param requestPreview request body preview, copied
+     * @param requestPreviewLength number of bytes of the request preview
+     * @param responsePreview response body preview, copied
+     * @param responsePreviewLength number of bytes of the response preview
+     * @param threadName the caller thread
+     */
+    public LoggedExchange(String uri, String method, int status, long startMillis,
+            long responseNanos, long totalNanos,
+            byte[] requestPreview, int requestPreviewLength,
+            byte[] responsePreview, int responsePreviewLength,
+            String threadName) {
+        this(null, uri, method, status, startMillis, responseNanos, totalNanos,
+                Arrays.copyOf(requestPreview, requestPreviewLength), requestPreviewLength,
+                Arrays.copyOf(responsePreview, responsePreviewLength), responsePreviewLength,
+                threadName, false);
+    }
+
+    /**
+     * an exchange borrowing its previews, which are not copied
+     */
+    LoggedExchange(URI uri, String method, int status, long startMillis,
+            long responseNanos, long totalNanos,
+            byte[] requestPreview, int requestPreviewLength,
+            byte[] responsePreview, int responsePreviewLength,
+            String threadName) {
+        this(uri, null, method, status, startMillis, responseNanos, totalNanos,
+                requestPreview, requestPreviewLength, responsePreview, responsePreviewLength,
+                threadName, true);
+    }
+
+    private LoggedExchange(URI uriRef, String uri, String method, int status, long startMillis,
+            long responseNanos, long totalNanos,
+            byte[] requestPreview, int requestPreviewLength,
+            byte[] responsePreview, int responsePreviewLength,
+            String threadName, boolean borrowed) {
+        this.uriRef = uriRef;
+        this.uri = uri;
+        this.method = method;
+        this.status = status;
+        this.startMillis = startMillis;
+        this.responseNanos = responseNanos;
+        this.totalNanos = totalNanos;
+        this.requestPreview = requestPreview;
+        this.requestPreviewLength = requestPreviewLength;
+        this.responsePreview = responsePreview;
+        this.responsePreviewLength = responsePreviewLength;
+        this.threadName = threadName;
+        this.borrowed = borrowed;
+    }
+
+    /**
+     * @return this exchange if it owns its previews, a copy of it otherwise,
+     * to keep it after emit() returned
+     */
+    public LoggedExchange snapshot() {
+        if (!borrowed) {
+            return this;
+        }
+        return new LoggedExchange(getUri(), method, status, startMillis, responseNanos, totalNanos,
+                requestPreview, requestPreviewLength, responsePreview, responsePreviewLength, threadName);
+    }
+
+    public String getUri() {
+        String s = uri;
+        if (s == null) {
+            //racy but idempotent, as String.hashCode()
+            s = String.valueOf(uriRef);
+            uri = s;
+        }
+        return s;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public long getResponseNanos() {
+        return responseNanos;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public ByteBuffer getRequestPreview() {
+        return ByteBuffer.wrap(requestPreview, 0, requestPreviewLength).asReadOnlyBuffer();
+    }
+
+    public ByteBuffer getResponsePreview() {
+        return ByteBuffer.wrap(responsePreview, 0, responsePreviewLength).asReadOnlyBuffer();
+    }
+
+    public String getThreadName() {
+        return threadName;
+    }
+
+    byte[] requestPreviewBytes() {
+        return requestPreview;
+    }
+
+    int requestPreviewLength() {
+        return requestPreviewLength;
+    }
+
+    byte[] responsePreviewBytes() {
+        return responsePreview;
+    }
+
+    int responsePreviewLength() {
+        return responsePreviewLength;
+    }
+
+}
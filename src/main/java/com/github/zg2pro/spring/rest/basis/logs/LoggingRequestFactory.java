@@ -23,10 +23,20 @@
  */
 package com.github.zg2pro.spring.rest.basis.logs;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
 import java.util.List;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.BufferingClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequest;
 import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.http.client.InterceptingClientHttpRequestFactory;
+import org.springframework.web.client.ResourceAccessException;
 
 /**
  *
@@ -34,13 +44,138 @@ import org.springframework.http.client.InterceptingClientHttpRequestFactory;
  * rest requests and responses will be logged (as long as you set your log
  * levels correctly)
  *
+ * The chain is adapted to its interceptors at each request: responses are
+ * buffered only if an interceptor enabled for this request requires it, and
+ * when no interceptor is enabled the request is created by the underlying
+ * factory directly.
+ *
+ * The sampling decisions of the LoggingRequestInterceptors are carried by the
+ * request they were taken for, and given back to the interceptors only while
+ * this request executes, so a request created but never executed leaves no
+ * decision behind for the next one.
+ *
  * @author zg2pro
  * @since 0.2
  */
 public class LoggingRequestFactory extends InterceptingClientHttpRequestFactory {
 
+    private final List<ClientHttpRequestInterceptor> interceptors;
+    private final ClientHttpRequestFactory bufferingRequestFactory;
+
+    /**
+     * @param requestFactory the factory opening the connections, it should
+     * not be buffering already
+     * @param interceptors the interceptors, ChainAwareInterceptor instances
+     * tell whether they are enabled and need buffering
+     */
     protected LoggingRequestFactory(ClientHttpRequestFactory requestFactory, List<ClientHttpRequestInterceptor> interceptors) {
         super(requestFactory, interceptors);
+        this.interceptors = interceptors;
+        this.bufferingRequestFactory = new BufferingClientHttpRequestFactory(requestFactory);
+    }
+
+    @Override
+    protected ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod, ClientHttpRequestFactory requestFactory) {
+        boolean enabled = false;
+        boolean buffering = false;
+        List<LoggingRequestInterceptor> deciders = null;
+        List<LoggingRules.Decision> decisions = null;
+        if (interceptors != null) {
+            for (ClientHttpRequestInterceptor interceptor : interceptors) {
+                if (!(interceptor instanceof ChainAwareInterceptor)) {
+                    enabled = true;
+                    buffering = true;
+                    continue;
+                }
+                boolean interceptorEnabled = ((ChainAwareInterceptor) interceptor).isEnabled(uri, httpMethod);
+                if (interceptor instanceof LoggingRequestInterceptor) {
+                    LoggingRules.Decision decision = ((LoggingRequestInterceptor) interceptor).takeDecision();
+                    if (decision != null) {
+                        if (deciders == null) {
+                            deciders = new ArrayList<>(2);
+                            decisions = new ArrayList<>(2);
+                        }
+                        deciders.add((LoggingRequestInterceptor) interceptor);
+                        decisions.add(decision);
+                    }
+                }
+                if (interceptorEnabled) {
+                    enabled = true;
+                    buffering |= ((ChainAwareInterceptor) interceptor).isBufferingRequired();
+                }
+            }
+        }
+        if (enabled) {
+            ClientHttpRequest request = super.createRequest(uri, httpMethod,
+                    buffering ? bufferingRequestFactory : requestFactory);
+            return deciders == null ? request : new InterceptingDecidedRequest(request, deciders, decisions);
+        }
+        try {
+            return requestFactory.createRequest(uri, httpMethod);
+        } catch (IOException ex) {
+            //the overridden signature does not allow IOException, same message
+            //as the one RestTemplate would have thrown
+            throw new ResourceAccessException("I/O error on " + httpMethod.name()
+                    + " request for \"" + uri + "\": " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * the intercepting request carrying the decisions of its logging
+     * interceptors, set on the executing thread during execute() only
+     */
+    private static final class InterceptingDecidedRequest implements ClientHttpRequest {
+
+        private final ClientHttpRequest request;
+        private final List<LoggingRequestInterceptor> deciders;
+        private final List<LoggingRules.Decision> decisions;
+
+        InterceptingDecidedRequest(ClientHttpRequest request, List<LoggingRequestInterceptor> deciders,
+                List<LoggingRules.Decision> decisions) {
+            this.request = request;
+            this.deciders = deciders;
+            this.decisions = decisions;
+        }
+
+        @Override
+        public ClientHttpResponse execute() throws IOException {
+            for (int i = 0; i < deciders.size(); i++) {
+                deciders.get(i).setPendingDecision(decisions.get(i));
+            }
+            try {
+                return request.execute();
+            } finally {
+                //normally taken by intercept() already
+                for (LoggingRequestInterceptor decider : deciders) {
+                    decider.setPendingDecision(null);
+                }
+            }
+        }
+
+        @Override
+        public OutputStream getBody() throws IOException {
+            return request.getBody();
+        }
+
+        @Override
+        public String getMethodValue() {
+            return request.getMethodValue();
+        }
+
+        @Override
+        public HttpMethod getMethod() {
+            return request.getMethod();
+        }
+
+        @Override
+        public URI getURI() {
+            return request.getURI();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return request.getHeaders();
+        }
     }
 
 }
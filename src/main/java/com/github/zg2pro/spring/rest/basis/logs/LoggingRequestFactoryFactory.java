@@ -25,7 +25,7 @@ package com.github.zg2pro.spring.rest.basis.logs;
 
 import java.util.ArrayList;
 import java.util.List;
-import org.springframework.http.client.BufferingClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
 import org.springframework.http.client.SimpleClientHttpRequestFactory;
 
@@ -49,14 +49,41 @@ public class LoggingRequestFactoryFactory {
         return interceptorToRequestFactory(lri);
     }
 
+    /**
+     * same as build(lri) but the requests are finally executed by the given
+     * factory, for instance a pooled one from PooledRequestFactoryFactory
+     *
+     * @param lri the logging interceptor
+     * @param requestFactory the factory actually opening the connections
+     * @return the logging request factory
+     */
+    public static LoggingRequestFactory build(LoggingRequestInterceptor lri, ClientHttpRequestFactory requestFactory) {
+        return interceptorToRequestFactory(lri, requestFactory);
+    }
+
+    /**
+     * builds the chain of a whole list of interceptors, the list is kept by
+     * reference so interceptors added later are taken into account
+     *
+     * @param lInterceptors the interceptors
+     * @param requestFactory the factory actually opening the connections
+     * @return the logging request factory
+     */
+    public static LoggingRequestFactory build(List<ClientHttpRequestInterceptor> lInterceptors,
+            ClientHttpRequestFactory requestFactory) {
+        return new LoggingRequestFactory(requestFactory, lInterceptors);
+    }
+
     private static LoggingRequestFactory interceptorToRequestFactory(LoggingRequestInterceptor lri) {
-        List<ClientHttpRequestInterceptor> lInterceptors = new ArrayList<>();
-        lInterceptors.add(lri);
         SimpleClientHttpRequestFactory chrf = new SimpleClientHttpRequestFactory();
         chrf.setOutputStreaming(false);
-        return new LoggingRequestFactory(
-                new BufferingClientHttpRequestFactory(chrf),
-                lInterceptors
-        );
+        return interceptorToRequestFactory(lri, chrf);
+    }
+
+    private static LoggingRequestFactory interceptorToRequestFactory(LoggingRequestInterceptor lri,
+            ClientHttpRequestFactory requestFactory) {
+        List<ClientHttpRequestInterceptor> lInterceptors = new ArrayList<>();
+        lInterceptors.add(lri);
+        return new LoggingRequestFactory(requestFactory, lInterceptors);
     }
 }
@@ -27,18 +27,15 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.net.URI;
+import java.util.Arrays;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import org.springframework.http.client.ClientHttpRequestInterceptor;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.event.Level;
-import static org.slf4j.event.Level.DEBUG;
-import static org.slf4j.event.Level.ERROR;
-import static org.slf4j.event.Level.INFO;
-import static org.slf4j.event.Level.TRACE;
-import static org.slf4j.event.Level.WARN;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpRequest;
 import org.springframework.http.client.ClientHttpRequestExecution;
 import org.springframework.http.client.ClientHttpResponse;
@@ -49,9 +46,12 @@ import org.springframework.util.StringUtils;
  * Use this class as an interceptor to log every request and response used by
  * your RestTemplate
  *
+ * The log level of the logger is checked at each request, and the requests
+ * logged can be sampled with LoggingRules, which can be replaced at runtime
+ *
  * @author zg2pro
  */
-public class LoggingRequestInterceptor implements ClientHttpRequestInterceptor {
+public class LoggingRequestInterceptor implements ChainAwareInterceptor {
 
     private static final int BUFFER_LENGTH = 16;
     private static final int MARK_LENGTH = 24 * BUFFER_LENGTH;
@@ -60,27 +60,17 @@ public class LoggingRequestInterceptor implements ClientHttpRequestInterceptor {
     private static final Level DEFAULT_LEVEL = Level.DEBUG;
 
     private final static Logger logger = LoggerFactory.getLogger(LoggingRequestInterceptor.class);
-    private final static Level loggerLevel = loggerLevel();
 
     private final Charset encoding;
     private final int maxBodyLength;
     private final Level lriLevel;
+    private volatile LoggingRules rules = LoggingRules.logAll();
+    private volatile Redactor redactor;
+    //decision taken when the request was created, set by LoggingRequestFactory
+    //only while the request executes
+    private final ThreadLocal<LoggingRules.Decision> pendingDecision = new ThreadLocal<>();
 
-    private static Level loggerLevel() {
-        if (logger.isTraceEnabled()) {
-            return TRACE;
-        } else if (logger.isDebugEnabled()) {
-            return DEBUG;
-        } else if (logger.isInfoEnabled()) {
-            return INFO;
-        } else if (logger.isWarnEnabled()) {
-            return WARN;
-        } else {
-            return ERROR;
-        }
-    }
-
-    private void log(String txt, Object... args) {
+    protected void log(String txt, Object... args) {
         switch (lriLevel) {
             case TRACE:
                 logger.trace(txt, args);
@@ -134,13 +124,153 @@ public class LoggingRequestInterceptor implements ClientHttpRequestInterceptor {
         this.lriLevel = level;
     }
 
+    protected Charset getEncoding() {
+        return encoding;
+    }
+
+    protected int getMaxBodyLength() {
+        return maxBodyLength;
+    }
+
+    public LoggingRules getRules() {
+        return rules;
+    }
+
+    /**
+     * @param rules the sampling rules, applied from the next request on
+     */
+    public void setRules(LoggingRules rules) {
+        if (rules == null) {
+            throw new IllegalArgumentException("please provide logging rules, LoggingRules.logAll() to log everything");
+        }
+        this.rules = rules;
+    }
+
+    public Redactor getRedactor() {
+        return redactor;
+    }
+
+    /**
+     * @param redactor masks the sensitive json fields of the bodies logged,
+     * null to log the bodies as they are
+     */
+    public void setRedactor(Redactor redactor) {
+        this.redactor = redactor;
+    }
+
+    /**
+     * @param body a body to log
+     * @param length the length of its preview
+     * @return the body itself without redactor, a masked copy of the preview
+     * otherwise
+     */
+    protected byte[] redactedPreview(byte[] body, int length) {
+        Redactor r = redactor;
+        if (r == null) {
+            return body;
+        }
+        byte[] copy = Arrays.copyOf(body, length);
+        r.redact(copy, 0, length);
+        return copy;
+    }
+
+    /**
+     * @return true when the logger currently accepts the level of this
+     * interceptor
+     */
+    @Override
+    public boolean isEnabled() {
+        switch (lriLevel) {
+            case TRACE:
+                return logger.isTraceEnabled();
+            case DEBUG:
+                return logger.isDebugEnabled();
+            case INFO:
+                return logger.isInfoEnabled();
+            case WARN:
+                return logger.isWarnEnabled();
+            default:
+                return logger.isErrorEnabled();
+        }
+    }
+
+    /**
+     * the sampling decision is taken here, LoggingRequestFactory takes it
+     * with takeDecision() and carries it on the request
+     */
+    @Override
+    public boolean isEnabled(URI uri, HttpMethod method) {
+        LoggingRules.Decision decision = isEnabled() ? rules.decide(uri) : LoggingRules.Decision.SKIP;
+        pendingDecision.set(decision);
+        return decision != LoggingRules.Decision.SKIP;
+    }
+
+    /**
+     * @return the decision taken by the last isEnabled(uri, method) of the
+     * thread, no more pending afterwards
+     */
+    LoggingRules.Decision takeDecision() {
+        LoggingRules.Decision decision = pendingDecision.get();
+        pendingDecision.remove();
+        return decision;
+    }
+
+    /**
+     * @param decision the decision of the request about to be executed on
+     * this thread, null to clear it
+     */
+    void setPendingDecision(LoggingRules.Decision decision) {
+        if (decision == null) {
+            pendingDecision.remove();
+        } else {
+            pendingDecision.set(decision);
+        }
+    }
+
+    /**
+     * @param request the request intercepted
+     * @return the decision taken when the request was created, or a new one
+     * if the interceptor is used outside of a LoggingRequestFactory
+     */
+    protected LoggingRules.Decision decision(HttpRequest request) {
+        LoggingRules.Decision decision = pendingDecision.get();
+        if (decision != null) {
+            pendingDecision.remove();
+            return decision;
+        }
+        return isEnabled() ? rules.decide(request.getURI()) : LoggingRules.Decision.SKIP;
+    }
+
+    /**
+     * @param response the response received
+     * @return true for the 4xx and 5xx replies
+     * @throws IOException
+     */
+    protected static boolean isError(ClientHttpResponse response) throws IOException {
+        return response.getRawStatusCode() >= 400;
+    }
+
+    /**
+     * @return true, the response body is read entirely to be logged then read
+     * again by the RestTemplate
+     */
+    @Override
+    public boolean isBufferingRequired() {
+        return true;
+    }
+
     @Override
     public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
-        boolean mustLog = loggerLevel.compareTo(lriLevel) > -1;
+        LoggingRules.Decision decision = decision(request);
+        boolean mustLog = decision == LoggingRules.Decision.LOG;
         if (mustLog) {
             traceRequest(request, body);
         }
         ClientHttpResponse response = execution.execute(request, body);
+        if (!mustLog && decision == LoggingRules.Decision.ERRORS_ONLY && isError(response)) {
+            traceRequest(request, body);
+            mustLog = true;
+        }
         if (mustLog) {
             traceResponse(response);
         }
@@ -152,7 +282,7 @@ public class LoggingRequestInterceptor implements ClientHttpRequestInterceptor {
         log("URI : {}", request.getURI());
         log("Method : {}", request.getMethod());
         if (body.length < maxBodyLength) {
-            log("Request Body : {}", new String(body, encoding));
+            log("Request Body : {}", new String(redactedPreview(body, body.length), encoding));
         }
         log("==========================request end================================================");
     }
@@ -210,7 +340,12 @@ public class LoggingRequestInterceptor implements ClientHttpRequestInterceptor {
             inputStringBuilder.append("...");
         }
         bufferedReader.reset();
-        log(inputStringBuilder.toString());
+        if (redactor == null) {
+            log(inputStringBuilder.toString());
+        } else {
+            byte[] logged = inputStringBuilder.toString().getBytes(encoding);
+            log(new String(redactedPreview(logged, logged.length), encoding));
+        }
     }
 
 }
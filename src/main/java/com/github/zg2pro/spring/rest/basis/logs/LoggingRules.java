@@ -0,0 +1,309 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.logs;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ *
+ * immutable sampling rules of the logging interceptors: log 1 request in N,
+ * possibly overridden per host and/or path prefix, and optionally log every
+ * error reply whatever the sampling. The rules are compiled once into lookup
+ * arrays so a decision costs a hash lookup and a few prefix comparisons.
+ *
+ * The most specific override wins: host and longest path prefix, then host
+ * only, then longest path prefix on any host, then the default sampling.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public final class LoggingRules {
+
+    /**
+     * what the interceptor does with a request
+     */
+    public enum Decision {
+        /**
+         * the exchange is logged
+         */
+        LOG,
+        /**
+         * the exchange is logged only if the response is an error
+         */
+        ERRORS_ONLY,
+        /**
+         * the exchange is not logged
+         */
+        SKIP
+    }
+
+    private static final Rule[] NO_RULE = new Rule[0];
+    private static final LoggingRules LOG_ALL = new Builder().build();
+
+    private final int sampleEvery;
+    private final boolean alwaysLogErrors;
+    private final List<Rule> overrides;
+    private final Map<String, Rule[]> byHost;
+    private final Rule[] anyHost;
+
+    private LoggingRules(Builder builder) {
+        this.sampleEvery = builder.sampleEvery;
+        this.alwaysLogErrors = builder.alwaysLogErrors;
+        this.overrides = Collections.unmodifiableList(new ArrayList<>(builder.overrides));
+        Map<String, List<Rule>> hosts = new HashMap<>();
+        List<Rule> any = new ArrayList<>();
+        for (Rule r : overrides) {
+            if (r.host == null) {
+                any.add(r);
+            } else {
+                hosts.computeIfAbsent(r.host, h -> new ArrayList<>()).add(r);
+            }
+        }
+        this.byHost = new HashMap<>();
+        for (Map.Entry<String, List<Rule>> e : hosts.entrySet()) {
+            byHost.put(e.getKey(), longestPrefixFirst(e.getValue()));
+        }
+        this.anyHost = longestPrefixFirst(any);
+    }
+
+    private static Rule[] longestPrefixFirst(List<Rule> rules) {
+        Rule[] sorted = rules.toArray(NO_RULE);
+        //a host rule without prefix has an empty one, it comes last
+        Arrays.sort(sorted, Comparator.comparingInt((Rule r) -> r.pathPrefix.length()).reversed());
+        return sorted;
+    }
+
+    /**
+     * @return the rules logging every request, the behaviour of the
+     * interceptors before sampling existed
+     */
+    public static LoggingRules logAll() {
+        return LOG_ALL;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return a builder initialized with these rules
+     */
+    public Builder toBuilder() {
+        Builder b = new Builder().sampleEvery(sampleEvery).alwaysLogErrors(alwaysLogErrors);
+        b.overrides.addAll(overrides);
+        return b;
+    }
+
+    public int getSampleEvery() {
+        return sampleEvery;
+    }
+
+    public boolean isAlwaysLogErrors() {
+        return alwaysLogErrors;
+    }
+
+    public List<Rule> getOverrides() {
+        return overrides;
+    }
+
+    /**
+     * @param uri the uri of the request
+     * @return what to do with the request
+     */
+    public Decision decide(URI uri) {
+        return sample(sampleEvery(uri)) ? Decision.LOG
+                : alwaysLogErrors ? Decision.ERRORS_ONLY : Decision.SKIP;
+    }
+
+    private int sampleEvery(URI uri) {
+        if (overrides.isEmpty()) {
+            return sampleEvery;
+        }
+        String path = uri.getRawPath();
+        if (path == null) {
+            path = "";
+        }
+        String host = uri.getHost();
+        if (host != null && !byHost.isEmpty()) {
+            Rule[] rules = byHost.get(host);
+            if (rules == null) {
+                rules = byHost.get(host.toLowerCase(Locale.ROOT));
+            }
+            Rule r = match(rules, path);
+            if (r != null) {
+                return r.sampleEvery;
+            }
+        }
+        Rule r = match(anyHost, path);
+        return r == null ? sampleEvery : r.sampleEvery;
+    }
+
+    private static Rule match(Rule[] rules, String path) {
+        if (rules != null) {
+            for (Rule r : rules) {
+                if (path.startsWith(r.pathPrefix)) {
+                    return r;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean sample(int every) {
+        if (every <= 1) {
+            return every == 1;
+        }
+        return ThreadLocalRandom.current().nextInt(every) == 0;
+    }
+
+    /**
+     * @return the rules as simple values, for management endpoints
+     */
+    public Map<String, Object> describe() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("sample-every", sampleEvery);
+        m.put("always-log-errors", alwaysLogErrors);
+        List<Map<String, Object>> rules = new ArrayList<>();
+        for (Rule r : overrides) {
+            Map<String, Object> rm = new LinkedHashMap<>();
+            rm.put("host", r.host);
+            rm.put("path-prefix", r.pathPrefix);
+            rm.put("sample-every", r.sampleEvery);
+            rules.add(rm);
+        }
+        m.put("overrides", rules);
+        return m;
+    }
+
+    /**
+     * an override of the default sampling
+     */
+    public static final class Rule {
+
+        private final String host;
+        private final String pathPrefix;
+        private final int sampleEvery;
+
+        private Rule(String host, String pathPrefix, int sampleEvery) {
+            this.host = host;
+            this.pathPrefix = pathPrefix;
+            this.sampleEvery = sampleEvery;
+        }
+
+        /**
+         * @return the host matched, null for any host
+         */
+        public String getHost() {
+            return host;
+        }
+
+        /**
+         * @return the path prefix matched, empty for any path
+         */
+        public String getPathPrefix() {
+            return pathPrefix;
+        }
+
+        public int getSampleEvery() {
+            return sampleEvery;
+        }
+    }
+
+    public static final class Builder {
+
+        private int sampleEvery = 1;
+        private boolean alwaysLogErrors;
+        private final List<Rule> overrides = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * @param sampleEvery 1 logs every request, N logs one request in N
+         * (randomly), 0 logs nothing
+         * @return this builder
+         */
+        public Builder sampleEvery(int sampleEvery) {
+            if (sampleEvery < 0) {
+                throw new IllegalArgumentException("please provide a positive sampling");
+            }
+            this.sampleEvery = sampleEvery;
+            return this;
+        }
+
+        /**
+         * @param alwaysLogErrors true to log the 4xx and 5xx replies of the
+         * requests not sampled
+         * @return this builder
+         */
+        public Builder alwaysLogErrors(boolean alwaysLogErrors) {
+            this.alwaysLogErrors = alwaysLogErrors;
+            return this;
+        }
+
+        /**
+         * replaces the override on the same host and path prefix if any
+         *
+         * @param host the host, null for any host
+         * @param pathPrefix the beginning of the raw path, null for any path
+         * @param sampleEvery the sampling of the requests matched, see
+         * sampleEvery(int)
+         * @return this builder
+         */
+        public Builder override(String host, String pathPrefix, int sampleEvery) {
+            if (sampleEvery < 0) {
+                throw new IllegalArgumentException("please provide a positive sampling");
+            }
+            if (host == null && pathPrefix == null) {
+                throw new IllegalArgumentException("please provide a host or a path prefix, or change the default sampling");
+            }
+            String h = host == null ? null : host.toLowerCase(Locale.ROOT);
+            String p = pathPrefix == null ? "" : pathPrefix;
+            overrides.removeIf(r -> Objects.equals(r.host, h) && r.pathPrefix.equals(p));
+            overrides.add(new Rule(h, p, sampleEvery));
+            return this;
+        }
+
+        public Builder clearOverrides() {
+            overrides.clear();
+            return this;
+        }
+
+        public LoggingRules build() {
+            return new LoggingRules(this);
+        }
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.logs;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+
+/**
+ *
+ * spring boot actuator endpoint changing at runtime the LoggingRules of some
+ * logging interceptors, declare it as a bean (spring-boot-actuator is an
+ * optional dependency of this lib) and expose it like any other endpoint:
+ * management.endpoints.web.exposure.include=restclientlogging
+ *
+ * For instance, POST {"sampleEvery": 100, "alwaysLogErrors": true} changes the
+ * default sampling, POST {"host": "api.example.com", "pathPrefix": "/health",
+ * "sampleEvery": 0} silences one endpoint, DELETE logs everything again.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+@Endpoint(id = "restclientlogging")
+public class LoggingRulesEndpoint {
+
+    private final List<LoggingRequestInterceptor> interceptors;
+
+    /**
+     * @param interceptors the interceptors sharing the same rules, the rules
+     * of the first one are the reference
+     */
+    public LoggingRulesEndpoint(LoggingRequestInterceptor... interceptors) {
+        if (interceptors.length == 0) {
+            throw new IllegalArgumentException("please provide the interceptors to manage");
+        }
+        this.interceptors = Arrays.asList(interceptors);
+    }
+
+    @ReadOperation
+    public Map<String, Object> rules() {
+        return interceptors.get(0).getRules().describe();
+    }
+
+    /**
+     * with a host or a path prefix the sampling is an override, otherwise the
+     * default sampling is changed
+     *
+     * @param sampleEvery 1 logs everything, N one request in N, 0 nothing
+     * @param alwaysLogErrors logs the errors of the requests not sampled
+     * @param host the host of the override
+     * @param pathPrefix the path prefix of the override
+     * @return the new rules
+     */
+    @WriteOperation
+    public Map<String, Object> update(@Nullable Integer sampleEvery, @Nullable Boolean alwaysLogErrors,
+            @Nullable String host, @Nullable String pathPrefix) {
+        LoggingRules.Builder builder = interceptors.get(0).getRules().toBuilder();
+        if (alwaysLogErrors != null) {
+            builder.alwaysLogErrors(alwaysLogErrors);
+        }
+        if (host != null || pathPrefix != null) {
+            if (sampleEvery == null) {
+                throw new IllegalArgumentException("please provide the sampling of the override");
+            }
+            builder.override(host, pathPrefix, sampleEvery);
+        } else if (sampleEvery != null) {
+            builder.sampleEvery(sampleEvery);
+        }
+        apply(builder.build());
+        return rules();
+    }
+
+    @DeleteOperation
+    public void reset() {
+        apply(LoggingRules.logAll());
+    }
+
+    private void apply(LoggingRules rules) {
+        for (LoggingRequestInterceptor lri : interceptors) {
+            lri.setRules(rules);
+        }
+    }
+
+}
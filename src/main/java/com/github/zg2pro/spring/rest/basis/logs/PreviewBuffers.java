@@ -0,0 +1,68 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.logs;
+
+import java.util.ArrayDeque;
+
+/**
+ *
+ * the preview arrays of the tee interceptors, kept by each thread for its
+ * next exchanges instead of allocating one per response. A few of them are
+ * kept per thread, for the exchanges nested in the callback of another one.
+ * Pooling is best effort: an array never given back is simply collected.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+final class PreviewBuffers {
+
+    private static final int MAX_PER_THREAD = 4;
+
+    private final int length;
+    private final ThreadLocal<ArrayDeque<byte[]>> free
+            = ThreadLocal.withInitial(() -> new ArrayDeque<>(MAX_PER_THREAD));
+
+    PreviewBuffers(int length) {
+        this.length = length;
+    }
+
+    byte[] acquire() {
+        byte[] buffer = free.get().pollFirst();
+        return buffer == null ? new byte[length] : buffer;
+    }
+
+    /**
+     * @param buffer an array given by acquire(), not used anymore by its
+     * exchange
+     */
+    void release(byte[] buffer) {
+        if (buffer != null && buffer.length == length) {
+            ArrayDeque<byte[]> deque = free.get();
+            if (deque.size() < MAX_PER_THREAD) {
+                deque.addFirst(buffer);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,341 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.logs;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import org.springframework.http.HttpHeaders;
+
+/**
+ *
+ * masks the values of some json fields in the bodies previews, and of some
+ * headers, before they are logged.
+ *
+ * The quoted field names are compiled into a single Aho-Corasick automaton
+ * (a dense transition table over the bytes classes of the names), the
+ * previews are scanned once, byte per byte, and the value following a
+ * matched name and its colon is overwritten in place with '*': a string
+ * keeps its quotes, an object or an array keeps its outer brackets. The json
+ * is not parsed, a Session keeps its state between chunks so the masking can
+ * happen while the body streams.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public final class Redactor {
+
+    private static final byte MASK = '*';
+    private static final String HEADER_MASK = "******";
+
+    private static final int SCAN = 0;
+    private static final int AFTER_NAME = 1;
+    private static final int BEFORE_VALUE = 2;
+    private static final int IN_STRING = 3;
+    private static final int IN_SCALAR = 4;
+    private static final int IN_NESTED = 5;
+
+    private final int[] byteClass = new int[256];
+    private final int classes;
+    //transitions of the automaton, states * classes, holding the offset of
+    //the row of the next state so the scan does not multiply
+    private final int[] delta;
+    //indexed by row offset
+    private final boolean[] accepting;
+    private final Set<String> headerNames;
+
+    private Redactor(Collection<String> jsonFields, Collection<String> headers) {
+        List<byte[]> patterns = new ArrayList<>();
+        int nextClass = 1;
+        for (String field : jsonFields) {
+            byte[] p = ('"' + field + '"').getBytes(StandardCharsets.UTF_8);
+            patterns.add(p);
+            for (byte b : p) {
+                if (byteClass[b & 0xff] == 0) {
+                    byteClass[b & 0xff] = nextClass++;
+                }
+            }
+        }
+        this.classes = nextClass;
+        //trie
+        List<int[]> gotos = new ArrayList<>();
+        List<Boolean> outputs = new ArrayList<>();
+        gotos.add(newRow());
+        outputs.add(false);
+        for (byte[] p : patterns) {
+            int state = 0;
+            for (byte b : p) {
+                int c = byteClass[b & 0xff];
+                if (gotos.get(state)[c] <= 0) {
+                    gotos.add(newRow());
+                    outputs.add(false);
+                    gotos.get(state)[c] = gotos.size() - 1;
+                }
+                state = gotos.get(state)[c];
+            }
+            outputs.set(state, true);
+        }
+        //failure links, breadth first, completing the transitions into a dfa
+        int states = gotos.size();
+        int[] dfa = new int[states * classes];
+        boolean[] output = new boolean[states];
+        int[] fail = new int[states];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < classes; c++) {
+            int s = gotos.get(0)[c];
+            if (s > 0) {
+                fail[s] = 0;
+                queue.add(s);
+                dfa[c] = s;
+            } else {
+                dfa[c] = 0;
+            }
+        }
+        output[0] = outputs.get(0);
+        while (!queue.isEmpty()) {
+            int r = queue.poll();
+            output[r] = outputs.get(r) || output[fail[r]];
+            for (int c = 0; c < classes; c++) {
+                int s = gotos.get(r)[c];
+                if (s > 0) {
+                    fail[s] = dfa[fail[r] * classes + c];
+                    queue.add(s);
+                    dfa[r * classes + c] = s;
+                } else {
+                    dfa[r * classes + c] = dfa[fail[r] * classes + c];
+                }
+            }
+        }
+        this.delta = new int[dfa.length];
+        this.accepting = new boolean[dfa.length];
+        for (int i = 0; i < dfa.length; i++) {
+            delta[i] = dfa[i] * classes;
+        }
+        for (int r = 0; r < states; r++) {
+            accepting[r * classes] = output[r];
+        }
+        this.headerNames = new HashSet<>();
+        for (String h : headers) {
+            headerNames.add(h.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    private int[] newRow() {
+        int[] row = new int[classes];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    /**
+     * @param jsonFields the names of the json fields whose values are masked,
+     * whatever their depth
+     * @param headers the names of the headers whose values are masked, case
+     * insensitive
+     * @return the redactor
+     */
+    public static Redactor of(Collection<String> jsonFields, Collection<String> headers) {
+        if (jsonFields == null || headers == null) {
+            throw new IllegalArgumentException("please provide the fields and headers to redact, possibly empty");
+        }
+        return new Redactor(jsonFields, headers);
+    }
+
+    /**
+     * @return a new masking state, for one body
+     */
+    public Session newSession() {
+        return new Session();
+    }
+
+    /**
+     * masks a whole body in place
+     *
+     * @param bytes the body
+     * @param off start of the body
+     * @param len length of the body
+     */
+    public void redact(byte[] bytes, int off, int len) {
+        newSession().redact(bytes, off, len);
+    }
+
+    /**
+     * @param headers the headers to log
+     * @return the same headers if none is redacted, a masked copy otherwise
+     */
+    public HttpHeaders redact(HttpHeaders headers) {
+        if (headers == null || headerNames.isEmpty()) {
+            return headers;
+        }
+        HttpHeaders copy = null;
+        for (Map.Entry<String, List<String>> e : headers.entrySet()) {
+            if (headerNames.contains(e.getKey().toLowerCase(Locale.ROOT))) {
+                if (copy == null) {
+                    copy = new HttpHeaders();
+                    copy.putAll(headers);
+                }
+                List<String> masked = new ArrayList<>();
+                for (int i = 0; i < e.getValue().size(); i++) {
+                    masked.add(HEADER_MASK);
+                }
+                copy.put(e.getKey(), masked);
+            }
+        }
+        return copy == null ? headers : copy;
+    }
+
+    /**
+     * the masking state of one body, the chunks must be given in order
+     */
+    public final class Session {
+
+        private int state = 0;
+        private int mode = SCAN;
+        private int depth;
+        private boolean inNestedString;
+        private boolean escaped;
+
+        private Session() {
+        }
+
+        /**
+         * masks a chunk of the body in place
+         *
+         * @param bytes the chunk
+         * @param off start of the chunk
+         * @param len length of the chunk
+         */
+        public void redact(byte[] bytes, int off, int len) {
+            //the hot loop works on locals, the state is saved at the end
+            final int[] table = delta;
+            final int[] classOf = byteClass;
+            final boolean[] accept = accepting;
+            int s = state;
+            int m = mode;
+            int end = off + len;
+            for (int i = off; i < end; i++) {
+                int b = bytes[i] & 0xff;
+                if (m == SCAN) {
+                    s = table[s + classOf[b]];
+                    if (accept[s]) {
+                        m = AFTER_NAME;
+                    }
+                    continue;
+                }
+                switch (m) {
+                    case AFTER_NAME:
+                        if (b == ':') {
+                            m = BEFORE_VALUE;
+                        } else if (!isWhitespace(b)) {
+                            m = SCAN;
+                            s = table[s + classOf[b]];
+                            if (accept[s]) {
+                                m = AFTER_NAME;
+                            }
+                        }
+                        break;
+                    case BEFORE_VALUE:
+                        if (b == '"') {
+                            m = IN_STRING;
+                            escaped = false;
+                        } else if (b == '{' || b == '[') {
+                            m = IN_NESTED;
+                            depth = 1;
+                            inNestedString = false;
+                            escaped = false;
+                        } else if (!isWhitespace(b)) {
+                            m = IN_SCALAR;
+                            bytes[i] = MASK;
+                        }
+                        break;
+                    case IN_STRING:
+                        if (escaped) {
+                            escaped = false;
+                        } else if (b == '\\') {
+                            escaped = true;
+                        } else if (b == '"') {
+                            m = SCAN;
+                            s = 0;
+                            break;
+                        }
+                        bytes[i] = MASK;
+                        break;
+                    case IN_SCALAR:
+                        if (b == ',' || b == '}' || b == ']' || isWhitespace(b)) {
+                            m = SCAN;
+                            s = table[classOf[b]];
+                        } else {
+                            bytes[i] = MASK;
+                        }
+                        break;
+                    default:
+                        if (nested(b)) {
+                            m = SCAN;
+                            s = 0;
+                        } else {
+                            bytes[i] = MASK;
+                        }
+                }
+            }
+            state = s;
+            mode = m;
+        }
+
+        /**
+         * @return true on the bracket closing the masked value
+         */
+        private boolean nested(int b) {
+            if (inNestedString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (b == '\\') {
+                    escaped = true;
+                } else if (b == '"') {
+                    inNestedString = false;
+                }
+                return false;
+            }
+            if (b == '"') {
+                inNestedString = true;
+            } else if (b == '{' || b == '[') {
+                depth++;
+            } else if (b == '}' || b == ']') {
+                return --depth == 0;
+            }
+            return false;
+        }
+    }
+
+    private static boolean isWhitespace(int b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.logs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ *
+ * response whose body is teed into a bounded preview while it is consumed, the
+ * preview is handed over once, at the latest when the response is closed
+ *
+ * The preview array is given by the caller and reused for the streams of a
+ * buffered response, only the last one being handed over.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+class TeeClientHttpResponse implements ClientHttpResponse {
+
+    private final ClientHttpResponse response;
+    private final byte[] preview;
+    private final TeeInputStream.Completion onComplete;
+    private final Redactor redactor;
+    private InputStream rawBody;
+    private TeeInputStream body;
+    //getBody() calls and the streams replaced
+    private long readNanos;
+    private boolean completed;
+
+    /**
+     * @param preview receives the first bytes of the body
+     * @param redactor masks the preview, can be null
+     */
+    TeeClientHttpResponse(ClientHttpResponse response, byte[] preview,
+            TeeInputStream.Completion onComplete, Redactor redactor) {
+        this.response = response;
+        this.preview = preview;
+        this.onComplete = onComplete;
+        this.redactor = redactor;
+    }
+
+    @Override
+    public InputStream getBody() throws IOException {
+        long t0 = System.nanoTime();
+        InputStream raw = response.getBody();
+        readNanos += System.nanoTime() - t0;
+        //a buffered response gives a new stream at each call
+        if (body == null || raw != rawBody) {
+            if (body != null) {
+                readNanos += body.discard();
+            }
+            rawBody = raw;
+            body = new TeeInputStream(raw, preview, this::complete,
+                    redactor == null ? null : redactor.newSession());
+        }
+        return body;
+    }
+
+    private void complete(byte[] preview, int length, long streamReadNanos) {
+        if (!completed) {
+            completed = true;
+            onComplete.complete(preview, length, readNanos + streamReadNanos);
+        }
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        return response.getHeaders();
+    }
+
+    @Override
+    public HttpStatus getStatusCode() throws IOException {
+        return response.getStatusCode();
+    }
+
+    @Override
+    public int getRawStatusCode() throws IOException {
+        return response.getRawStatusCode();
+    }
+
+    @Override
+    public String getStatusText() throws IOException {
+        return response.getStatusText();
+    }
+
+    @Override
+    public void close() {
+        try {
+            response.close();
+        } finally {
+            if (body == null) {
+                //the body was never read, the preview is empty
+                complete(preview, 0, readNanos);
+            } else {
+                body.complete();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.logs;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ *
+ * copies the first bytes read from the wrapped stream into a bounded preview,
+ * the rest of the stream goes through without any copy. The preview is handed
+ * over once, when the stream reaches its end or is closed. The preview can be
+ * redacted while it is copied, the bytes given to the reader are untouched.
+ *
+ * The preview array is given by the caller, which can reuse it once the
+ * preview was handed over: nothing is copied into it afterwards.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+class TeeInputStream extends FilterInputStream {
+
+    /**
+     * receives the preview, without boxing its length
+     */
+    interface Completion {
+
+        /**
+         * @param preview the first bytes of the body
+         * @param length the length of the preview
+         * @param readNanos time spent waiting for the body bytes
+         */
+        void complete(byte[] preview, int length, long readNanos);
+    }
+
+    private final byte[] preview;
+    private final Completion onComplete;
+    private final Redactor.Session redaction;
+    private int previewLength;
+    private long readNanos;
+    private boolean completed;
+
+    /**
+     * @param preview receives the first bytes, its length is the length of
+     * the preview
+     * @param redaction masks the preview as it is copied, can be null
+     */
+    TeeInputStream(InputStream in, byte[] preview, Completion onComplete, Redactor.Session redaction) {
+        super(in);
+        this.preview = preview;
+        this.onComplete = onComplete;
+        this.redaction = redaction;
+    }
+
+    private void tee(byte[] b, int off, int len) {
+        int copied = Math.min(len, preview.length - previewLength);
+        if (copied > 0 && !completed) {
+            System.arraycopy(b, off, preview, previewLength, copied);
+            if (redaction != null) {
+                redaction.redact(preview, previewLength, copied);
+            }
+            previewLength += copied;
+        }
+    }
+
+    void complete() {
+        if (!completed) {
+            completed = true;
+            onComplete.complete(preview, previewLength, readNanos);
+        }
+    }
+
+    /**
+     * stops copying into the preview without handing it over
+     *
+     * @return the time spent reading this stream
+     */
+    long discard() {
+        completed = true;
+        return readNanos;
+    }
+
+    @Override
+    public int read() throws IOException {
+        long t0 = System.nanoTime();
+        int b = super.read();
+        readNanos += System.nanoTime() - t0;
+        if (b < 0) {
+            complete();
+        } else if (previewLength < preview.length && !completed) {
+            preview[previewLength] = (byte) b;
+            if (redaction != null) {
+                redaction.redact(preview, previewLength, 1);
+            }
+            previewLength++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        long t0 = System.nanoTime();
+        int read = super.read(b, off, len);
+        readNanos += System.nanoTime() - t0;
+        if (read < 0) {
+            complete();
+        } else {
+            tee(b, off, read);
+        }
+        return read;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            complete();
+        }
+    }
+
+}
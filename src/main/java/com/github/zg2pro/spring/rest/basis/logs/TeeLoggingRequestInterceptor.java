@@ -0,0 +1,182 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.logs;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.event.Level;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ *
+ * Logging interceptor which does not need the responses to be buffered: the
+ * first maxBodyLength bytes of the response body are copied into a preview
+ * while the RestTemplate consumes the body, and logged when the response is
+ * closed. The rest of the body is never kept in memory.
+ *
+ * The exchange is captured as a LoggedExchange, emit() and write() can be
+ * overridden to log it differently, see AsyncLoggingRequestInterceptor. The
+ * previews are arrays reused by the thread for its next exchanges, nothing of
+ * the size of a preview is allocated per exchange: the LoggedExchange borrows
+ * them until emit() returns.
+ *
+ * Used inside a LoggingRequestFactory, the interceptor drops out of the chain
+ * as long as its log level is disabled, or for the requests its LoggingRules
+ * do not sample. The requests kept only for errors are teed only if the
+ * response is an error.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public class TeeLoggingRequestInterceptor extends LoggingRequestInterceptor {
+
+    private final PreviewBuffers buffers = new PreviewBuffers(getMaxBodyLength());
+
+    /**
+     * default encoding to trace your http calls is UTF-8, it also uses a max
+     * body length in response or request equal to 10000 bytes, as well as a
+     * DEBUG log level
+     */
+    public TeeLoggingRequestInterceptor() {
+        super();
+    }
+
+    /**
+     * @param encoding
+     * @param maxBodyLength the size of the previews logged, in bytes
+     * @param level
+     */
+    public TeeLoggingRequestInterceptor(Charset encoding, int maxBodyLength, Level level) {
+        super(encoding, maxBodyLength, level);
+    }
+
+    /**
+     * @return false, only a bounded preview is copied while the body is read
+     */
+    @Override
+    public boolean isBufferingRequired() {
+        return false;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        final LoggingRules.Decision decision = decision(request);
+        if (decision == LoggingRules.Decision.SKIP) {
+            return execution.execute(request, body);
+        }
+        final long startMillis = System.currentTimeMillis();
+        final long start = System.nanoTime();
+        final URI uri = request.getURI();
+        final String method = String.valueOf(request.getMethod());
+        final String threadName = Thread.currentThread().getName();
+        final int requestLength = Math.min(body.length, getMaxBodyLength());
+        final byte[] requestPreview = requestPreview(body, requestLength);
+        ClientHttpResponse response;
+        try {
+            response = execution.execute(request, body);
+        } catch (IOException ioe) {
+            try {
+                if (decision == LoggingRules.Decision.LOG) {
+                    long elapsed = System.nanoTime() - start;
+                    emit(new LoggedExchange(uri, method, -1, startMillis, elapsed, elapsed,
+                            requestPreview, requestLength, requestPreview, 0, threadName));
+                }
+            } finally {
+                releaseRequestPreview(requestPreview, body);
+            }
+            throw ioe;
+        }
+        final long responseNanos = System.nanoTime() - start;
+        final int status = response.getRawStatusCode();
+        if (decision == LoggingRules.Decision.ERRORS_ONLY && !isError(response)) {
+            releaseRequestPreview(requestPreview, body);
+            return response;
+        }
+        return new TeeClientHttpResponse(response, buffers.acquire(), (preview, length, readNanos) -> {
+            try {
+                emit(new LoggedExchange(uri, method, status, startMillis, responseNanos,
+                        System.nanoTime() - start, requestPreview, requestLength, preview, length, threadName));
+            } finally {
+                buffers.release(preview);
+                releaseRequestPreview(requestPreview, body);
+            }
+        }, getRedactor());
+    }
+
+    /**
+     * @return the body itself without redactor, a masked copy of its preview
+     * in a reused array otherwise
+     */
+    private byte[] requestPreview(byte[] body, int length) {
+        Redactor r = getRedactor();
+        if (r == null) {
+            return body;
+        }
+        byte[] copy = buffers.acquire();
+        System.arraycopy(body, 0, copy, 0, length);
+        r.redact(copy, 0, length);
+        return copy;
+    }
+
+    private void releaseRequestPreview(byte[] requestPreview, byte[] body) {
+        if (requestPreview != body) {
+            buffers.release(requestPreview);
+        }
+    }
+
+    /**
+     * called on the caller thread once the response is closed, writes the
+     * exchange immediately, override it to hand the exchange over somewhere
+     * else: the previews of the exchange are reused once it returns, keep
+     * exchange.snapshot() instead
+     *
+     * @param exchange the exchange captured, valid until this method returns
+     */
+    protected void emit(LoggedExchange exchange) {
+        write(exchange);
+    }
+
+    /**
+     * formats the exchange into the logs
+     *
+     * @param exchange the exchange captured
+     */
+    protected void write(LoggedExchange exchange) {
+        log("===========================request begin================================================");
+        log("URI : {}", exchange.getUri());
+        log("Method : {}", exchange.getMethod());
+        log("Request Body : {}", getEncoding().decode(exchange.getRequestPreview()));
+        log("==========================request end================================================");
+        log("============================response begin==========================================");
+        log("status code: {}", exchange.getStatus());
+        log("duration: {} ms", TimeUnit.NANOSECONDS.toMillis(exchange.getTotalNanos()));
+        log("Response Body : {}", getEncoding().decode(exchange.getResponsePreview()));
+        log("=======================response end=================================================");
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *
+ * live counters of one endpoint (an http method and an uri template): latency
+ * histograms per response status, requests in flight, bytes and errors
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public class EndpointMetrics {
+
+    /**
+     * status used for the exchanges which did not get any response
+     */
+    public static final int NO_RESPONSE = -1;
+
+    private final String method;
+    private final String uriTemplate;
+    private final ConcurrentMap<Integer, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final LongAdder inFlight = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    public EndpointMetrics(String method, String uriTemplate) {
+        this.method = method;
+        this.uriTemplate = uriTemplate;
+    }
+
+    void requestStarted(long sent) {
+        inFlight.increment();
+        bytesSent.add(sent);
+    }
+
+    void requestEnded(int status, long micros, long received) {
+        inFlight.decrement();
+        bytesReceived.add(received);
+        if (status == NO_RESPONSE || status >= 400) {
+            errors.increment();
+        }
+        latencies.computeIfAbsent(status, s -> new LatencyHistogram()).record(micros);
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getUriTemplate() {
+        return uriTemplate;
+    }
+
+    public long getInFlight() {
+        return inFlight.sum();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public LatencyHistogram getLatency(int status) {
+        return latencies.get(status);
+    }
+
+    /**
+     * @return the number of exchanges completed, all statuses together
+     */
+    public long getCount() {
+        long count = 0;
+        for (LatencyHistogram h : latencies.values()) {
+            count += h.getCount();
+        }
+        return count;
+    }
+
+    /**
+     * @return the latency statistics per status, sorted by status
+     */
+    public Map<Integer, HistogramSnapshot> getLatencySnapshots() {
+        Map<Integer, HistogramSnapshot> snapshots = new TreeMap<>();
+        latencies.forEach((status, h) -> snapshots.put(status, h.snapshot()));
+        return snapshots;
+    }
+
+}
@@ -0,0 +1,214 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.metrics;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.web.client.ResponseExtractor;
+
+/**
+ *
+ * records, for the current thread, the instants of the exchange in progress.
+ * AbstractZg2proRestTemplate starts and ends it around each call when some
+ * ExchangeTimingListener is registered, the pooled request factory marks the
+ * connection and request phases, the instrumented request and response mark
+ * the first byte and the body reads. The requests are instrumented under the
+ * interceptors when the factory of the connections is, see
+ * instrument(ClientHttpRequestFactory), so an interceptor reading the body
+ * does not delay the first byte. When no exchange is in progress every mark
+ * is a no-op.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public final class ExchangePhases {
+
+    private static final ThreadLocal<ExchangePhases> CURRENT = new ThreadLocal<>();
+
+    private final ExchangePhases previous;
+    private final URI uri;
+    private final HttpMethod method;
+    private final long start;
+    private long connected = -1;
+    private long requestSent = -1;
+    private long headersReceived = -1;
+    private long bodyReadNanos;
+    private long extractorNanos = -1;
+    private long bodyReadInExtractorNanos;
+    private int status = -1;
+    private List<String> serverTiming;
+    //the innermost request instrumented, the one marking the first byte
+    private TimedClientHttpRequest timed;
+
+    private ExchangePhases(ExchangePhases previous, URI uri, HttpMethod method) {
+        this.previous = previous;
+        this.uri = uri;
+        this.method = method;
+        this.start = System.nanoTime();
+    }
+
+    /**
+     * @param uri the uri of the exchange starting
+     * @param method the http method of the exchange starting
+     * @return the recorder of the exchange, to give back to end()
+     */
+    public static ExchangePhases start(URI uri, HttpMethod method) {
+        ExchangePhases phases = new ExchangePhases(CURRENT.get(), uri, method);
+        CURRENT.set(phases);
+        return phases;
+    }
+
+    /**
+     * @return the recorder of the exchange in progress on this thread, null if
+     * nobody listens to the timings
+     */
+    public static ExchangePhases current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * the connection is leased and open, the request is about to be sent
+     */
+    public static void markConnected() {
+        ExchangePhases phases = CURRENT.get();
+        if (phases != null) {
+            phases.connected = System.nanoTime();
+        }
+    }
+
+    /**
+     * the request headers and body are sent
+     */
+    public static void markRequestSent() {
+        ExchangePhases phases = CURRENT.get();
+        if (phases != null) {
+            phases.requestSent = System.nanoTime();
+        }
+    }
+
+    /**
+     * @param request the request of the exchange
+     * @return the request marking the first byte and timing the body reads
+     */
+    public ClientHttpRequest instrument(ClientHttpRequest request) {
+        timed = request instanceof StreamingHttpOutputMessage
+                ? new TimedClientHttpRequest.Streaming(request, this)
+                : new TimedClientHttpRequest(request, this);
+        return timed;
+    }
+
+    /**
+     * @param factory the factory opening the connections, under the
+     * interceptors
+     * @return the factory instrumenting its requests with the exchange in
+     * progress when they are created, if any
+     */
+    public static ClientHttpRequestFactory instrument(ClientHttpRequestFactory factory) {
+        return (uri, httpMethod) -> {
+            ClientHttpRequest request = factory.createRequest(uri, httpMethod);
+            ExchangePhases phases = CURRENT.get();
+            return phases == null ? request : phases.instrument(request);
+        };
+    }
+
+    /**
+     * @return false when a request created under this one, closer to the
+     * connection, marks the first byte
+     */
+    boolean isTimedBy(TimedClientHttpRequest request) {
+        return timed == request;
+    }
+
+    /**
+     * @param <T>: the return type of the extractor
+     * @param extractor the extractor of the exchange, can be null
+     * @return the extractor timing itself
+     */
+    public <T> ResponseExtractor<T> instrument(ResponseExtractor<T> extractor) {
+        if (extractor == null) {
+            return null;
+        }
+        return response -> {
+            long readBefore = bodyReadNanos;
+            long t0 = System.nanoTime();
+            try {
+                return extractor.extractData(response);
+            } finally {
+                extractorNanos = System.nanoTime() - t0;
+                bodyReadInExtractorNanos = bodyReadNanos - readBefore;
+            }
+        };
+    }
+
+    void responseReceived(int status, List<String> serverTiming) {
+        this.headersReceived = System.nanoTime();
+        this.status = status;
+        this.serverTiming = serverTiming;
+    }
+
+    void bodyRead(long nanos) {
+        bodyReadNanos += nanos;
+    }
+
+    /**
+     * ends the exchange, the recorder of an enclosing exchange becomes current
+     * again
+     *
+     * @return the timings of the exchange
+     */
+    public ExchangeTimings end() {
+        long end = System.nanoTime();
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+        return timings(end);
+    }
+
+    /**
+     * @return the timings of the exchange so far, it goes on
+     */
+    public ExchangeTimings snapshot() {
+        return timings(System.nanoTime());
+    }
+
+    private ExchangeTimings timings(long end) {
+        Map<String, Double> serverTimings = ServerTimingParser.parse(serverTiming);
+        return new ExchangeTimings(uri.toString(), method.name(), status,
+                connected < 0 ? -1 : connected - start,
+                connected < 0 || requestSent < 0 ? -1 : requestSent - connected,
+                headersReceived < 0 ? -1 : headersReceived - start,
+                bodyReadNanos,
+                extractorNanos < 0 ? -1 : Math.max(0, extractorNanos - bodyReadInExtractorNanos),
+                end - start,
+                serverTimings, ServerTimingParser.serverNanos(serverTimings));
+    }
+
+}
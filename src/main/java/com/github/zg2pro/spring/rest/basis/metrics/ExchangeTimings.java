@@ -0,0 +1,152 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ *
+ * where the time of one RestTemplate exchange went, all durations in
+ * nanoseconds, -1 when the phase could not be observed (connection and
+ * request phases are only seen with the pooled request factory)
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public class ExchangeTimings {
+
+    private final String uri;
+    private final String method;
+    private final int status;
+    private final long connectNanos;
+    private final long requestNanos;
+    private final long timeToFirstByteNanos;
+    private final long bodyReadNanos;
+    private final long deserializeNanos;
+    private final long totalNanos;
+    private final Map<String, Double> serverTimings;
+    private final long serverNanos;
+
+    public ExchangeTimings(String uri, String method, int status,
+            long connectNanos, long requestNanos, long timeToFirstByteNanos,
+            long bodyReadNanos, long deserializeNanos, long totalNanos,
+            Map<String, Double> serverTimings, long serverNanos) {
+        this.uri = uri;
+        this.method = method;
+        this.status = status;
+        this.connectNanos = connectNanos;
+        this.requestNanos = requestNanos;
+        this.timeToFirstByteNanos = timeToFirstByteNanos;
+        this.bodyReadNanos = bodyReadNanos;
+        this.deserializeNanos = deserializeNanos;
+        this.totalNanos = totalNanos;
+        this.serverTimings = Collections.unmodifiableMap(serverTimings);
+        this.serverNanos = serverNanos;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * @return the raw http status, -1 if no response was received
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return time to lease and open the connection
+     */
+    public long getConnectNanos() {
+        return connectNanos;
+    }
+
+    /**
+     * @return time to send the request headers and body
+     */
+    public long getRequestNanos() {
+        return requestNanos;
+    }
+
+    /**
+     * @return time from the start of the exchange to the response headers,
+     * connection and request included
+     */
+    public long getTimeToFirstByteNanos() {
+        return timeToFirstByteNanos;
+    }
+
+    /**
+     * @return time spent waiting for the response body bytes
+     */
+    public long getBodyReadNanos() {
+        return bodyReadNanos;
+    }
+
+    /**
+     * @return time spent in the response extractor (jackson binding, file
+     * writing...) other than waiting for the body bytes
+     */
+    public long getDeserializeNanos() {
+        return deserializeNanos;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * @return the durations of the Server-Timing response header, in
+     * milliseconds, by metric name
+     */
+    public Map<String, Double> getServerTimings() {
+        return serverTimings;
+    }
+
+    /**
+     * @return the server processing time announced by Server-Timing, -1 if
+     * the header was absent
+     */
+    public long getServerNanos() {
+        return serverNanos;
+    }
+
+    /**
+     * @return the time to first byte minus the server processing time, -1 if
+     * the server did not announce its time
+     */
+    public long getNetworkNanos() {
+        if (serverNanos < 0 || timeToFirstByteNanos < 0) {
+            return -1;
+        }
+        return Math.max(0, timeToFirstByteNanos - serverNanos);
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *
+ * holds the EndpointMetrics fed by MetricsRequestInterceptor, this is the pull
+ * API: read the live counters with getEndpoints() or take a snapshot() which
+ * can be serialized as is (the actuator endpoint does so)
+ *
+ * The number of endpoints is capped: once it is reached, the new endpoints
+ * are all counted under the OVERFLOW_TEMPLATE of their method, so unexpected
+ * uris cannot make the registry grow without bound.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public class MetricsRegistry {
+
+    public static final int DEFAULT_MAX_ENDPOINTS = 500;
+    public static final String OVERFLOW_TEMPLATE = "{overflow}";
+
+    private final ConcurrentMap<String, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+    private final int maxEndpoints;
+    private volatile long startNanos = System.nanoTime();
+
+    /**
+     * keeps up to 500 endpoints
+     */
+    public MetricsRegistry() {
+        this(DEFAULT_MAX_ENDPOINTS);
+    }
+
+    /**
+     * @param maxEndpoints the number of endpoints measured separately, the
+     * next ones go to the overflow endpoint of their method
+     */
+    public MetricsRegistry(int maxEndpoints) {
+        if (maxEndpoints < 1) {
+            throw new IllegalArgumentException("please provide a maximum of at least one endpoint");
+        }
+        this.maxEndpoints = maxEndpoints;
+    }
+
+    public int getMaxEndpoints() {
+        return maxEndpoints;
+    }
+
+    /**
+     * @param method the http method
+     * @param uriTemplate the uri template
+     * @return the metrics of that endpoint, created on first call, or the
+     * overflow endpoint of the method when the maximum is reached
+     */
+    public EndpointMetrics endpoint(String method, String uriTemplate) {
+        String key = method + ' ' + uriTemplate;
+        EndpointMetrics em = endpoints.get(key);
+        if (em == null) {
+            if (endpoints.size() >= maxEndpoints) {
+                //the overflow endpoints are few, one per method
+                return endpoints.computeIfAbsent(method + ' ' + OVERFLOW_TEMPLATE,
+                        k -> new EndpointMetrics(method, OVERFLOW_TEMPLATE));
+            }
+            em = endpoints.computeIfAbsent(key, k -> new EndpointMetrics(method, uriTemplate));
+        }
+        return em;
+    }
+
+    public List<EndpointMetrics> getEndpoints() {
+        return new ArrayList<>(endpoints.values());
+    }
+
+    /**
+     * forgets all the endpoints and restarts the throughput computation
+     */
+    public void reset() {
+        endpoints.clear();
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * @return per endpoint ("METHOD template"): the counters, the throughput
+     * in requests per second since the start or the last reset, and the
+     * latency statistics in microseconds per status
+     */
+    public Map<String, Object> snapshot() {
+        double elapsedSeconds = Math.max(1, System.nanoTime() - startNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        for (Map.Entry<String, EndpointMetrics> e : endpoints.entrySet()) {
+            EndpointMetrics em = e.getValue();
+            Map<String, Object> values = new LinkedHashMap<>();
+            long count = em.getCount();
+            values.put("count", count);
+            values.put("throughput", count / elapsedSeconds);
+            values.put("in-flight", em.getInFlight());
+            values.put("errors", em.getErrors());
+            values.put("bytes-sent", em.getBytesSent());
+            values.put("bytes-received", em.getBytesReceived());
+            values.put("latencies", em.getLatencySnapshots());
+            snapshot.put(e.getKey(), values);
+        }
+        return snapshot;
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.metrics;
+
+import com.github.zg2pro.spring.rest.basis.logs.ChainAwareInterceptor;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ *
+ * Use this class as an interceptor, next to LoggingRequestInterceptor, to
+ * measure every request of your RestTemplate into a MetricsRegistry: latency
+ * until the response is closed, per uri template, method and status, plus
+ * requests in flight, bytes and errors. It does not need the responses to be
+ * buffered.
+ *
+ * The uri template comes from UriTemplateContext when the call goes through
+ * AbstractZg2proRestTemplate, otherwise the path of the uri is used. Either way
+ * only the path is kept (no scheme, host nor query) and its numeric and uuid
+ * segments are replaced by {id}, so urls built by concatenation do not make
+ * one endpoint per id, and the number of endpoints stays bounded.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public class MetricsRequestInterceptor implements ChainAwareInterceptor {
+
+    private static final Pattern ID_SEGMENT = Pattern.compile(
+            "/(\\d+|[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12})(?=/|$)");
+    private static final Pattern SCHEME_AND_AUTHORITY = Pattern.compile("^[a-zA-Z][a-zA-Z0-9+.-]*://[^/?#]*");
+
+    private final MetricsRegistry registry;
+
+    /**
+     * @param registry where the measures are stored
+     */
+    public MetricsRequestInterceptor(MetricsRegistry registry) {
+        if (registry == null) {
+            throw new IllegalArgumentException("please provide a metrics registry");
+        }
+        this.registry = registry;
+    }
+
+    public MetricsRegistry getRegistry() {
+        return registry;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public boolean isBufferingRequired() {
+        return false;
+    }
+
+    static String uriTemplate(HttpRequest request) {
+        String template = UriTemplateContext.current();
+        if (template != null) {
+            return normalize(pathOf(template));
+        }
+        String path = request.getURI().getRawPath();
+        return path == null ? "" : normalize(path);
+    }
+
+    /**
+     * @param template: a url template, absolute or not
+     * @return the template without its scheme, host, query and fragment, the
+     * {var} segments are kept
+     */
+    private static String pathOf(String template) {
+        String path = SCHEME_AND_AUTHORITY.matcher(template).replaceFirst("");
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '?' || c == '#') {
+                return path.substring(0, i);
+            }
+        }
+        return path;
+    }
+
+    private static String normalize(String path) {
+        return ID_SEGMENT.matcher(path).replaceAll("/{id}");
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        final EndpointMetrics em = registry.endpoint(String.valueOf(request.getMethod()), uriTemplate(request));
+        final long start = System.nanoTime();
+        em.requestStarted(body.length);
+        ClientHttpResponse response = null;
+        final int status;
+        try {
+            response = execution.execute(request, body);
+            status = response.getRawStatusCode();
+        } catch (IOException | RuntimeException e) {
+            em.requestEnded(EndpointMetrics.NO_RESPONSE, micros(start), 0);
+            if (response != null) {
+                response.close();
+            }
+            throw e;
+        }
+        return new MeteredClientHttpResponse(response,
+                received -> em.requestEnded(status, micros(start), received));
+    }
+
+    private static long micros(long start) {
+        return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+    }
+
+}
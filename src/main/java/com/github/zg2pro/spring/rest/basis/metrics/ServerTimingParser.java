@@ -0,0 +1,95 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ * reads the Server-Timing response headers (w3c), for instance
+ * "db;dur=53, app;dur=47.2;desc=\"render\", total;dur=110"
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+final class ServerTimingParser {
+
+    static final String HEADER = "Server-Timing";
+    private static final String TOTAL = "total";
+
+    private ServerTimingParser() {
+    }
+
+    /**
+     * @param headerValues the values of the Server-Timing headers, can be null
+     * @return duration in milliseconds by metric name, metrics without
+     * duration are ignored
+     */
+    static Map<String, Double> parse(List<String> headerValues) {
+        Map<String, Double> timings = new LinkedHashMap<>();
+        if (headerValues == null) {
+            return timings;
+        }
+        for (String headerValue : headerValues) {
+            for (String metric : headerValue.split(",")) {
+                String[] params = metric.split(";");
+                String name = params[0].trim();
+                for (int i = 1; i < params.length; i++) {
+                    String param = params[i].trim();
+                    if (param.regionMatches(true, 0, "dur=", 0, 4)) {
+                        try {
+                            timings.merge(name, Double.valueOf(param.substring(4).replace("\"", "")), Double::sum);
+                        } catch (NumberFormatException nfe) {
+                            //a malformed duration is ignored, as the spec asks
+                        }
+                    }
+                }
+            }
+        }
+        return timings;
+    }
+
+    /**
+     * @param timings parsed by parse()
+     * @return the "total" metric when the server gives one, the sum of all
+     * metrics otherwise, in nanoseconds, -1 if there is no metric
+     */
+    static long serverNanos(Map<String, Double> timings) {
+        if (timings.isEmpty()) {
+            return -1;
+        }
+        double millis = 0;
+        if (timings.containsKey(TOTAL)) {
+            millis = timings.get(TOTAL);
+        } else {
+            for (Double d : timings.values()) {
+                millis += d;
+            }
+        }
+        return (long) (millis * 1000000);
+    }
+
+}
@@ -0,0 +1,207 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.metrics;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ *
+ * marks the reception of the response headers and times the reads of the
+ * response body
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+class TimedClientHttpRequest implements ClientHttpRequest {
+
+    private final ClientHttpRequest request;
+    private final ExchangePhases phases;
+
+    TimedClientHttpRequest(ClientHttpRequest request, ExchangePhases phases) {
+        this.request = request;
+        this.phases = phases;
+    }
+
+    @Override
+    public ClientHttpResponse execute() throws IOException {
+        ClientHttpResponse response = request.execute();
+        if (!phases.isTimedBy(this)) {
+            //the request of the connection, under the interceptors, timed it
+            return response;
+        }
+        phases.responseReceived(response.getRawStatusCode(),
+                response.getHeaders().get(ServerTimingParser.HEADER));
+        return new TimedClientHttpResponse(response, phases);
+    }
+
+    @Override
+    public OutputStream getBody() throws IOException {
+        return request.getBody();
+    }
+
+    @Override
+    public String getMethodValue() {
+        return request.getMethodValue();
+    }
+
+    @Override
+    public HttpMethod getMethod() {
+        return request.getMethod();
+    }
+
+    @Override
+    public URI getURI() {
+        return request.getURI();
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        return request.getHeaders();
+    }
+
+    /**
+     * keeps the streaming capability of the request wrapped
+     */
+    static class Streaming extends TimedClientHttpRequest implements StreamingHttpOutputMessage {
+
+        private final StreamingHttpOutputMessage streaming;
+
+        Streaming(ClientHttpRequest request, ExchangePhases phases) {
+            super(request, phases);
+            this.streaming = (StreamingHttpOutputMessage) request;
+        }
+
+        @Override
+        public void setBody(Body body) {
+            streaming.setBody(body);
+        }
+    }
+
+    private static class TimedClientHttpResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse response;
+        private final ExchangePhases phases;
+        private InputStream rawBody;
+        private InputStream body;
+
+        TimedClientHttpResponse(ClientHttpResponse response, ExchangePhases phases) {
+            this.response = response;
+            this.phases = phases;
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            long t0 = System.nanoTime();
+            InputStream raw = response.getBody();
+            phases.bodyRead(System.nanoTime() - t0);
+            //a buffered response gives a new stream at each call
+            if (body == null || raw != rawBody) {
+                rawBody = raw;
+                body = new TimedInputStream(raw, phases);
+            }
+            return body;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return response.getHeaders();
+        }
+
+        @Override
+        public HttpStatus getStatusCode() throws IOException {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public int getRawStatusCode() throws IOException {
+            return response.getRawStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return response.getStatusText();
+        }
+
+        @Override
+        public void close() {
+            response.close();
+        }
+    }
+
+    private static class TimedInputStream extends FilterInputStream {
+
+        private final ExchangePhases phases;
+
+        TimedInputStream(InputStream in, ExchangePhases phases) {
+            super(in);
+            this.phases = phases;
+        }
+
+        @Override
+        public int read() throws IOException {
+            long t0 = System.nanoTime();
+            try {
+                return super.read();
+            } finally {
+                phases.bodyRead(System.nanoTime() - t0);
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            long t0 = System.nanoTime();
+            try {
+                return super.read(b, off, len);
+            } finally {
+                phases.bodyRead(System.nanoTime() - t0);
+            }
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long t0 = System.nanoTime();
+            try {
+                return super.skip(n);
+            } finally {
+                phases.bodyRead(System.nanoTime() - t0);
+            }
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.metrics;
+
+/**
+ *
+ * remembers, for the current thread, the uri template a RestTemplate call was
+ * made with (for instance "/users/{id}"), so the interceptors can aggregate
+ * per endpoint rather than per expanded uri. AbstractZg2proRestTemplate fills
+ * it for every call made with a String url.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public final class UriTemplateContext {
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private UriTemplateContext() {
+    }
+
+    /**
+     * @param uriTemplate the template of the call starting
+     * @return the template of the enclosing call, to give back to exit()
+     */
+    public static String enter(String uriTemplate) {
+        String previous = CURRENT.get();
+        CURRENT.set(uriTemplate);
+        return previous;
+    }
+
+    /**
+     * @param previous the value returned by enter()
+     */
+    public static void exit(String previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * @return the template of the call in progress on this thread, null if
+     * the call was not made through AbstractZg2proRestTemplate
+     */
+    public static String current() {
+        return CURRENT.get();
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.pool;
+
+import com.github.zg2pro.spring.rest.basis.metrics.ExchangePhases;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+/**
+ *
+ * builds request factories backed by an apache httpclient keep-alive
+ * connection pool, instead of the HttpURLConnection used by
+ * SimpleClientHttpRequestFactory. The factory returned is a DisposableBean,
+ * destroying it closes the pool. Its request executor marks the connection
+ * and request phases of the ExchangePhases in progress. The automatic content
+ * decompression of httpclient is disabled: it would ask for gzip on every
+ * request and drop Content-Length, Content-Encoding and Content-MD5 from the
+ * responses, the compression is left to the CompressionSettings of the
+ * template.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public class PooledRequestFactoryFactory {
+
+    public static HttpComponentsClientHttpRequestFactory build() {
+        return build(new ConnectionPoolSettings());
+    }
+
+    public static HttpComponentsClientHttpRequestFactory build(ConnectionPoolSettings settings) {
+        if (settings == null) {
+            throw new IllegalArgumentException("please provide the connection pool settings");
+        }
+        PoolingHttpClientConnectionManager pool = new PoolingHttpClientConnectionManager();
+        pool.setMaxTotal(settings.getMaxTotal());
+        pool.setDefaultMaxPerRoute(settings.getMaxPerRoute());
+        pool.setValidateAfterInactivity(settings.getValidateAfterInactivity());
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(settings.getConnectTimeout())
+                .setSocketTimeout(settings.getReadTimeout())
+                .setConnectionRequestTimeout(settings.getConnectionRequestTimeout())
+                .build();
+        HttpClientBuilder builder = HttpClientBuilder.create()
+                .setConnectionManager(pool)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(keepAliveStrategy(settings.getKeepAlive()))
+                .setRequestExecutor(new PhasesMarkingRequestExecutor())
+                .disableContentCompression()
+                .evictExpiredConnections();
+        if (settings.getMaxIdleTime() > 0) {
+            builder.evictIdleConnections(settings.getMaxIdleTime(), TimeUnit.MILLISECONDS);
+        }
+        return new HttpComponentsClientHttpRequestFactory(builder.build());
+    }
+
+    private static ConnectionKeepAliveStrategy keepAliveStrategy(final long defaultKeepAlive) {
+        return (response, context) -> {
+            long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE
+                    .getKeepAliveDuration(response, context);
+            return serverKeepAlive > 0 ? serverKeepAlive : defaultKeepAlive;
+        };
+    }
+
+    /**
+     * the connection is leased and established when the request is sent
+     */
+    private static class PhasesMarkingRequestExecutor extends HttpRequestExecutor {
+
+        @Override
+        protected HttpResponse doSendRequest(HttpRequest request, HttpClientConnection conn,
+                HttpContext context) throws IOException, HttpException {
+            ExchangePhases.markConnected();
+            HttpResponse response = super.doSendRequest(request, conn, context);
+            ExchangePhases.markRequestSent();
+            return response;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.serialization;
+
+import java.util.function.Consumer;
+
+/**
+ *
+ * return this from a controller to push the elements of a large result, a
+ * jdbc or jpa cursor for instance, while JsonStreamHttpMessageConverter writes
+ * them toward the response
+ *
+ * @param <T>: the type of the elements
+ * @author zg2pro
+ * @since 0.7
+ */
+@FunctionalInterface
+public interface JsonStreamCursor<T> {
+
+    /**
+     * @param elements: give the elements to it one by one, each is written
+     * before the next one is asked
+     * @throws Exception: ends the stream, see JsonStreamHttpMessageConverter
+     */
+    void forEach(Consumer<? super T> elements) throws Exception;
+
+}
@@ -0,0 +1,244 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.serialization;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+/**
+ *
+ * writes the Stream, Iterator and JsonStreamCursor returned by the controllers
+ * element by element, as a JSON array (application/json) or as newline
+ * delimited JSON (application/x-ndjson, application/stream+json) depending on
+ * the content negotiation, in kebab-case by default. The body is chunked and
+ * flushed after the first element then at each flush interval, so neither the
+ * time to first byte nor the heap depend on the number of elements. Register
+ * it before the jackson converter, as a bean with spring boot or with
+ * WebMvcConfigurer.extendMessageConverters().
+ * <br>
+ * Errors of the elements source:
+ * <ul>
+ * <li>before the first element of a Stream or an Iterator, nothing is written
+ * yet and the exception goes to the exceptions handler as usual
+ * (Zg2proRestServerExceptionsHandler replies an ErrorResource)</li>
+ * <li>after, the status is already sent: the error is logged, the body ends
+ * with an unterminated {"stream-error":"message"} object and the response is
+ * completed, hence a client can not take the elements received for the whole
+ * result, its JSON parser fails at the end of the body</li>
+ * </ul>
+ * The Stream, or the Iterator when AutoCloseable, is closed in any case.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public class JsonStreamHttpMessageConverter extends AbstractHttpMessageConverter<Object> {
+
+    private static final Logger logger = LoggerFactory.getLogger(JsonStreamHttpMessageConverter.class);
+
+    public static final MediaType APPLICATION_NDJSON = MediaType.valueOf("application/x-ndjson");
+    public static final long DEFAULT_FLUSH_INTERVAL = 200;
+    static final String STREAM_ERROR = "stream-error";
+
+    private final ObjectMapper objectMapper;
+    private long flushInterval = DEFAULT_FLUSH_INTERVAL;
+
+    /**
+     * with the kebab-case mapper of the rest template
+     */
+    public JsonStreamHttpMessageConverter() {
+        this(KebabCaseConverters.objectMapper(null, null));
+    }
+
+    public JsonStreamHttpMessageConverter(ObjectMapper objectMapper) {
+        super(MediaType.APPLICATION_JSON, APPLICATION_NDJSON, MediaType.APPLICATION_STREAM_JSON);
+        if (objectMapper == null) {
+            throw new IllegalArgumentException("please provide an object mapper");
+        }
+        this.objectMapper = objectMapper;
+    }
+
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    /**
+     * @param flushInterval: milliseconds between two flushes of the elements
+     * written, the generator writes its buffer anyway when it is full
+     */
+    public void setFlushInterval(long flushInterval) {
+        if (flushInterval < 0) {
+            throw new IllegalArgumentException("please provide a positive flush interval");
+        }
+        this.flushInterval = flushInterval;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return Stream.class.isAssignableFrom(clazz) || Iterator.class.isAssignableFrom(clazz)
+                || JsonStreamCursor.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        //the client side is AbstractZg2proRestTemplate.getForStream()
+        return false;
+    }
+
+    @Override
+    protected Object readInternal(Class<? extends Object> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("streams are not read by this converter", inputMessage);
+    }
+
+    private static boolean isNdjson(MediaType contentType) {
+        return contentType != null && (APPLICATION_NDJSON.includes(contentType)
+                || MediaType.APPLICATION_STREAM_JSON.includes(contentType));
+    }
+
+    @Override
+    protected void writeInternal(Object elements, HttpOutputMessage outputMessage) throws IOException {
+        try {
+            if (elements instanceof Stream) {
+                try (Stream<?> stream = (Stream<?>) elements) {
+                    writeIterator(stream.iterator(), outputMessage);
+                }
+            } else if (elements instanceof Iterator) {
+                try {
+                    writeIterator((Iterator<?>) elements, outputMessage);
+                } finally {
+                    if (elements instanceof AutoCloseable) {
+                        ((AutoCloseable) elements).close();
+                    }
+                }
+            } else {
+                write((JsonStreamCursor<?>) elements, outputMessage);
+            }
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new HttpMessageNotWritableException("could not close the elements source", e);
+        }
+    }
+
+    private void writeIterator(Iterator<?> elements, HttpOutputMessage outputMessage) throws IOException {
+        //an error on the first element can still be replied normally
+        if (!elements.hasNext()) {
+            write(sink -> {
+            }, outputMessage);
+            return;
+        }
+        Object first = elements.next();
+        write(sink -> {
+            sink.accept(first);
+            elements.forEachRemaining(sink);
+        }, outputMessage);
+    }
+
+    private void write(JsonStreamCursor<?> cursor, HttpOutputMessage outputMessage) throws IOException {
+        boolean ndjson = isNdjson(outputMessage.getHeaders().getContentType());
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(outputMessage.getBody(), JsonEncoding.UTF8);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(null);
+        ElementWriter sink = new ElementWriter(generator, writer, ndjson);
+        if (!ndjson) {
+            generator.writeStartArray();
+        }
+        try {
+            cursor.forEach(sink);
+        } catch (UncheckedIOException uioe) {
+            //the client went away, nothing more can be sent
+            throw uioe.getCause();
+        } catch (Exception e) {
+            logger.error("The elements stream failed after " + sink.count + " elements: ", e);
+            generator.flush();
+            //left unterminated so that no parser accepts the body
+            String message = objectMapper.writeValueAsString(String.valueOf(e.getMessage()));
+            outputMessage.getBody().write(((ndjson || sink.count == 0 ? "" : ",") + "{\"" + STREAM_ERROR + "\":"
+                    + message).getBytes(JsonEncoding.UTF8.getJavaName()));
+            outputMessage.getBody().flush();
+            return;
+        }
+        if (!ndjson) {
+            generator.writeEndArray();
+        }
+        generator.close();
+    }
+
+    /**
+     * writes the elements given by the source and flushes periodically
+     */
+    private final class ElementWriter implements Consumer<Object> {
+
+        private final JsonGenerator generator;
+        private final ObjectWriter writer;
+        private final boolean ndjson;
+        private long count;
+        private long lastFlush;
+
+        ElementWriter(JsonGenerator generator, ObjectWriter writer, boolean ndjson) {
+            this.generator = generator;
+            this.writer = writer;
+            this.ndjson = ndjson;
+        }
+
+        @Override
+        public void accept(Object element) {
+            try {
+                writer.writeValue(generator, element);
+                if (ndjson) {
+                    generator.writeRaw('\n');
+                }
+                count++;
+                long now = System.nanoTime();
+                if (count == 1 || now - lastFlush >= flushInterval * 1_000_000L) {
+                    generator.flush();
+                    lastFlush = now;
+                }
+            } catch (JsonProcessingException jpe) {
+                //an element which can not be serialized ends the stream
+                throw new HttpMessageNotWritableException("could not write the element " + count, jpe);
+            } catch (IOException ioe) {
+                throw new UncheckedIOException(ioe);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.serialization;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.util.ClassUtils;
+
+/**
+ *
+ * the jackson converters of the rest template, JSON and its binary forms Smile
+ * and CBOR, all with the CamelCaseToKebabCaseNamingStrategy. On the server
+ * side declare them as beans (spring boot puts them before its own) so the
+ * services answer in the format asked by the Accept header, JSON when the
+ * client did not ask for a binary one. Smile and CBOR need
+ * jackson-dataformat-smile and jackson-dataformat-cbor in the classpath, these
+ * optional jars are only touched by the holder classes below, so this class
+ * loads without them.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public final class KebabCaseConverters {
+
+    public static final MediaType APPLICATION_SMILE = MediaType.valueOf("application/x-jackson-smile");
+    public static final MediaType APPLICATION_CBOR = MediaType.valueOf("application/cbor");
+
+    private static final boolean SMILE_PRESENT = ClassUtils.isPresent(
+            "com.fasterxml.jackson.dataformat.smile.SmileFactory", KebabCaseConverters.class.getClassLoader());
+    private static final boolean CBOR_PRESENT = ClassUtils.isPresent(
+            "com.fasterxml.jackson.dataformat.cbor.CBORFactory", KebabCaseConverters.class.getClassLoader());
+
+    private KebabCaseConverters() {
+    }
+
+    /**
+     * @param factory: the format, JSON when null
+     * @param module: registered if not null
+     * @return a mapper turning camelCase properties into kebab-case
+     */
+    public static ObjectMapper objectMapper(JsonFactory factory, Module module) {
+        ObjectMapper mapper = new ObjectMapper(factory);
+        mapper.setPropertyNamingStrategy(new CamelCaseToKebabCaseNamingStrategy());
+        if (module != null) {
+            mapper.registerModule(module);
+        }
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        return mapper;
+    }
+
+    public static boolean isSmilePresent() {
+        return SMILE_PRESENT;
+    }
+
+    public static boolean isCborPresent() {
+        return CBOR_PRESENT;
+    }
+
+    public static MappingJackson2HttpMessageConverter json(Module module) {
+        return new MappingJackson2HttpMessageConverter(objectMapper(null, module));
+    }
+
+    public static MappingJackson2SmileHttpMessageConverter smile(Module module) {
+        if (!SMILE_PRESENT) {
+            throw new IllegalStateException("please add jackson-dataformat-smile to the classpath");
+        }
+        return SmileHolder.converter(module);
+    }
+
+    public static MappingJackson2CborHttpMessageConverter cbor(Module module) {
+        if (!CBOR_PRESENT) {
+            throw new IllegalStateException("please add jackson-dataformat-cbor to the classpath");
+        }
+        return CborHolder.converter(module);
+    }
+
+    /**
+     * loaded on the first smile() call only
+     */
+    private static final class SmileHolder {
+
+        static MappingJackson2SmileHttpMessageConverter converter(Module module) {
+            return new MappingJackson2SmileHttpMessageConverter(
+                    objectMapper(new SmileFactory(), module));
+        }
+    }
+
+    /**
+     * loaded on the first cbor() call only
+     */
+    private static final class CborHolder {
+
+        static MappingJackson2CborHttpMessageConverter converter(Module module) {
+            return new MappingJackson2CborHttpMessageConverter(
+                    objectMapper(new CBORFactory(), module));
+        }
+    }
+
+}
@@ -0,0 +1,181 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.template;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.URI;
+import java.net.URL;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+
+/**
+ *
+ * the streaming request factories of the template, whose requests can be
+ * aborted: closing a spring response reads the rest of the body so the
+ * connection can be reused, which is what a reader giving up on a large body
+ * does not want. Aborting cuts the connection instead (disconnect() of the
+ * HttpURLConnection, abort() of the apache request).
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+final class AbortableRequests {
+
+    /**
+     * the connection opened by the factory during createRequest(), read back
+     * and cleared before it returns
+     */
+    private static final ThreadLocal<Runnable> OPENED = new ThreadLocal<>();
+
+    private AbortableRequests() {
+    }
+
+    /**
+     * @return an HttpURLConnection factory which does not buffer the bodies
+     */
+    static SimpleClientHttpRequestFactory simpleStreaming() {
+        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory() {
+            @Override
+            protected HttpURLConnection openConnection(URL url, Proxy proxy) throws IOException {
+                HttpURLConnection connection = super.openConnection(url, proxy);
+                OPENED.set(connection::disconnect);
+                return connection;
+            }
+
+            @Override
+            public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+                return abortable(super.createRequest(uri, httpMethod));
+            }
+        };
+        factory.setBufferRequestBody(false);
+        return factory;
+    }
+
+    /**
+     * @param httpClient the client, shared with a pooled factory for instance
+     * @return an apache factory which does not buffer the bodies
+     */
+    static HttpComponentsClientHttpRequestFactory httpComponentsStreaming(HttpClient httpClient) {
+        HttpComponentsClientHttpRequestFactory factory = new HttpComponentsClientHttpRequestFactory(httpClient) {
+            @Override
+            protected HttpUriRequest createHttpUriRequest(HttpMethod httpMethod, URI uri) {
+                HttpUriRequest request = super.createHttpUriRequest(httpMethod, uri);
+                OPENED.set(request::abort);
+                return request;
+            }
+
+            @Override
+            public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+                return abortable(super.createRequest(uri, httpMethod));
+            }
+        };
+        factory.setBufferRequestBody(false);
+        return factory;
+    }
+
+    private static ClientHttpRequest abortable(ClientHttpRequest request) {
+        Runnable abort = OPENED.get();
+        OPENED.remove();
+        if (abort == null) {
+            return request;
+        }
+        return request instanceof StreamingHttpOutputMessage
+                ? new Streaming(request, abort) : new AbortableClientHttpRequest(request, abort);
+    }
+
+    /**
+     * @param request a request of the streaming request factory
+     * @return cuts its connection, null if the factory does not tell how
+     */
+    static Runnable abortOf(ClientHttpRequest request) {
+        return request instanceof AbortableClientHttpRequest ? ((AbortableClientHttpRequest) request).abort : null;
+    }
+
+    private static class AbortableClientHttpRequest implements ClientHttpRequest {
+
+        private final ClientHttpRequest request;
+        private final Runnable abort;
+
+        AbortableClientHttpRequest(ClientHttpRequest request, Runnable abort) {
+            this.request = request;
+            this.abort = abort;
+        }
+
+        @Override
+        public ClientHttpResponse execute() throws IOException {
+            return request.execute();
+        }
+
+        @Override
+        public OutputStream getBody() throws IOException {
+            return request.getBody();
+        }
+
+        @Override
+        public HttpMethod getMethod() {
+            return request.getMethod();
+        }
+
+        @Override
+        public String getMethodValue() {
+            return request.getMethodValue();
+        }
+
+        @Override
+        public URI getURI() {
+            return request.getURI();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return request.getHeaders();
+        }
+    }
+
+    private static final class Streaming extends AbortableClientHttpRequest implements StreamingHttpOutputMessage {
+
+        private final StreamingHttpOutputMessage streaming;
+
+        Streaming(ClientHttpRequest request, Runnable abort) {
+            super(request, abort);
+            this.streaming = (StreamingHttpOutputMessage) request;
+        }
+
+        @Override
+        public void setBody(Body body) {
+            streaming.setBody(body);
+        }
+    }
+
+}
@@ -23,26 +23,40 @@
  */
 package com.github.zg2pro.spring.rest.basis.template;
 
-import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.github.zg2pro.spring.rest.basis.exceptions.RestTemplateErrorHandler;
+import com.github.zg2pro.spring.rest.basis.metrics.ExchangePhases;
+import com.github.zg2pro.spring.rest.basis.metrics.ExchangeTimingListener;
+import com.github.zg2pro.spring.rest.basis.metrics.ExchangeTimings;
+import com.github.zg2pro.spring.rest.basis.metrics.UriTemplateContext;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import com.github.zg2pro.spring.rest.basis.serialization.CamelCaseToKebabCaseNamingStrategy;
+import com.github.zg2pro.spring.rest.basis.serialization.KebabCaseConverters;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.Map;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.Resource;
-import org.springframework.http.HttpEntity;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.StreamingHttpOutputMessage;
 import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
 import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.http.converter.ByteArrayHttpMessageConverter;
@@ -50,13 +64,16 @@ import org.springframework.http.converter.FormHttpMessageConverter;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.converter.ResourceHttpMessageConverter;
 import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.lang.Nullable;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MimeTypeUtils;
 import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.HttpMessageConverterExtractor;
 import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
@@ -73,12 +90,46 @@ public abstract class AbstractZg2proRestTemplate extends RestTemplate {
 
     private List<ClientHttpRequestInterceptor> lInterceptors;
     private MultiValueMap filesStreamingOperationsHttpHeaders;
+    private ClientHttpRequestFactory streamingRequestFactory;
+    private ClientHttpRequestFactory requestFactory;
+    private ParallelDownloadSettings parallelDownloadSettings;
+    private ResumableDownloadSettings resumableDownloadSettings;
+    private PartsUploadSettings partsUploadSettings = new PartsUploadSettings();
+    private TransferDigestSettings transferDigestSettings;
+    private CompressionSettings compressionSettings;
+    private DownloadSink downloadSink = DownloadSinks.streamCopy();
+    private BufferDownloadSettings bufferDownloadSettings = new BufferDownloadSettings();
+    private BandwidthSettings bandwidthSettings;
+    private TokenBucket globalBucket;
+    private final List<TransferProgressListener> transferProgressListeners = new CopyOnWriteArrayList<>();
+    private final List<ExchangeTimingListener> exchangeTimingListeners = new CopyOnWriteArrayList<>();
 
     @Override
     public List<ClientHttpRequestInterceptor> getInterceptors() {
         return lInterceptors;
     }
 
+    @Override
+    public void setRequestFactory(ClientHttpRequestFactory requestFactory) {
+        super.setRequestFactory(requestFactory);
+        this.requestFactory = requestFactory;
+    }
+
+    /**
+     * the request factory set already holds the interceptors chain, it must
+     * not be wrapped once more by InterceptingHttpAccessor, otherwise every
+     * interceptor would run twice
+     *
+     * @return the request factory
+     */
+    @Override
+    public ClientHttpRequestFactory getRequestFactory() {
+        if (requestFactory != null) {
+            return requestFactory;
+        }
+        return super.getRequestFactory();
+    }
+
     @Override
     public void setInterceptors(List<ClientHttpRequestInterceptor> interceptors) {
         this.lInterceptors = interceptors;
@@ -105,14 +156,221 @@ public abstract class AbstractZg2proRestTemplate extends RestTemplate {
         this.filesStreamingOperationsHttpHeaders = filesStreamingOperationsHttpHeaders;
     }
 
-    private ObjectMapper camelToKebabObjectMapper(SimpleModule sm) {
-        ObjectMapper jsonMapper = new ObjectMapper();
-        jsonMapper.setPropertyNamingStrategy(new CamelCaseToKebabCaseNamingStrategy());
-        if (sm != null) {
-            jsonMapper.registerModule(sm);
+    public ParallelDownloadSettings getParallelDownloadSettings() {
+        return parallelDownloadSettings;
+    }
+
+    /**
+     * @param parallelDownloadSettings enables the parallel ranged downloads of
+     * getForObject(url, path) and getForObjectAsFile(url, path), null (the
+     * default) downloads with a single stream
+     */
+    public void setParallelDownloadSettings(ParallelDownloadSettings parallelDownloadSettings) {
+        this.parallelDownloadSettings = parallelDownloadSettings;
+    }
+
+    public ResumableDownloadSettings getResumableDownloadSettings() {
+        return resumableDownloadSettings;
+    }
+
+    /**
+     * @param resumableDownloadSettings enables the resumable downloads of
+     * getForObject(url, path) and getForObjectAsFile(url, path), they take
+     * precedence over the parallel downloads, null (the default) restarts
+     * the downloads from scratch
+     */
+    public void setResumableDownloadSettings(ResumableDownloadSettings resumableDownloadSettings) {
+        this.resumableDownloadSettings = resumableDownloadSettings;
+    }
+
+    public PartsUploadSettings getPartsUploadSettings() {
+        return partsUploadSettings;
+    }
+
+    /**
+     * @param partsUploadSettings settings of postForPathInParts()
+     */
+    public void setPartsUploadSettings(PartsUploadSettings partsUploadSettings) {
+        if (partsUploadSettings == null) {
+            throw new IllegalArgumentException("please provide settings for the parts uploads");
+        }
+        this.partsUploadSettings = partsUploadSettings;
+    }
+
+    public TransferDigestSettings getTransferDigestSettings() {
+        return transferDigestSettings;
+    }
+
+    /**
+     * @param transferDigestSettings enables the digests of the files
+     * streaming operations (postForPath, postForPathAndDelete, getForObject),
+     * null (the default) transfers without digest
+     */
+    public void setTransferDigestSettings(TransferDigestSettings transferDigestSettings) {
+        this.transferDigestSettings = transferDigestSettings;
+    }
+
+    public CompressionSettings getCompressionSettings() {
+        return compressionSettings;
+    }
+
+    /**
+     * @param compressionSettings compresses the request bodies above its
+     * threshold and decodes the compressed responses, getForObject(url, path)
+     * downloads included, below the interceptors which see the bodies
+     * uncompressed. The streaming uploads and the ranged downloads are not
+     * concerned. Null (the default) leaves the exchanges as they are
+     */
+    public void setCompressionSettings(CompressionSettings compressionSettings) {
+        this.compressionSettings = compressionSettings;
+    }
+
+    public DownloadSink getDownloadSink() {
+        return downloadSink;
+    }
+
+    /**
+     * @param downloadSink writes the files of getForObject(url, path), see
+     * DownloadSinks, the parallel and resumable downloads write their ranges
+     * themselves
+     */
+    public void setDownloadSink(DownloadSink downloadSink) {
+        if (downloadSink == null) {
+            throw new IllegalArgumentException("please provide a download sink");
+        }
+        this.downloadSink = downloadSink;
+    }
+
+    public BufferDownloadSettings getBufferDownloadSettings() {
+        return bufferDownloadSettings;
+    }
+
+    /**
+     * @param bufferDownloadSettings settings of getForBuffer()
+     */
+    public void setBufferDownloadSettings(BufferDownloadSettings bufferDownloadSettings) {
+        if (bufferDownloadSettings == null) {
+            throw new IllegalArgumentException("please provide settings for the buffer downloads");
         }
-        jsonMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-        return jsonMapper;
+        this.bufferDownloadSettings = bufferDownloadSettings;
+    }
+
+    public BandwidthSettings getBandwidthSettings() {
+        return bandwidthSettings;
+    }
+
+    /**
+     * @param bandwidthSettings limits the bandwidth of the files streaming
+     * operations, null (the default) for none. The global bucket is created
+     * here, set the settings again after changing them.
+     */
+    public synchronized void setBandwidthSettings(BandwidthSettings bandwidthSettings) {
+        this.bandwidthSettings = bandwidthSettings;
+        this.globalBucket = bandwidthSettings == null || bandwidthSettings.getGlobalBytesPerSecond() == 0 ? null
+                : new TokenBucket(bandwidthSettings.getGlobalBytesPerSecond(), bandwidthSettings.getBurstBytes());
+    }
+
+    /**
+     * the listener receives the progress of the bodies sent and received by
+     * the files streaming operations. Nothing is measured while no listener
+     * is registered and no bandwidth limit is set.
+     *
+     * @param listener: called on the thread copying the body
+     */
+    public void addTransferProgressListener(TransferProgressListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("please provide a listener");
+        }
+        transferProgressListeners.add(listener);
+    }
+
+    public void removeTransferProgressListener(TransferProgressListener listener) {
+        transferProgressListeners.remove(listener);
+    }
+
+    /**
+     * @return null when there is nothing to limit nor report
+     */
+    private synchronized StreamShaper shaper(URI uri, boolean upload, long totalBytes) {
+        long perOperation = bandwidthSettings == null ? 0 : bandwidthSettings.getPerOperationBytesPerSecond();
+        if (globalBucket == null && perOperation == 0 && transferProgressListeners.isEmpty()) {
+            return null;
+        }
+        List<TokenBucket> buckets = new ArrayList<>(2);
+        if (globalBucket != null) {
+            buckets.add(globalBucket);
+        }
+        if (perOperation > 0) {
+            buckets.add(new TokenBucket(perOperation, bandwidthSettings.getBurstBytes()));
+        }
+        return new StreamShaper(buckets.toArray(new TokenBucket[0]), transferProgressListeners, uri, upload,
+                totalBytes);
+    }
+
+    /**
+     * the request factory used by the files streaming operations, it bypasses
+     * the interceptors and the buffering of the main request factory
+     *
+     * @return the streaming request factory
+     */
+    public ClientHttpRequestFactory getStreamingRequestFactory() {
+        if (streamingRequestFactory == null) {
+            streamingRequestFactory = AbortableRequests.simpleStreaming();
+        }
+        return streamingRequestFactory;
+    }
+
+    /**
+     *
+     * @param streamingRequestFactory a request factory which must not buffer
+     * the request bodies, otherwise the files would be loaded in memory before
+     * being sent
+     */
+    public void setStreamingRequestFactory(ClientHttpRequestFactory streamingRequestFactory) {
+        this.streamingRequestFactory = streamingRequestFactory;
+    }
+
+    /**
+     * the listener receives the phases breakdown (connection, time to first
+     * byte, body read, deserialization) of every exchange of this template.
+     * Nothing is measured while no listener is registered.
+     *
+     * @param listener: called on the caller thread at the end of each exchange
+     */
+    public void addExchangeTimingListener(ExchangeTimingListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("please provide a listener");
+        }
+        exchangeTimingListeners.add(listener);
+    }
+
+    public void removeExchangeTimingListener(ExchangeTimingListener listener) {
+        exchangeTimingListeners.remove(listener);
+    }
+
+    private void publish(ExchangePhases phases) {
+        ExchangeTimings timings = phases.end();
+        for (ExchangeTimingListener listener : exchangeTimingListeners) {
+            listener.onExchange(timings);
+        }
+    }
+
+    HttpHeaders filesStreamingHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        if (filesStreamingOperationsHttpHeaders != null) {
+            //the setter takes a raw map, its keys and values are headers
+            @SuppressWarnings("unchecked")
+            MultiValueMap<String, String> configured = filesStreamingOperationsHttpHeaders;
+            headers.addAll(configured);
+        }
+        if (!headers.containsKey(HttpHeaders.CONTENT_TYPE)) {
+            headers.add(HttpHeaders.CONTENT_TYPE, MimeTypeUtils.APPLICATION_OCTET_STREAM_VALUE);
+        }
+        return headers;
+    }
+
+    private ObjectMapper camelToKebabObjectMapper(SimpleModule sm) {
+        return KebabCaseConverters.objectMapper(null, sm);
     }
 
     protected AbstractZg2proRestTemplate(SimpleModule sm) {
@@ -125,6 +383,13 @@ public abstract class AbstractZg2proRestTemplate extends RestTemplate {
         messageConverters.add(new ResourceHttpMessageConverter());
         ObjectMapper jsonMapper = camelToKebabObjectMapper(sm);
         messageConverters.add(new MappingJackson2HttpMessageConverter(jsonMapper));
+        //the binary formats are only used when preferred, see setPreferredFormat()
+        if (KebabCaseConverters.isSmilePresent()) {
+            messageConverters.add(KebabCaseConverters.smile(sm));
+        }
+        if (KebabCaseConverters.isCborPresent()) {
+            messageConverters.add(KebabCaseConverters.cbor(sm));
+        }
         this.setMessageConverters(messageConverters);
         //errors handling
         this.setErrorHandler(new RestTemplateErrorHandler());
@@ -137,6 +402,44 @@ public abstract class AbstractZg2proRestTemplate extends RestTemplate {
         */
     }
 
+    /**
+     * the jackson converter of the format is moved before the other jackson
+     * converters: the request bodies are written in this format, and it comes
+     * first in the Accept header, the other formats following, so a server
+     * which does not support it still answers in JSON. Smile or CBOR save size
+     * and parsing time between services which both use this library.
+     * <b>NB:</b> the servers must then read the format for the request
+     * bodies, see KebabCaseConverters
+     *
+     * @param format: KebabCaseConverters.APPLICATION_SMILE,
+     * KebabCaseConverters.APPLICATION_CBOR, or MediaType.APPLICATION_JSON to
+     * come back to JSON
+     */
+    public void setPreferredFormat(MediaType format) {
+        if (format == null) {
+            throw new IllegalArgumentException("please provide a format");
+        }
+        List<HttpMessageConverter<?>> converters = getMessageConverters();
+        int firstJackson = -1;
+        int preferred = -1;
+        for (int i = 0; i < converters.size(); i++) {
+            HttpMessageConverter<?> converter = converters.get(i);
+            if (converter instanceof AbstractJackson2HttpMessageConverter) {
+                if (firstJackson < 0) {
+                    firstJackson = i;
+                }
+                if (preferred < 0 && converter.getSupportedMediaTypes().stream().anyMatch(mt -> mt.includes(format))) {
+                    preferred = i;
+                }
+            }
+        }
+        if (preferred < 0) {
+            throw new IllegalArgumentException("please provide a format among the jackson converters of the template, "
+                    + format + " is not supported");
+        }
+        converters.add(firstJackson, converters.remove(preferred));
+    }
+
     protected abstract void interceptorsIntegration(List<ClientHttpRequestInterceptor> lInterceptors, Object sslConfiguration);
 
     protected AbstractZg2proRestTemplate(@Nullable List<HttpMessageConverter<?>> lConverters,
@@ -153,18 +456,318 @@ public abstract class AbstractZg2proRestTemplate extends RestTemplate {
         }
     }
 
-    private <T> T postForPathPrivate(Path temp, String url, Class<T> returnType) throws RestClientException {
-        HttpEntity<Resource> he = new HttpEntity<>(new FileSystemResource(temp.toFile()), getFilesStreamingOperationsHttpHeaders());
-        return this.postForObject(url, he, returnType);
+    /**
+     * the url template is kept in UriTemplateContext during the call, so the
+     * interceptors can aggregate per endpoint
+     */
+    @Override
+    public <T> T execute(String url, HttpMethod method, @Nullable RequestCallback requestCallback,
+            @Nullable ResponseExtractor<T> responseExtractor, Object... uriVariables) throws RestClientException {
+        String previous = UriTemplateContext.enter(url);
+        try {
+            return super.execute(url, method, requestCallback, responseExtractor, uriVariables);
+        } finally {
+            UriTemplateContext.exit(previous);
+        }
+    }
+
+    /**
+     * the url template is kept in UriTemplateContext during the call, so the
+     * interceptors can aggregate per endpoint
+     */
+    @Override
+    public <T> T execute(String url, HttpMethod method, @Nullable RequestCallback requestCallback,
+            @Nullable ResponseExtractor<T> responseExtractor, Map<String, ?> uriVariables) throws RestClientException {
+        String previous = UriTemplateContext.enter(url);
+        try {
+            return super.execute(url, method, requestCallback, responseExtractor, uriVariables);
+        } finally {
+            UriTemplateContext.exit(previous);
+        }
+    }
+
+    /**
+     * the phases of the exchange are recorded when some timing listener is
+     * registered
+     */
+    @Override
+    protected <T> T doExecute(URI url, @Nullable HttpMethod method, @Nullable RequestCallback requestCallback,
+            @Nullable ResponseExtractor<T> responseExtractor) throws RestClientException {
+        if (exchangeTimingListeners.isEmpty() || method == null) {
+            return super.doExecute(url, method, requestCallback, responseExtractor);
+        }
+        ExchangePhases phases = ExchangePhases.start(url, method);
+        try {
+            return super.doExecute(url, method, requestCallback, phases.instrument(responseExtractor));
+        } finally {
+            publish(phases);
+        }
+    }
+
+    /**
+     * the request is instrumented above the interceptors too, for the request
+     * factories which do not instrument their own requests, see
+     * ExchangePhases.instrument(ClientHttpRequestFactory): then the first
+     * byte includes the work of the interceptors
+     */
+    @Override
+    protected ClientHttpRequest createRequest(URI url, HttpMethod method) throws IOException {
+        ClientHttpRequest request = super.createRequest(url, method);
+        ExchangePhases phases = exchangeTimingListeners.isEmpty() ? null : ExchangePhases.current();
+        return phases == null ? request : phases.instrument(request);
+    }
+
+    /**
+     * same as execute() but the request is created by the streaming request
+     * factory, hence the request body is written directly toward the
+     * connection and the interceptors are not applied. The error handler and
+     * the uri template handler of the template still apply.
+     *
+     * @param <T>: the return type of the response extractor
+     * @param url: the url, expanded by the uri template handler
+     * @param method: the http method
+     * @param requestCallback: writes the headers and the body, can be null
+     * @param responseExtractor: reads the response, can be null
+     * @return the extracted response
+     * @throws RestClientException
+     */
+    protected <T> T executeStreaming(String url, HttpMethod method,
+            @Nullable RequestCallback requestCallback,
+            @Nullable ResponseExtractor<T> responseExtractor) throws RestClientException {
+        URI uri = getUriTemplateHandler().expand(url);
+        ExchangePhases phases = exchangeTimingListeners.isEmpty() ? null : ExchangePhases.start(uri, method);
+        ClientHttpResponse response = null;
+        try {
+            ClientHttpRequest request = getStreamingRequestFactory().createRequest(uri, method);
+            if (phases != null) {
+                request = phases.instrument(request);
+                responseExtractor = phases.instrument(responseExtractor);
+            }
+            if (requestCallback != null) {
+                requestCallback.doWithRequest(request);
+            }
+            response = request.execute();
+            handleResponse(uri, method, response);
+            if (responseExtractor == null) {
+                return null;
+            }
+            StreamShaper shaper = method == HttpMethod.GET
+                    ? shaper(uri, false, response.getHeaders().getContentLength()) : null;
+            return responseExtractor.extractData(shaper == null ? response : shaper.wrap(response));
+        } catch (IOException ex) {
+            throw new ResourceAccessException("I/O error on " + method.name()
+                    + " request for \"" + url + "\": " + ex.getMessage(), ex);
+        } finally {
+            if (response != null) {
+                response.close();
+            }
+            if (phases != null) {
+                publish(phases);
+            }
+        }
+    }
+
+    void writeStreamingBody(ClientHttpRequest request, StreamingHttpOutputMessage.Body raw) throws IOException {
+        StreamShaper shaper = shaper(request.getURI(), true, request.getHeaders().getContentLength());
+        StreamingHttpOutputMessage.Body body = shaper == null ? raw : (OutputStream os) -> {
+            raw.writeTo(shaper.wrap(os));
+            shaper.finish();
+        };
+        if (request instanceof StreamingHttpOutputMessage) {
+            ((StreamingHttpOutputMessage) request).setBody(body);
+        } else {
+            body.writeTo(request.getBody());
+        }
+    }
+
+    private <T> T postForPathPrivate(Path temp, String url, Class<T> returnType,
+            boolean acknowledgementRequired) throws RestClientException {
+        long size;
+        try {
+            size = Files.size(temp);
+        } catch (IOException ioe) {
+            throw new ResourceAccessException("I/O error on the file " + temp + ": " + ioe.getMessage(), ioe);
+        }
+        return postStreaming(url, returnType, null, size, acknowledgementRequired,
+                digester -> digester == null ? StreamingBodies.ofFile(temp) : StreamingBodies.ofFile(temp, digester));
+    }
+
+    /**
+     * @param contentType replaces the one of the streaming headers when not
+     * null
+     * @param contentLength fixed-length streaming when known, chunked when
+     * negative
+     * @param bodies gives the body, digested by the digester when not null
+     */
+    private <T> T postStreaming(String url, Class<T> returnType, @Nullable MediaType contentType, long contentLength,
+            boolean acknowledgementRequired, Function<Digester, StreamingHttpOutputMessage.Body> bodies)
+            throws RestClientException {
+        final RequestCallback acceptCallback = acceptHeaderRequestCallback(returnType);
+        final HttpHeaders headers = filesStreamingHeaders();
+        final TransferDigestSettings digests = transferDigestSettings;
+        final Digester digester = digests == null ? null : digests.getAlgorithm().newDigester();
+        RequestCallback requestCallback = (ClientHttpRequest request) -> {
+            acceptCallback.doWithRequest(request);
+            request.getHeaders().putAll(headers);
+            if (contentType != null) {
+                request.getHeaders().setContentType(contentType);
+            }
+            //a known length means fixed-length streaming, chunked otherwise
+            if (contentLength >= 0) {
+                request.getHeaders().setContentLength(contentLength);
+            }
+            if (digester != null) {
+                //the digest is known once the body is sent, the server replies
+                //its own which acknowledges the upload
+                TransferDigests.want(request.getHeaders(), digests);
+            }
+            writeStreamingBody(request, bodies.apply(digester));
+        };
+        HttpMessageConverterExtractor<T> bodyExtractor = new HttpMessageConverterExtractor<>(returnType, getMessageConverters());
+        ResponseExtractor<T> responseExtractor = digester == null ? bodyExtractor : (ClientHttpResponse response) -> {
+            TransferDigests.check(TransferDigests.expected(response.getHeaders(), digests), digester.digest(),
+                    digests.isRequired() || acknowledgementRequired, "upload");
+            return bodyExtractor.extractData(response);
+        };
+        return executeStreaming(url, HttpMethod.POST, requestCallback, responseExtractor);
+    }
+
+    /**
+     *
+     * post the content of a stream to a service, in streaming mode like
+     * postForPath(), for the data generated on the fly which would otherwise
+     * go through a temporary file. The stream is read until its end and is not
+     * closed.
+     *
+     * @param <T>: the return type of the webmethod
+     * @param url: the url toward which the data will be sent
+     * @param in: the data to send
+     * @param contentLength: the number of bytes of the stream, sent with a
+     * fixed-length body, -1 if unknown, the body is then chunked
+     * @param returnType: the return type of the webmethod
+     * @return the response
+     */
+    public <T> T postForInputStream(String url, InputStream in, long contentLength, Class<T> returnType) {
+        if (in == null) {
+            throw new IllegalArgumentException("please provide a stream");
+        }
+        return postStreaming(url, returnType, null, contentLength, false, digester -> digester == null
+                ? StreamingBodies.ofInputStream(in) : StreamingBodies.digesting(StreamingBodies.ofInputStream(in), digester));
+    }
+
+    /**
+     *
+     * same as postForInputStream() with a chunked body
+     *
+     * @param <T>: the return type of the webmethod
+     * @param url: the url toward which the data will be sent
+     * @param in: the data to send
+     * @param returnType: the return type of the webmethod
+     * @return the response
+     */
+    public <T> T postForInputStream(String url, InputStream in, Class<T> returnType) {
+        return postForInputStream(url, in, -1, returnType);
+    }
+
+    /**
+     *
+     * post the content of a channel to a service, in streaming mode like
+     * postForPath(), from its current position, contentLength bytes or until
+     * its end when the length is unknown. A FileChannel is transferred without
+     * copying its bytes through the heap, its position is moved past the
+     * bytes sent like any channel read. The channel is not closed.
+     *
+     * @param <T>: the return type of the webmethod
+     * @param url: the url toward which the data will be sent
+     * @param channel: the data to send
+     * @param contentLength: the number of bytes of the channel, sent with a
+     * fixed-length body, -1 if unknown, the body is then chunked
+     * @param returnType: the return type of the webmethod
+     * @return the response
+     */
+    public <T> T postForChannel(String url, ReadableByteChannel channel, long contentLength, Class<T> returnType) {
+        if (channel == null) {
+            throw new IllegalArgumentException("please provide a channel");
+        }
+        return postStreaming(url, returnType, null, contentLength, false, digester -> digester == null
+                ? StreamingBodies.ofChannel(channel, contentLength)
+                : StreamingBodies.digesting(StreamingBodies.ofChannel(channel, contentLength), digester));
+    }
+
+    /**
+     *
+     * post what the writer writes toward the connection, with a chunked
+     * body, in streaming mode like postForPath(): an export or an archive can
+     * be generated while it is sent, without a temporary file
+     *
+     * @param <T>: the return type of the webmethod
+     * @param url: the url toward which the data will be sent
+     * @param writer: writes the data into the output stream, which it must
+     * not close
+     * @param returnType: the return type of the webmethod
+     * @return the response
+     */
+    public <T> T postForWriter(String url, StreamingHttpOutputMessage.Body writer, Class<T> returnType) {
+        if (writer == null) {
+            throw new IllegalArgumentException("please provide a writer");
+        }
+        return postStreaming(url, returnType, null, -1, false,
+                digester -> digester == null ? writer : StreamingBodies.digesting(writer, digester));
+    }
+
+    /**
+     * same as postForJsonStream(url, elements.iterator(), format, returnType),
+     * the stream is not closed
+     *
+     * @param <T>: the return type of the webmethod
+     * @param url: the url toward which the elements will be sent
+     * @param elements: the elements to send
+     * @param format: ARRAY or NDJSON, AUTO sends an array
+     * @param returnType: the return type of the webmethod
+     * @return the response
+     */
+    public <T> T postForJsonStream(String url, Stream<?> elements, JsonStreamFormat format, Class<T> returnType) {
+        if (elements == null) {
+            throw new IllegalArgumentException("please provide the elements to send");
+        }
+        return postForJsonStream(url, elements.iterator(), format, returnType);
     }
 
     /**
      *
-     * post a file to a service, the post is executed in a pseudo-streaming
-     * mode, which means TCP segments are sent toward the url immediately as
-     * soon as the sufficient data is read inside the input file. So you will
-     * not have any problem with memory management especially if you have to
-     * deal with big files.
+     * post a collection of elements as a JSON array, or as newline delimited
+     * JSON, serialized one by one toward the connection with a chunked body,
+     * unlike postForObject() which serializes the whole collection into the
+     * buffer of the template first: the memory used does not depend on the
+     * number of elements. The elements are serialized by the mapper of the
+     * template (kebab-case) and pulled from the iterator while they are sent,
+     * so they can be produced lazily, by a database cursor for instance.
+     *
+     * @param <T>: the return type of the webmethod
+     * @param url: the url toward which the elements will be sent
+     * @param elements: the elements to send
+     * @param format: ARRAY or NDJSON, AUTO sends an array
+     * @param returnType: the return type of the webmethod
+     * @return the response
+     */
+    public <T> T postForJsonStream(String url, Iterator<?> elements, JsonStreamFormat format, Class<T> returnType) {
+        if (elements == null || format == null) {
+            throw new IllegalArgumentException("please provide the elements to send and a format");
+        }
+        StreamingHttpOutputMessage.Body body = StreamingBodies.ofJsonSequence(jsonMapper().writer(), elements, format);
+        MediaType contentType = format == JsonStreamFormat.NDJSON
+                ? JsonStreamFormat.APPLICATION_NDJSON : MediaType.APPLICATION_JSON_UTF8;
+        return postStreaming(url, returnType, contentType, -1, false,
+                digester -> digester == null ? body : StreamingBodies.digesting(body, digester));
+    }
+
+    /**
+     *
+     * post a file to a service, the post is executed in streaming mode, which
+     * means the file is transferred from its FileChannel toward the connection
+     * with a fixed-length body, without going through the buffering nor the
+     * interceptors of the template. So you will not have any problem with
+     * memory management especially if you have to deal with big files.
      *
      * @param <T>: the return type of the webmethod
      * @param url: the url toward which a file (digital object) will be sent
@@ -173,19 +776,38 @@ public abstract class AbstractZg2proRestTemplate extends RestTemplate {
      * @return the response
      */
     public <T> T postForPath(String url, Path file, Class<T> returnType) {
-        return postForPathPrivate(file, url, returnType);
+        return postForPathPrivate(file, url, returnType, false);
+    }
+
+    /**
+     *
+     * upload a file in parts sent concurrently to a controller inheriting
+     * AbstractPartsUploadController, which assembles them. Each part is
+     * streamed like in postForPath() with its CRC32C, and sent again if it
+     * fails (see PartsUploadSettings), so a big file does not have to be sent
+     * again from its beginning after a network failure.
+     *
+     * @param <T>: the return type of the controller
+     * @param url: the url of the upload controller
+     * @param file: the file to upload toward the service
+     * @param returnType: the return type of the controller
+     * @return what the controller replies once the file is assembled
+     */
+    public <T> T postForPathInParts(String url, Path file, Class<T> returnType) {
+        return PartsUploads.upload(this, url, file, returnType, partsUploadSettings);
     }
 
     /**
      *
-     * post a file to a service, the post is executed in a pseudo-streaming
-     * mode, which means TCP segments are sent toward the url immediately as
-     * soon as the sufficient data is read inside the input file. So you will
-     * not have any problem with memory management especially if you have to
-     * deal with big files.
+     * post a file to a service, the post is executed in streaming mode, which
+     * means the file is transferred from its FileChannel toward the connection
+     * with a fixed-length body, without going through the buffering nor the
+     * interceptors of the template. So you will not have any problem with
+     * memory management especially if you have to deal with big files.
      *
      * When the upload is finished, your file will be deleted from your disk
-     * space
+     * space, with TransferDigestSettings only once the server replied the
+     * digest of what it received and it matches the file
      *
      * @param <T>: the return type of the webmethod
      * @param url: the url toward which a file (digital object) will be sent
@@ -195,18 +817,18 @@ public abstract class AbstractZg2proRestTemplate extends RestTemplate {
      * @throws java.io.IOException
      */
     public <T> T postForPathAndDelete(String url, Path file, Class<T> returnType) throws IOException {
-        T response = postForPathPrivate(file, url, returnType);
+        T response = postForPathPrivate(file, url, returnType, true);
         Files.delete(file);
         return response;
     }
 
     /**
      *
-     * post a file to a service, the post is executed in a pseudo-streaming
-     * mode, which means TCP segments are sent toward the url immediately as
-     * soon as the sufficient data is read inside the input file. So you will
-     * not have any problem with memory management especially if you have to
-     * deal with big files.
+     * post a file to a service, the post is executed in streaming mode, which
+     * means the file is transferred from its FileChannel toward the connection
+     * with a fixed-length body, without going through the buffering nor the
+     * interceptors of the template. So you will not have any problem with
+     * memory management especially if you have to deal with big files.
      * <b>NB:</b> handling your headers by an interceptor would slow down your
      * query execution, hence if you have to use headers, another method will
      * accept them as arguments. By the way, even the LoggingRequestInterceptor
@@ -216,7 +838,8 @@ public abstract class AbstractZg2proRestTemplate extends RestTemplate {
      * capabilities
      *
      * When the upload is finished, your file will be deleted from your disk
-     * space
+     * space, with TransferDigestSettings only once the server replied the
+     * digest of what it received and it matches the file
      *
      * @param <T>: the return type of the webmethod
      * @param url: the url toward which a file (digital object) will be sent
@@ -227,25 +850,208 @@ public abstract class AbstractZg2proRestTemplate extends RestTemplate {
      */
     public <T> T postForFileAndDelete(String url, File file, Class<T> returnType) throws IOException {
         Path p = file.toPath();
-        T response = postForPathPrivate(p, url, returnType);
+        T response = postForPathPrivate(p, url, returnType, true);
         Files.delete(p);
         return response;
     }
 
     private Path getForObjectPrivate(String serviceUrl, String tmpFilePath) {
+        if (resumableDownloadSettings != null) {
+            return ResumableDownloads.download(this, serviceUrl, Paths.get(tmpFilePath), resumableDownloadSettings,
+                    transferDigestSettings);
+        }
+        if (parallelDownloadSettings != null) {
+            return RangedDownloads.download(this, serviceUrl, Paths.get(tmpFilePath), parallelDownloadSettings,
+                    transferDigestSettings);
+        }
         final Map singleValueMap = getFilesStreamingOperationsHttpHeaders().toSingleValueMap();
         final Path temp = Paths.get(tmpFilePath);
+        final TransferDigestSettings digests = transferDigestSettings;
+        final DownloadSink sink = downloadSink;
         RequestCallback requestCallback = (ClientHttpRequest request) -> {
             request.getHeaders().setAll(singleValueMap);
+            if (digests != null) {
+                TransferDigests.want(request.getHeaders(), digests);
+            }
         };
-        ResponseExtractor<Void> responseExtractor = (ClientHttpResponse response) -> {
-            Files.copy(response.getBody(), temp, StandardCopyOption.REPLACE_EXISTING);
+        ResponseExtractor<Void> responseExtractor = (ClientHttpResponse raw) -> {
+            StreamShaper shaper = shaper(getUriTemplateHandler().expand(serviceUrl), false,
+                    raw.getHeaders().getContentLength());
+            ClientHttpResponse response = shaper == null ? raw : shaper.wrap(raw);
+            if (digests == null) {
+                sink.write(response.getBody(), response.getHeaders().getContentLength(), temp);
+            } else {
+                TransferDigests.download(response, temp, digests, sink);
+            }
             return null;
         };
         this.execute(serviceUrl, HttpMethod.GET, requestCallback, responseExtractor);
         return temp;
     }
 
+    /**
+     * download a file like getForObject(url, path) and feed the tees with its
+     * body in the same pass, so the file does not have to be read again to be
+     * parsed or indexed. The tees run on their own threads behind a bounded
+     * queue, the download goes at the pace of the slowest one. A tee failing
+     * stops receiving chunks, the download goes on and its failure is thrown
+     * at the end.
+     *
+     * @param serviceUrl service url of the file
+     * @param tmpFilePath file path for the file
+     * @param tees the consumers of the body
+     * @return the path object
+     */
+    public Path getForObjectAndTee(String serviceUrl, String tmpFilePath, DownloadTee... tees) {
+        if (tees == null || tees.length == 0) {
+            throw new IllegalArgumentException("please provide at least one tee");
+        }
+        final HttpHeaders headers = filesStreamingHeaders();
+        final Path target = Paths.get(tmpFilePath);
+        final List<DownloadTee> teeList = Arrays.asList(tees);
+        RequestCallback requestCallback = (ClientHttpRequest request) -> request.getHeaders().putAll(headers);
+        executeStreaming(serviceUrl, HttpMethod.GET, requestCallback, (ClientHttpResponse response) -> {
+            TeeDownloads.download(response.getBody(), target, teeList);
+            return null;
+        });
+        return target;
+    }
+
+    /**
+     * @return the mapper of the first jackson converter, the kebab-case one
+     * unless the converters were given to the constructor
+     */
+    ObjectMapper jsonMapper() {
+        for (HttpMessageConverter<?> converter : getMessageConverters()) {
+            if (converter instanceof MappingJackson2HttpMessageConverter) {
+                return ((MappingJackson2HttpMessageConverter) converter).getObjectMapper();
+            }
+        }
+        return camelToKebabObjectMapper(null);
+    }
+
+    /**
+     * a response left open for the caller, with the way to cut its connection
+     * when the body is not read until its end
+     */
+    private static final class OpenExchange {
+
+        private final ClientHttpResponse response;
+        private final Runnable abort;
+
+        OpenExchange(ClientHttpResponse response, Runnable abort) {
+            this.response = response;
+            this.abort = abort;
+        }
+    }
+
+    /**
+     * same as executeStreaming(), the response being left open for the caller
+     */
+    private OpenExchange openStreaming(String url, HttpMethod method, RequestCallback requestCallback) {
+        URI uri = getUriTemplateHandler().expand(url);
+        ClientHttpResponse response = null;
+        try {
+            ClientHttpRequest request = getStreamingRequestFactory().createRequest(uri, method);
+            requestCallback.doWithRequest(request);
+            response = request.execute();
+            handleResponse(uri, method, response);
+            StreamShaper shaper = shaper(uri, false, response.getHeaders().getContentLength());
+            return new OpenExchange(shaper == null ? response : shaper.wrap(response), AbortableRequests.abortOf(request));
+        } catch (IOException ex) {
+            if (response != null) {
+                response.close();
+            }
+            throw new ResourceAccessException("I/O error on " + method.name()
+                    + " request for \"" + url + "\": " + ex.getMessage(), ex);
+        } catch (RuntimeException re) {
+            if (response != null) {
+                response.close();
+            }
+            throw re;
+        }
+    }
+
+    /**
+     * same as getForStream(url, elementType, JsonStreamFormat.AUTO)
+     *
+     * @param <T>: the type of the elements
+     * @param url: the url of the listing
+     * @param elementType: the type of the elements
+     * @return the elements, to close
+     */
+    public <T> Stream<T> getForStream(String url, Class<T> elementType) {
+        return getForStream(url, elementType, JsonStreamFormat.AUTO);
+    }
+
+    /**
+     * read a JSON array, or newline delimited JSON, element by element while
+     * it is received, instead of binding the whole body into a list: the
+     * memory used does not depend on the number of elements. The elements are
+     * bound by the mapper of the template (kebab-case). The request goes
+     * through the streaming request factory, without the interceptors and
+     * their buffering.
+     * <b>NB:</b> the connection stays open until the stream is consumed or
+     * closed, use it in a try-with-resources, stream.iterator() gives an
+     * iterator over it. Closed before its end, or failing, the stream cuts
+     * the connection rather than reading the rest of the body, when the
+     * streaming request factory is the one of the template
+     *
+     * @param <T>: the type of the elements
+     * @param url: the url of the listing
+     * @param elementType: the type of the elements
+     * @param format: the layout of the elements
+     * @return the elements, to close
+     */
+    public <T> Stream<T> getForStream(String url, Class<T> elementType, JsonStreamFormat format) {
+        if (elementType == null || format == null) {
+            throw new IllegalArgumentException("please provide an element type and a format");
+        }
+        final HttpHeaders headers = filesStreamingHeaders();
+        headers.remove(HttpHeaders.CONTENT_TYPE);
+        RequestCallback requestCallback = (ClientHttpRequest request) -> {
+            request.getHeaders().putAll(headers);
+            request.getHeaders().setAccept(Arrays.asList(MediaType.APPLICATION_JSON,
+                    JsonStreamFormat.APPLICATION_NDJSON, MediaType.APPLICATION_STREAM_JSON));
+        };
+        ObjectMapper mapper = jsonMapper();
+        OpenExchange exchange = openStreaming(url, HttpMethod.GET, requestCallback);
+        ClientHttpResponse response = exchange.response;
+        JsonStreamIterator<T> iterator;
+        try {
+            iterator = new JsonStreamIterator<>(response, exchange.abort,
+                    mapper.getFactory().createParser(response.getBody()), mapper.readerFor(elementType), format);
+        } catch (IOException ioe) {
+            if (exchange.abort != null) {
+                exchange.abort.run();
+            }
+            response.close();
+            throw new ResourceAccessException("I/O error on the JSON stream of " + url + ": " + ioe.getMessage(), ioe);
+        }
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(iterator::close);
+    }
+
+    /**
+     * download a body into direct buffers leased from the pool of the
+     * BufferDownloadSettings, without going through the filesystem nor
+     * allocating a byte array on the heap. A body larger than the spill
+     * threshold goes to a temporary file instead. The download goes through
+     * the streaming request factory, like getForObject(url, path).
+     * <b>NB:</b> the result must be closed, which releases its buffers or
+     * deletes its file
+     *
+     * @param serviceUrl service url of the body
+     * @return the body, to close once read
+     */
+    public BufferDownload getForBuffer(String serviceUrl) {
+        final HttpHeaders headers = filesStreamingHeaders();
+        final BufferDownloadSettings settings = bufferDownloadSettings;
+        RequestCallback requestCallback = (ClientHttpRequest request) -> request.getHeaders().putAll(headers);
+        return executeStreaming(serviceUrl, HttpMethod.GET, requestCallback, (ClientHttpResponse response)
+                -> BufferDownloads.read(response.getBody(), response.getHeaders().getContentLength(), settings));
+    }
+
     /**
      * download a file from a url and retrieve a file stored on disk space, can
      * be a temporary file. The file is downloaded in streaming, which means the
@@ -256,6 +1062,15 @@ public abstract class AbstractZg2proRestTemplate extends RestTemplate {
      * query execution, hence if you have to use headers, another method will
      * accept them as arguments. By the way, even the LoggingRequestInterceptor
      * should not be used here
+     * <b>NB:</b> with ParallelDownloadSettings, the file is downloaded by
+     * concurrent range requests written at their offsets, when the server
+     * accepts ranges
+     * <b>NB:</b> with ResumableDownloadSettings, a download interrupted keeps
+     * its partial file and continues with a range request
+     * <b>NB:</b> with TransferDigestSettings, the file is digested while it is
+     * written and deleted if its digest differs from the server's one
+     * <b>NB:</b> the DownloadSink of the template writes the file, see
+     * DownloadSinks
      *
      * @param serviceUrl service url of the file
      * @param tmpFilePath file path for the file
@@ -278,6 +1093,15 @@ public abstract class AbstractZg2proRestTemplate extends RestTemplate {
      * <b>NB:</b> also you should know Path from java.nio is known to be more
      * performant than File from java.io and can provide all File class
      * capabilities
+     * <b>NB:</b> with ParallelDownloadSettings, the file is downloaded by
+     * concurrent range requests written at their offsets, when the server
+     * accepts ranges
+     * <b>NB:</b> with ResumableDownloadSettings, a download interrupted keeps
+     * its partial file and continues with a range request
+     * <b>NB:</b> with TransferDigestSettings, the file is digested while it is
+     * written and deleted if its digest differs from the server's one
+     * <b>NB:</b> the DownloadSink of the template writes the file, see
+     * DownloadSinks
      *
      * @param serviceUrl service url of the file
      * @param tmpFilePath file path for the file
@@ -0,0 +1,90 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.template;
+
+/**
+ *
+ * bandwidth limits of the files streaming operations, token buckets refilled
+ * at a number of bytes per second: a global one shared by all the streaming
+ * requests of the template, and one for each request (a parallel download
+ * makes one request per range). 0 means unlimited. The other calls of the
+ * template are not limited, so they keep the bandwidth left.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public class BandwidthSettings {
+
+    private static final long DEFAULT_BURST_BYTES = 256L * 1024;
+
+    private long globalBytesPerSecond;
+    private long perOperationBytesPerSecond;
+    private long burstBytes = DEFAULT_BURST_BYTES;
+
+    public long getGlobalBytesPerSecond() {
+        return globalBytesPerSecond;
+    }
+
+    /**
+     * @param globalBytesPerSecond limit of all the streaming requests
+     * together, 0 for none
+     */
+    public void setGlobalBytesPerSecond(long globalBytesPerSecond) {
+        if (globalBytesPerSecond < 0) {
+            throw new IllegalArgumentException("please provide a positive bandwidth");
+        }
+        this.globalBytesPerSecond = globalBytesPerSecond;
+    }
+
+    public long getPerOperationBytesPerSecond() {
+        return perOperationBytesPerSecond;
+    }
+
+    /**
+     * @param perOperationBytesPerSecond limit of each streaming request, 0 for
+     * none
+     */
+    public void setPerOperationBytesPerSecond(long perOperationBytesPerSecond) {
+        if (perOperationBytesPerSecond < 0) {
+            throw new IllegalArgumentException("please provide a positive bandwidth");
+        }
+        this.perOperationBytesPerSecond = perOperationBytesPerSecond;
+    }
+
+    public long getBurstBytes() {
+        return burstBytes;
+    }
+
+    /**
+     * @param burstBytes capacity of the buckets: bytes which can go at full
+     * speed after an idle period
+     */
+    public void setBurstBytes(long burstBytes) {
+        if (burstBytes < 1) {
+            throw new IllegalArgumentException("please provide a positive burst");
+        }
+        this.burstBytes = burstBytes;
+    }
+
+}
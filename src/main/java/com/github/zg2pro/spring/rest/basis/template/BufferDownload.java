@@ -0,0 +1,191 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.template;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ *
+ * a body downloaded by getForBuffer(), either in direct buffers leased from a
+ * pool or spilled into a temporary file. It must be closed once read: the
+ * buffers go back to the pool, the file is deleted. Not thread safe.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public final class BufferDownload implements AutoCloseable {
+
+    private final DirectBufferPool pool;
+    private final List<ByteBuffer> buffers;
+    private final Path file;
+    private final long size;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private BufferDownload(DirectBufferPool pool, List<ByteBuffer> buffers, Path file, long size) {
+        this.pool = pool;
+        this.buffers = buffers;
+        this.file = file;
+        this.size = size;
+    }
+
+    /**
+     * @param buffers flipped, leased from the pool
+     */
+    static BufferDownload ofBuffers(DirectBufferPool pool, List<ByteBuffer> buffers, long size) {
+        return new BufferDownload(pool, buffers, null, size);
+    }
+
+    static BufferDownload ofFile(Path file, long size) {
+        return new BufferDownload(null, Collections.emptyList(), file, size);
+    }
+
+    /**
+     * @return the number of bytes of the body
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return true if the body went to a temporary file
+     */
+    public boolean isSpilled() {
+        return file != null;
+    }
+
+    /**
+     * @return the temporary file, null if the body is in buffers
+     */
+    public Path getFile() {
+        checkNotReleased();
+        return file;
+    }
+
+    /**
+     * @return read-only views of the buffers in order, empty if the body was
+     * spilled, not to be used after close()
+     */
+    public List<ByteBuffer> getBuffers() {
+        checkNotReleased();
+        List<ByteBuffer> views = new ArrayList<>(buffers.size());
+        for (ByteBuffer buffer : buffers) {
+            views.add(buffer.asReadOnlyBuffer());
+        }
+        return views;
+    }
+
+    /**
+     * @return a stream over the body, wherever it is
+     */
+    public InputStream getInputStream() {
+        checkNotReleased();
+        if (file != null) {
+            try {
+                return Files.newInputStream(file);
+            } catch (IOException ioe) {
+                throw new UncheckedIOException(ioe);
+            }
+        }
+        return new BuffersInputStream(getBuffers());
+    }
+
+    private void checkNotReleased() {
+        if (released.get()) {
+            throw new IllegalStateException("the download was released");
+        }
+    }
+
+    /**
+     * gives the buffers back to the pool, or deletes the file
+     */
+    @Override
+    public void close() {
+        if (!released.compareAndSet(false, true)) {
+            return;
+        }
+        for (ByteBuffer buffer : buffers) {
+            pool.release(buffer);
+        }
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ioe) {
+                throw new UncheckedIOException(ioe);
+            }
+        }
+    }
+
+    private static final class BuffersInputStream extends InputStream {
+
+        private final List<ByteBuffer> buffers;
+        private int current;
+
+        BuffersInputStream(List<ByteBuffer> buffers) {
+            this.buffers = buffers;
+        }
+
+        private ByteBuffer buffer() {
+            while (current < buffers.size() && !buffers.get(current).hasRemaining()) {
+                current++;
+            }
+            return current < buffers.size() ? buffers.get(current) : null;
+        }
+
+        @Override
+        public int read() {
+            ByteBuffer buffer = buffer();
+            return buffer == null ? -1 : buffer.get() & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            ByteBuffer buffer = buffer();
+            if (buffer == null) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            ByteBuffer buffer = buffer();
+            return buffer == null ? 0 : buffer.remaining();
+        }
+    }
+
+}
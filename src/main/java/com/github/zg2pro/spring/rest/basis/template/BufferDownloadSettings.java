@@ -0,0 +1,87 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.template;
+
+import java.nio.file.Path;
+
+/**
+ *
+ * settings of getForBuffer(): the bodies up to the spill threshold are read
+ * into direct buffers leased from the pool, the larger ones are written into
+ * a temporary file. Sizes are in bytes.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public class BufferDownloadSettings {
+
+    private static final long DEFAULT_SPILL_THRESHOLD = 8L * 1024 * 1024;
+
+    private DirectBufferPool pool = new DirectBufferPool();
+    private long spillThreshold = DEFAULT_SPILL_THRESHOLD;
+    private Path spillDirectory;
+
+    public DirectBufferPool getPool() {
+        return pool;
+    }
+
+    /**
+     * @param pool the pool of the buffers, shared by the downloads
+     */
+    public void setPool(DirectBufferPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("please provide a buffer pool");
+        }
+        this.pool = pool;
+    }
+
+    public long getSpillThreshold() {
+        return spillThreshold;
+    }
+
+    /**
+     * @param spillThreshold the bodies larger than this (by their
+     * Content-Length, or once this many bytes are read without it) go to a
+     * temporary file
+     */
+    public void setSpillThreshold(long spillThreshold) {
+        if (spillThreshold < 0) {
+            throw new IllegalArgumentException("please provide a positive spill threshold");
+        }
+        this.spillThreshold = spillThreshold;
+    }
+
+    public Path getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    /**
+     * @param spillDirectory where the temporary files are created, null (the
+     * default) for java.io.tmpdir
+     */
+    public void setSpillDirectory(Path spillDirectory) {
+        this.spillDirectory = spillDirectory;
+    }
+
+}
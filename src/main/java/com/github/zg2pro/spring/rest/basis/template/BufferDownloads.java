@@ -0,0 +1,127 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.template;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *
+ * reads a body into leased direct buffers, or into a temporary file past the
+ * spill threshold
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+final class BufferDownloads {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private BufferDownloads() {
+    }
+
+    static BufferDownload read(InputStream body, long contentLength, BufferDownloadSettings settings)
+            throws IOException {
+        if (contentLength > settings.getSpillThreshold()) {
+            return spill(body, new ArrayList<>(), settings);
+        }
+        DirectBufferPool pool = settings.getPool();
+        ReadableByteChannel in = Channels.newChannel(body);
+        List<ByteBuffer> buffers = new ArrayList<>();
+        long size = 0;
+        try {
+            while (true) {
+                //the exact size when known, growing buffers otherwise
+                long wanted = contentLength >= 0 ? contentLength - size : Math.max(size, 1);
+                ByteBuffer buffer = pool.lease((int) Math.min(Math.max(wanted, 1), pool.getMaxBufferSize()));
+                buffers.add(buffer);
+                int read = 0;
+                while (buffer.hasRemaining() && (read = in.read(buffer)) >= 0) {
+                    //fills the buffer
+                }
+                size += buffer.position();
+                buffer.flip();
+                if (read < 0) {
+                    return BufferDownload.ofBuffers(pool, buffers, size);
+                }
+                if (size > settings.getSpillThreshold()) {
+                    //no or a wrong Content-Length
+                    return spill(body, buffers, settings);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            release(pool, buffers);
+            throw e;
+        }
+    }
+
+    /**
+     * @param buffers the beginning of the body, flipped, released here
+     */
+    private static BufferDownload spill(InputStream body, List<ByteBuffer> buffers, BufferDownloadSettings settings)
+            throws IOException {
+        Path file = settings.getSpillDirectory() == null ? Files.createTempFile("zg2pro-download", ".tmp")
+                : Files.createTempFile(settings.getSpillDirectory(), "zg2pro-download", ".tmp");
+        long size = 0;
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            for (ByteBuffer buffer : buffers) {
+                while (buffer.hasRemaining()) {
+                    size += out.write(buffer);
+                }
+            }
+            release(settings.getPool(), buffers);
+            byte[] bytes = new byte[BUFFER_SIZE];
+            ByteBuffer bb = ByteBuffer.wrap(bytes);
+            int read;
+            while ((read = body.read(bytes)) > 0) {
+                bb.clear().limit(read);
+                while (bb.hasRemaining()) {
+                    size += out.write(bb);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            release(settings.getPool(), buffers);
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return BufferDownload.ofFile(file, size);
+    }
+
+    private static void release(DirectBufferPool pool, List<ByteBuffer> buffers) {
+        for (ByteBuffer buffer : buffers) {
+            pool.release(buffer);
+        }
+        buffers.clear();
+    }
+
+}
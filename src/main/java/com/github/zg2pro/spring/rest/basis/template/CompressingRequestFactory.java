@@ -0,0 +1,289 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.template;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.net.URI;
+import java.util.function.Supplier;
+import java.util.zip.DeflaterOutputStream;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.StreamUtils;
+
+/**
+ *
+ * the compression layer of the template, right above the factory opening the
+ * connections hence below the interceptors: they see, and log, the bodies as
+ * the application sends and reads them. The request bodies reaching the
+ * threshold are compressed while they are written, a body of unknown length
+ * being held in memory only until it reaches the threshold. The responses are
+ * decoded while they are read, never buffered. Without settings the requests
+ * of the underlying factory are given as they are.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+final class CompressingRequestFactory implements ClientHttpRequestFactory {
+
+    static final String ACCEPTED_ENCODINGS = CompressionAlgorithm.GZIP.getToken() + ", "
+            + CompressionAlgorithm.DEFLATE.getToken();
+
+    private final ClientHttpRequestFactory requestFactory;
+    private final Supplier<CompressionSettings> settings;
+
+    CompressingRequestFactory(ClientHttpRequestFactory requestFactory, Supplier<CompressionSettings> settings) {
+        this.requestFactory = requestFactory;
+        this.settings = settings;
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+        ClientHttpRequest request = requestFactory.createRequest(uri, httpMethod);
+        CompressionSettings current = settings.get();
+        if (current == null) {
+            return request;
+        }
+        if (current.isDecodingResponses()) {
+            request.getHeaders().set(HttpHeaders.ACCEPT_ENCODING, ACCEPTED_ENCODINGS);
+        }
+        return new CompressingRequest(request, current);
+    }
+
+    private static final class CompressingRequest implements ClientHttpRequest {
+
+        private final ClientHttpRequest request;
+        private final CompressionSettings settings;
+        private AdaptiveOutputStream body;
+
+        CompressingRequest(ClientHttpRequest request, CompressionSettings settings) {
+            this.request = request;
+            this.settings = settings;
+        }
+
+        @Override
+        public ClientHttpResponse execute() throws IOException {
+            if (body != null) {
+                body.finish();
+            }
+            ClientHttpResponse response = request.execute();
+            CompressionAlgorithm coding = settings.isDecodingResponses()
+                    ? CompressionAlgorithm.of(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)) : null;
+            return coding == null ? response : new DecompressingClientHttpResponse(response, coding);
+        }
+
+        @Override
+        public OutputStream getBody() throws IOException {
+            if (body == null) {
+                body = new AdaptiveOutputStream(this);
+            }
+            return body;
+        }
+
+        @Override
+        public HttpMethod getMethod() {
+            return request.getMethod();
+        }
+
+        @Override
+        public String getMethodValue() {
+            return request.getMethodValue();
+        }
+
+        @Override
+        public URI getURI() {
+            return request.getURI();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return request.getHeaders();
+        }
+    }
+
+    /**
+     * decides between the raw body and the compressed one from the
+     * Content-Length, or from the bytes written when it is unknown
+     */
+    private static final class AdaptiveOutputStream extends OutputStream {
+
+        private final CompressingRequest owner;
+        private ByteArrayOutputStream pending;
+        private OutputStream target;
+        private DeflaterOutputStream compressor;
+        private boolean finished;
+
+        AdaptiveOutputStream(CompressingRequest owner) throws IOException {
+            this.owner = owner;
+            HttpHeaders headers = owner.getHeaders();
+            long length = headers.getContentLength();
+            if (headers.containsKey(HttpHeaders.CONTENT_ENCODING) || (length >= 0 && length < owner.settings.getThreshold())) {
+                target = owner.request.getBody();
+            } else if (length >= 0) {
+                compress();
+            } else {
+                pending = new ByteArrayOutputStream(Math.min(owner.settings.getThreshold(), 64 * 1024));
+            }
+        }
+
+        private void compress() throws IOException {
+            HttpHeaders headers = owner.getHeaders();
+            headers.remove(HttpHeaders.CONTENT_LENGTH);
+            headers.set(HttpHeaders.CONTENT_ENCODING, owner.settings.getAlgorithm().getToken());
+            compressor = owner.settings.getAlgorithm().compress(StreamUtils.nonClosing(owner.request.getBody()),
+                    owner.settings.getLevel());
+            target = compressor;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (finished) {
+                throw new IOException("the request body is already sent");
+            }
+            if (target == null) {
+                if (pending.size() + len < owner.settings.getThreshold()) {
+                    pending.write(b, off, len);
+                    return;
+                }
+                compress();
+                pending.writeTo(target);
+                pending = null;
+            }
+            target.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (target != null && compressor == null) {
+                target.flush();
+            }
+        }
+
+        void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            if (target == null) {
+                //below the threshold, sent as it is
+                owner.request.getBody().write(pending.toByteArray());
+                pending = null;
+            } else if (compressor != null) {
+                //releases the deflater, the connection body stays open
+                compressor.close();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+        }
+    }
+
+    /**
+     * the body decoded while it is read, without the headers describing the
+     * encoded one
+     */
+    private static final class DecompressingClientHttpResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse response;
+        private final CompressionAlgorithm coding;
+        private HttpHeaders headers;
+        private InputStream body;
+
+        DecompressingClientHttpResponse(ClientHttpResponse response, CompressionAlgorithm coding) {
+            this.response = response;
+            this.coding = coding;
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                PushbackInputStream raw = new PushbackInputStream(response.getBody(), 1);
+                int first = raw.read();
+                if (first < 0) {
+                    //an empty body has no compression header to read
+                    body = raw;
+                } else {
+                    raw.unread(first);
+                    body = coding.decompress(raw);
+                }
+            }
+            return body;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            if (headers == null) {
+                HttpHeaders decoded = new HttpHeaders();
+                decoded.putAll(response.getHeaders());
+                decoded.remove(HttpHeaders.CONTENT_ENCODING);
+                decoded.remove(HttpHeaders.CONTENT_LENGTH);
+                headers = HttpHeaders.readOnlyHttpHeaders(decoded);
+            }
+            return headers;
+        }
+
+        @Override
+        public HttpStatus getStatusCode() throws IOException {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public int getRawStatusCode() throws IOException {
+            return response.getRawStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return response.getStatusText();
+        }
+
+        @Override
+        public void close() {
+            try {
+                if (body != null) {
+                    body.close();
+                }
+            } catch (IOException ioe) {
+                //the response is closed anyway
+            } finally {
+                response.close();
+            }
+        }
+    }
+
+}
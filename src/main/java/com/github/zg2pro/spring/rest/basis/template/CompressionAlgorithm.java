@@ -0,0 +1,123 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.template;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ *
+ * the content codings of the compression settings, with their tokens of the
+ * Content-Encoding and Accept-Encoding headers
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public enum CompressionAlgorithm {
+
+    GZIP("gzip"),
+    /**
+     * zlib format, as http specifies it
+     */
+    DEFLATE("deflate");
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final String token;
+
+    CompressionAlgorithm(String token) {
+        this.token = token;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * @param contentEncoding a Content-Encoding header value
+     * @return the algorithm decoding it, null if none
+     */
+    static CompressionAlgorithm of(String contentEncoding) {
+        if (contentEncoding == null) {
+            return null;
+        }
+        String coding = contentEncoding.trim();
+        if (GZIP.token.equalsIgnoreCase(coding) || "x-gzip".equalsIgnoreCase(coding)) {
+            return GZIP;
+        }
+        return DEFLATE.token.equalsIgnoreCase(coding) ? DEFLATE : null;
+    }
+
+    /**
+     * @param os receives the compressed bytes, closed with the stream
+     * @param level the Deflater level
+     * @return the compressing stream, its deflater is released when it is
+     * closed
+     */
+    DeflaterOutputStream compress(OutputStream os, int level) throws IOException {
+        if (this == GZIP) {
+            return new GZIPOutputStream(os, BUFFER_SIZE) {
+                {
+                    def.setLevel(level);
+                }
+            };
+        }
+        Deflater deflater = new Deflater(level);
+        return new DeflaterOutputStream(os, deflater, BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    deflater.end();
+                }
+            }
+        };
+    }
+
+    InputStream decompress(InputStream is) throws IOException {
+        if (this == GZIP) {
+            return new GZIPInputStream(is, BUFFER_SIZE);
+        }
+        Inflater inflater = new Inflater();
+        return new InflaterInputStream(is, inflater, BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inflater.end();
+                }
+            }
+        };
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.template;
+
+import java.util.zip.Deflater;
+
+/**
+ *
+ * settings of the compression of the template exchanges: the request bodies
+ * larger than the threshold are compressed, the smaller ones are not worth
+ * the cpu, and the compressed responses are decoded while they are read.
+ * Sizes are in bytes.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public class CompressionSettings {
+
+    public static final int DEFAULT_THRESHOLD = 1024;
+
+    private CompressionAlgorithm algorithm = CompressionAlgorithm.GZIP;
+    private int threshold = DEFAULT_THRESHOLD;
+    private int level = Deflater.DEFAULT_COMPRESSION;
+    private boolean decodingResponses = true;
+
+    public CompressionAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @param algorithm the coding of the request bodies
+     */
+    public void setAlgorithm(CompressionAlgorithm algorithm) {
+        if (algorithm == null) {
+            throw new IllegalArgumentException("please provide a compression algorithm");
+        }
+        this.algorithm = algorithm;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * @param threshold the request bodies of at least this size are
+     * compressed, 0 compresses them all
+     */
+    public void setThreshold(int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("please provide a positive threshold");
+        }
+        this.threshold = threshold;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * @param level from Deflater.BEST_SPEED (1) to Deflater.BEST_COMPRESSION
+     * (9), or Deflater.DEFAULT_COMPRESSION
+     */
+    public void setLevel(int level) {
+        if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("please provide a compression level from 1 to 9, or -1");
+        }
+        this.level = level;
+    }
+
+    public boolean isDecodingResponses() {
+        return decodingResponses;
+    }
+
+    /**
+     * @param decodingResponses advertises gzip and deflate in Accept-Encoding
+     * and decodes the responses, true by default
+     */
+    public void setDecodingResponses(boolean decodingResponses) {
+        this.decodingResponses = decodingResponses;
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.template;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32C;
+
+/**
+ *
+ * the digests computed by the files streaming operations while the bytes go
+ * through, named by their tokens of the Digest header (RFC 3230)
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public enum DigestAlgorithm {
+
+    CRC32C("crc32c"),
+    SHA_256("sha-256"),
+    MD5("md5");
+
+    private final String token;
+
+    DigestAlgorithm(String token) {
+        this.token = token;
+    }
+
+    /**
+     * @return the name of the algorithm in the Digest and Want-Digest headers
+     */
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * @return a new digester, not thread safe
+     */
+    public Digester newDigester() {
+        if (this == CRC32C) {
+            return new Digester(this, new CRC32C());
+        }
+        try {
+            return new Digester(this, MessageDigest.getInstance(this == SHA_256 ? "SHA-256" : "MD5"));
+        } catch (NoSuchAlgorithmException nsae) {
+            //every jdk provides them
+            throw new IllegalStateException(nsae);
+        }
+    }
+
+}
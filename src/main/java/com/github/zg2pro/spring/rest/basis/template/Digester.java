@@ -0,0 +1,165 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.template;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.List;
+import java.util.zip.Checksum;
+
+/**
+ *
+ * accumulates the digest of the bytes of a transfer, java.util.zip checksums
+ * and MessageDigest behind the same methods. Also formats and parses the
+ * headers carrying the digests: "Digest: sha-256=base64" (RFC 3230),
+ * Content-MD5 (base64), and custom headers (hexadecimal).
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public final class Digester {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final DigestAlgorithm algorithm;
+    private final Checksum checksum;
+    private final MessageDigest messageDigest;
+
+    Digester(DigestAlgorithm algorithm, Checksum checksum) {
+        this.algorithm = algorithm;
+        this.checksum = checksum;
+        this.messageDigest = null;
+    }
+
+    Digester(DigestAlgorithm algorithm, MessageDigest messageDigest) {
+        this.algorithm = algorithm;
+        this.checksum = null;
+        this.messageDigest = messageDigest;
+    }
+
+    public DigestAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public void update(byte[] bytes, int offset, int length) {
+        if (checksum != null) {
+            checksum.update(bytes, offset, length);
+        } else {
+            messageDigest.update(bytes, offset, length);
+        }
+    }
+
+    /**
+     * @param bytes consumed up to its limit
+     */
+    public void update(ByteBuffer bytes) {
+        if (checksum != null) {
+            checksum.update(bytes);
+        } else {
+            messageDigest.update(bytes);
+        }
+    }
+
+    /**
+     * @return the digest of the bytes so far, a checksum as 4 big-endian
+     * bytes, the digester is reset for a MessageDigest
+     */
+    public byte[] digest() {
+        if (checksum != null) {
+            long value = checksum.getValue();
+            return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+        }
+        return messageDigest.digest();
+    }
+
+    /**
+     * @param algorithm the algorithm of the digest
+     * @param digest the digest
+     * @return the value of a Digest header
+     */
+    public static String toDigestHeader(DigestAlgorithm algorithm, byte[] digest) {
+        return algorithm.getToken() + "=" + Base64.getEncoder().encodeToString(digest);
+    }
+
+    /**
+     * @param digest the digest
+     * @return its lowercase hexadecimal form, for the custom headers
+     */
+    public static String toHex(byte[] digest) {
+        char[] chars = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            chars[2 * i] = HEX[(digest[i] >> 4) & 0xf];
+            chars[2 * i + 1] = HEX[digest[i] & 0xf];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * @param values the values of the Digest headers, each a comma separated
+     * list of token=base64
+     * @param algorithm the algorithm looked for
+     * @return the digest, null if absent or not base64
+     */
+    static byte[] parseDigestHeader(List<String> values, DigestAlgorithm algorithm) {
+        if (values == null) {
+            return null;
+        }
+        for (String value : values) {
+            for (String entry : value.split(",")) {
+                int eq = entry.indexOf('=');
+                if (eq > 0 && entry.substring(0, eq).trim().equalsIgnoreCase(algorithm.getToken())) {
+                    return decodeBase64(entry.substring(eq + 1).trim());
+                }
+            }
+        }
+        return null;
+    }
+
+    static byte[] decodeBase64(String value) {
+        try {
+            return Base64.getDecoder().decode(value);
+        } catch (IllegalArgumentException iae) {
+            return null;
+        }
+    }
+
+    static byte[] decodeHex(String value) {
+        String hex = value.trim();
+        if (hex.length() % 2 != 0) {
+            return null;
+        }
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(hex.charAt(2 * i), 16);
+            int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                return null;
+            }
+            bytes[i] = (byte) (high << 4 | low);
+        }
+        return bytes;
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.template;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *
+ * pool of direct buffers by size classes, the powers of two between the
+ * smallest and the largest buffer size. Direct buffers are expensive to
+ * allocate and are only freed by the garbage collector, so the released ones
+ * are kept, up to a number of bytes, for the next leases. Thread safe.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public class DirectBufferPool {
+
+    private static final int DEFAULT_MIN_BUFFER_SIZE = 64 * 1024;
+    private static final int DEFAULT_MAX_BUFFER_SIZE = 4 * 1024 * 1024;
+    private static final long DEFAULT_MAX_RETAINED_BYTES = 64L * 1024 * 1024;
+
+    private final int minShift;
+    private final Queue<ByteBuffer>[] classes;
+    private final long maxRetainedBytes;
+    private final AtomicLong retainedBytes = new AtomicLong();
+
+    public DirectBufferPool() {
+        this(DEFAULT_MIN_BUFFER_SIZE, DEFAULT_MAX_BUFFER_SIZE, DEFAULT_MAX_RETAINED_BYTES);
+    }
+
+    /**
+     * @param minBufferSize the smallest buffers, rounded up to a power of two
+     * @param maxBufferSize the largest buffers, rounded up to a power of two
+     * @param maxRetainedBytes the capacity of the buffers kept in the pool,
+     * the buffers released beyond are left to the garbage collector
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public DirectBufferPool(int minBufferSize, int maxBufferSize, long maxRetainedBytes) {
+        if (minBufferSize < 1 || maxBufferSize < minBufferSize || maxBufferSize > 1 << 30) {
+            throw new IllegalArgumentException("please provide buffer sizes between 1 byte and 1GB");
+        }
+        if (maxRetainedBytes < 0) {
+            throw new IllegalArgumentException("please provide a positive number of retained bytes");
+        }
+        this.minShift = shift(minBufferSize);
+        int maxShift = shift(maxBufferSize);
+        this.classes = new Queue[maxShift - minShift + 1];
+        for (int i = 0; i < classes.length; i++) {
+            classes[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.maxRetainedBytes = maxRetainedBytes;
+    }
+
+    /**
+     * @return the exponent of the smallest power of two holding size
+     */
+    private static int shift(int size) {
+        return 32 - Integer.numberOfLeadingZeros(size - 1);
+    }
+
+    public int getMaxBufferSize() {
+        return 1 << (minShift + classes.length - 1);
+    }
+
+    /**
+     * @return the capacity of the buffers waiting in the pool
+     */
+    public long getRetainedBytes() {
+        return retainedBytes.get();
+    }
+
+    /**
+     * @param size the bytes wanted
+     * @return a cleared buffer of the smallest class holding size, of the
+     * largest class if none does
+     */
+    public ByteBuffer lease(int size) {
+        int index = Math.min(classes.length - 1, Math.max(0, shift(Math.max(1, size)) - minShift));
+        ByteBuffer buffer = classes[index].poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(1 << (minShift + index));
+        }
+        retainedBytes.addAndGet(-buffer.capacity());
+        return buffer;
+    }
+
+    /**
+     * @param buffer a buffer leased from this pool, not to be used anymore
+     */
+    public void release(ByteBuffer buffer) {
+        int index = shift(buffer.capacity()) - minShift;
+        if (!buffer.isDirect() || index < 0 || index >= classes.length
+                || buffer.capacity() != 1 << (minShift + index)) {
+            throw new IllegalArgumentException("please release only the buffers leased from this pool");
+        }
+        if (retainedBytes.addAndGet(buffer.capacity()) > maxRetainedBytes) {
+            retainedBytes.addAndGet(-buffer.capacity());
+            return;
+        }
+        buffer.clear();
+        classes[index].offer(buffer);
+    }
+
+}
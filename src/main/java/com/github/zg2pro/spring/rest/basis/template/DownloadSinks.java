@@ -0,0 +1,201 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.template;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ *
+ * the download sinks:
+ * <ul>
+ * <li>streamCopy(): Files.copy with its small heap buffer, the default</li>
+ * <li>preallocatedChannel(): the file is given its final size first, then
+ * the body is read straight into a large array and written by one call per
+ * array</li>
+ * <li>memoryMapped(): the file is given its final size and mapped region by
+ * region, the body being copied into the page cache without write
+ * calls</li>
+ * </ul>
+ * The last two need the Content-Length, they fall back to streamCopy()
+ * without it. A body shorter or longer than announced gives a file of the
+ * size actually received, like streamCopy().
+ *
+ * None of them avoids copying the body: it is an InputStream, its bytes are
+ * read into a heap array first, whatever the sink. What changes is the number
+ * and the size of the system calls, measure it with your files before leaving
+ * streamCopy(). Giving the file its size makes it sparse on most file
+ * systems, the disk space is not reserved: a full disk still fails the
+ * download on the way.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public final class DownloadSinks {
+
+    private static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+    private static final long DEFAULT_REGION_SIZE = 64L * 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final DownloadSink STREAM_COPY = (InputStream body, long contentLength, Path target) -> {
+        Files.copy(body, target, StandardCopyOption.REPLACE_EXISTING);
+    };
+
+    private DownloadSinks() {
+    }
+
+    /**
+     * @return the sink copying the stream into the file
+     */
+    public static DownloadSink streamCopy() {
+        return STREAM_COPY;
+    }
+
+    /**
+     * @return a preallocating sink writing 1MB arrays
+     */
+    public static DownloadSink preallocatedChannel() {
+        return preallocatedChannel(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param bufferSize the size of the arrays, one per thread using the
+     * sink, kept between the downloads
+     * @return a preallocating sink writing large arrays
+     */
+    public static DownloadSink preallocatedChannel(int bufferSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("please provide a positive buffer size");
+        }
+        ThreadLocal<byte[]> buffers = ThreadLocal.withInitial(() -> new byte[bufferSize]);
+        return (InputStream body, long contentLength, Path target) -> {
+            if (contentLength < 0) {
+                STREAM_COPY.write(body, contentLength, target);
+                return;
+            }
+            byte[] buffer = buffers.get();
+            try (FileChannel out = preallocate(target, contentLength)) {
+                long position = 0;
+                int filled;
+                while ((filled = fill(body, buffer)) > 0) {
+                    position += write(buffer, filled, out, position);
+                }
+                out.truncate(position);
+            }
+        };
+    }
+
+    /**
+     * @return a mapping sink, by regions of 64MB
+     */
+    public static DownloadSink memoryMapped() {
+        return memoryMapped(DEFAULT_REGION_SIZE);
+    }
+
+    /**
+     * @param regionSize the size of the regions mapped one after the other,
+     * the address space used by a download
+     * @return a mapping sink
+     */
+    public static DownloadSink memoryMapped(long regionSize) {
+        if (regionSize < 1 || regionSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("please provide a region size between 1 and 2GB");
+        }
+        return (InputStream body, long contentLength, Path target) -> {
+            if (contentLength < 0) {
+                STREAM_COPY.write(body, contentLength, target);
+                return;
+            }
+            byte[] chunk = new byte[BUFFER_SIZE];
+            try (FileChannel out = preallocate(target, contentLength)) {
+                long position = 0;
+                boolean ended = false;
+                while (!ended && position < contentLength) {
+                    MappedByteBuffer region = out.map(FileChannel.MapMode.READ_WRITE, position,
+                            Math.min(regionSize, contentLength - position));
+                    while (region.hasRemaining()) {
+                        int read = body.read(chunk, 0, Math.min(chunk.length, region.remaining()));
+                        if (read < 0) {
+                            ended = true;
+                            break;
+                        }
+                        region.put(chunk, 0, read);
+                    }
+                    position += region.position();
+                }
+                if (!ended) {
+                    //a body longer than announced
+                    int read;
+                    while ((read = body.read(chunk)) >= 0) {
+                        position += write(chunk, read, out, position);
+                    }
+                }
+                out.truncate(position);
+            }
+        };
+    }
+
+    /**
+     * sets the size of the file with a single byte at its end, a sparse file
+     * on most file systems, no block is reserved
+     */
+    private static FileChannel preallocate(Path target, long length) throws IOException {
+        FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        if (length > 0) {
+            channel.write(ByteBuffer.allocate(1), length - 1);
+        }
+        return channel;
+    }
+
+    /**
+     * @return the bytes read, less than the buffer only at the end of the
+     * body
+     */
+    private static int fill(InputStream body, byte[] buffer) throws IOException {
+        int filled = 0;
+        int read;
+        while (filled < buffer.length && (read = body.read(buffer, filled, buffer.length - filled)) >= 0) {
+            filled += read;
+        }
+        return filled;
+    }
+
+    private static long write(byte[] bytes, int length, FileChannel out, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+        long written = 0;
+        while (buffer.hasRemaining()) {
+            written += out.write(buffer, position + written);
+        }
+        return written;
+    }
+
+}
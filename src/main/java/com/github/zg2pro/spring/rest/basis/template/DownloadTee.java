@@ -0,0 +1,121 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.template;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.function.Consumer;
+
+/**
+ *
+ * a consumer fed by getForObjectAndTee() with the body of a download while
+ * it is written into its file. Each tee runs on its own thread, behind a
+ * bounded queue of chunks: a slow tee slows the download down instead of
+ * letting the chunks pile up in memory.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public final class DownloadTee {
+
+    /**
+     * reads the body as a stream, for the parsers
+     */
+    @FunctionalInterface
+    public interface StreamParser {
+
+        /**
+         * @param body the body, ends with the download, fails with it
+         * @throws IOException
+         */
+        void parse(InputStream body) throws IOException;
+    }
+
+    /**
+     * receives the chunks of the body
+     */
+    @FunctionalInterface
+    interface ChunkConsumer {
+
+        void accept(ByteBuffer chunk) throws IOException;
+    }
+
+    private final ChunkConsumer chunks;
+    private final StreamParser parser;
+
+    private DownloadTee(ChunkConsumer chunks, StreamParser parser) {
+        this.chunks = chunks;
+        this.parser = parser;
+    }
+
+    /**
+     * @param consumer receives the chunks in order, read-only and valid
+     * during the call only
+     * @return the tee
+     */
+    public static DownloadTee of(Consumer<ByteBuffer> consumer) {
+        if (consumer == null) {
+            throw new IllegalArgumentException("please provide a consumer");
+        }
+        return new DownloadTee(consumer::accept, null);
+    }
+
+    /**
+     * @param channel receives the body, it is not closed
+     * @return the tee
+     */
+    public static DownloadTee of(WritableByteChannel channel) {
+        if (channel == null) {
+            throw new IllegalArgumentException("please provide a channel");
+        }
+        return new DownloadTee(chunk -> {
+            while (chunk.hasRemaining()) {
+                channel.write(chunk);
+            }
+        }, null);
+    }
+
+    /**
+     * @param parser reads the body, the chunks it leaves unread when it
+     * returns early are dropped
+     * @return the tee
+     */
+    public static DownloadTee ofParser(StreamParser parser) {
+        if (parser == null) {
+            throw new IllegalArgumentException("please provide a parser");
+        }
+        return new DownloadTee(null, parser);
+    }
+
+    ChunkConsumer getChunkConsumer() {
+        return chunks;
+    }
+
+    StreamParser getParser() {
+        return parser;
+    }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.template;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+
+/**
+ *
+ * binds the elements of a JSON stream one at a time while the body is read,
+ * only the current element is in memory. The response is closed at the end of
+ * the stream, on a failure, or by close(); before the end its connection is
+ * aborted, the rest of the body is not read.
+ *
+ * @param <T>: the type of the elements
+ * @author zg2pro
+ * @since 0.7
+ */
+final class JsonStreamIterator<T> implements Iterator<T>, Closeable {
+
+    private final ClientHttpResponse response;
+    private final Runnable abort;
+    private final JsonParser parser;
+    private final ObjectReader reader;
+    private final JsonStreamFormat format;
+    private boolean array;
+    private boolean started;
+    private boolean pending;
+    private boolean closed;
+    private boolean ended;
+
+    /**
+     * @param abort cuts the connection, null to let the response close it
+     */
+    JsonStreamIterator(ClientHttpResponse response, Runnable abort, JsonParser parser, ObjectReader reader,
+            JsonStreamFormat format) {
+        this.response = response;
+        this.abort = abort;
+        this.parser = parser;
+        this.reader = reader;
+        this.format = format;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (pending) {
+            return true;
+        }
+        if (closed) {
+            return false;
+        }
+        try {
+            JsonToken token = parser.nextToken();
+            if (!started) {
+                started = true;
+                array = token == JsonToken.START_ARRAY && format != JsonStreamFormat.NDJSON;
+                if (format == JsonStreamFormat.ARRAY && !array) {
+                    throw new RestClientException("the body is not a JSON array");
+                }
+                if (array) {
+                    token = parser.nextToken();
+                }
+            }
+            pending = token != null && !(array && token == JsonToken.END_ARRAY);
+        } catch (IOException ioe) {
+            throw failure(ioe);
+        } catch (RuntimeException re) {
+            close();
+            throw re;
+        }
+        if (!pending) {
+            ended = true;
+            close();
+        }
+        return pending;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        pending = false;
+        try {
+            return reader.readValue(parser);
+        } catch (IOException ioe) {
+            throw failure(ioe);
+        }
+    }
+
+    private RestClientException failure(IOException ioe) {
+        close();
+        if (ioe instanceof JsonProcessingException) {
+            return new RestClientException("could not read the JSON stream: " + ioe.getMessage(), ioe);
+        }
+        return new ResourceAccessException("I/O error on the JSON stream: " + ioe.getMessage(), ioe);
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        pending = false;
+        if (!ended && abort != null) {
+            //closing the response would read the rest of the body
+            abort.run();
+        }
+        try {
+            parser.close();
+        } catch (IOException ioe) {
+            //the response is closed anyway
+        } finally {
+            response.close();
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.template;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ *
+ * settings of the parallel ranged downloads of getForObject(url, path): the
+ * file is split into ranges fetched concurrently, each range being written at
+ * its offset in the preallocated file. Sizes are in bytes.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public class ParallelDownloadSettings {
+
+    private static final int DEFAULT_PARTS = 4;
+    private static final long DEFAULT_MIN_PART_SIZE = 8L * 1024 * 1024;
+
+    private int parts = DEFAULT_PARTS;
+    private long minPartSize = DEFAULT_MIN_PART_SIZE;
+    private ExecutorService executor;
+
+    public int getParts() {
+        return parts;
+    }
+
+    /**
+     * @param parts maximum number of ranges downloaded concurrently
+     */
+    public void setParts(int parts) {
+        if (parts < 1) {
+            throw new IllegalArgumentException("a download needs at least one part");
+        }
+        this.parts = parts;
+    }
+
+    public long getMinPartSize() {
+        return minPartSize;
+    }
+
+    /**
+     * @param minPartSize the files are not split into ranges smaller than
+     * this, a file smaller than twice this size is downloaded as a single
+     * stream
+     */
+    public void setMinPartSize(long minPartSize) {
+        if (minPartSize < 1) {
+            throw new IllegalArgumentException("please provide a positive part size");
+        }
+        this.minPartSize = minPartSize;
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * @param executor runs the ranges but the first one (which runs on the
+     * caller thread), if null a pool is created for each download and shut
+     * down at its end
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.template;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ *
+ * settings of postForPathInParts(): the file is cut into parts sent
+ * concurrently, each with its CRC32C, a part failing is sent again with an
+ * exponential backoff. Sizes are in bytes, durations in milliseconds.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public class PartsUploadSettings {
+
+    private static final long DEFAULT_PART_SIZE = 8L * 1024 * 1024;
+    private static final int DEFAULT_PARALLELISM = 4;
+    private static final int DEFAULT_MAX_ATTEMPTS_PER_PART = 3;
+    private static final long DEFAULT_INITIAL_BACKOFF = 500;
+    private static final long DEFAULT_MAX_BACKOFF = 10000;
+
+    private long partSize = DEFAULT_PART_SIZE;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private int maxAttemptsPerPart = DEFAULT_MAX_ATTEMPTS_PER_PART;
+    private long initialBackoff = DEFAULT_INITIAL_BACKOFF;
+    private long maxBackoff = DEFAULT_MAX_BACKOFF;
+    private ExecutorService executor;
+
+    public long getPartSize() {
+        return partSize;
+    }
+
+    /**
+     * @param partSize size of the parts, the last one being shorter
+     */
+    public void setPartSize(long partSize) {
+        if (partSize < 1) {
+            throw new IllegalArgumentException("please provide a positive part size");
+        }
+        this.partSize = partSize;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @param parallelism maximum number of parts sent concurrently
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("an upload needs at least one connection");
+        }
+        this.parallelism = parallelism;
+    }
+
+    public int getMaxAttemptsPerPart() {
+        return maxAttemptsPerPart;
+    }
+
+    /**
+     * @param maxAttemptsPerPart requests made for one part before giving up
+     * the upload
+     */
+    public void setMaxAttemptsPerPart(int maxAttemptsPerPart) {
+        if (maxAttemptsPerPart < 1) {
+            throw new IllegalArgumentException("a part needs at least one attempt");
+        }
+        this.maxAttemptsPerPart = maxAttemptsPerPart;
+    }
+
+    public long getInitialBackoff() {
+        return initialBackoff;
+    }
+
+    /**
+     * @param initialBackoff wait before the first retry of a part, doubled at
+     * each retry
+     */
+    public void setInitialBackoff(long initialBackoff) {
+        if (initialBackoff < 0) {
+            throw new IllegalArgumentException("please provide a positive backoff");
+        }
+        this.initialBackoff = initialBackoff;
+    }
+
+    public long getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    /**
+     * @param maxBackoff upper bound of the wait between two attempts
+     */
+    public void setMaxBackoff(long maxBackoff) {
+        if (maxBackoff < 0) {
+            throw new IllegalArgumentException("please provide a positive backoff");
+        }
+        this.maxBackoff = maxBackoff;
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * @param executor sends the parts but the ones sent from the caller
+     * thread, if null a pool is created for each upload and shut down at its
+     * end
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+}
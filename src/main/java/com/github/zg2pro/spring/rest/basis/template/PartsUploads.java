@@ -0,0 +1,189 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.template;
+
+import com.github.zg2pro.spring.rest.basis.exceptions.RestTemplateException;
+import com.github.zg2pro.spring.rest.basis.upload.PartsUploadProtocol;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.web.client.HttpMessageConverterExtractor;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+
+/**
+ *
+ * client side of the parts uploads, see PartsUploadProtocol: the parts are
+ * taken by the workers in order, each part is streamed from the FileChannel
+ * of the file with its own fixed-length request. The upload is abandoned
+ * (best effort DELETE) when a part fails too many times.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+final class PartsUploads {
+
+    private PartsUploads() {
+    }
+
+    static <T> T upload(AbstractZg2proRestTemplate template, String url, Path file, Class<T> returnType,
+            PartsUploadSettings settings) {
+        String uploadId = UUID.randomUUID().toString();
+        long size;
+        try {
+            size = Files.size(file);
+        } catch (IOException ioe) {
+            throw new ResourceAccessException("I/O error on the file " + file + ": " + ioe.getMessage(), ioe);
+        }
+        int parts = (int) Math.max(1, (size + settings.getPartSize() - 1) / settings.getPartSize());
+        HttpHeaders headers = template.filesStreamingHeaders();
+        try {
+            if (size > 0) {
+                sendParts(template, url + "/" + uploadId, file, size, parts, headers, settings);
+            }
+            RequestCallback acceptCallback = template.acceptHeaderRequestCallback(returnType);
+            RequestCallback completeCallback = (ClientHttpRequest request) -> {
+                acceptCallback.doWithRequest(request);
+                request.getHeaders().set(PartsUploadProtocol.UPLOAD_SIZE_HEADER, Long.toString(size));
+                request.getHeaders().set(PartsUploadProtocol.UPLOAD_PARTS_HEADER, Integer.toString(size > 0 ? parts : 0));
+            };
+            return template.executeStreaming(url + "/" + uploadId + "/complete", HttpMethod.POST, completeCallback,
+                    new HttpMessageConverterExtractor<>(returnType,
+                            template.getMessageConverters()));
+        } catch (RuntimeException re) {
+            abort(template, url + "/" + uploadId);
+            throw re;
+        }
+    }
+
+    private static void sendParts(AbstractZg2proRestTemplate template, String uploadUrl, Path file, long size,
+            int parts, HttpHeaders headers, PartsUploadSettings settings) {
+        int workers = Math.min(settings.getParallelism(), parts);
+        ExecutorService executor = settings.getExecutor();
+        ExecutorService pool = executor != null || workers < 2 ? executor : Executors.newFixedThreadPool(workers - 1, r -> {
+            Thread t = new Thread(r, "zg2pro-parts-upload");
+            t.setDaemon(true);
+            return t;
+        });
+        AtomicInteger next = new AtomicInteger();
+        Runnable worker = () -> {
+            int index;
+            while ((index = next.getAndIncrement()) < parts) {
+                long offset = index * settings.getPartSize();
+                long length = Math.min(settings.getPartSize(), size - offset);
+                sendPart(template, uploadUrl, file, index, offset, length, size, headers, settings);
+            }
+        };
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 1; i < workers; i++) {
+                futures.add(pool.submit(worker));
+            }
+            worker.run();
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } catch (RuntimeException re) {
+            next.set(parts);
+            throw re;
+        } catch (ExecutionException ee) {
+            next.set(parts);
+            if (ee.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ee.getCause();
+            }
+            throw new ResourceAccessException("parts upload to " + uploadUrl + " failed: " + ee.getCause());
+        } catch (InterruptedException ie) {
+            next.set(parts);
+            Thread.currentThread().interrupt();
+            throw new ResourceAccessException("parts upload to " + uploadUrl + " interrupted");
+        } finally {
+            if (executor == null && pool != null) {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    private static void sendPart(AbstractZg2proRestTemplate template, String uploadUrl, Path file, int index,
+            long offset, long length, long size, HttpHeaders headers, PartsUploadSettings settings) {
+        String checksum = checksum(file, offset, length);
+        RequestCallback callback = (ClientHttpRequest request) -> {
+            request.getHeaders().putAll(headers);
+            request.getHeaders().set(HttpHeaders.CONTENT_RANGE,
+                    "bytes " + offset + "-" + (offset + length - 1) + "/" + size);
+            request.getHeaders().set(PartsUploadProtocol.PART_CHECKSUM_HEADER, checksum);
+            request.getHeaders().setContentLength(length);
+            template.writeStreamingBody(request, StreamingBodies.ofFileRange(file, offset, length));
+        };
+        String partUrl = uploadUrl + "/parts/" + index;
+        long backoff = settings.getInitialBackoff();
+        for (int attempt = 1;; attempt++) {
+            try {
+                template.executeStreaming(partUrl, HttpMethod.PUT, callback, null);
+                return;
+            } catch (RestClientException | RestTemplateException e) {
+                if (attempt >= settings.getMaxAttemptsPerPart()) {
+                    throw e;
+                }
+            }
+            ResumableDownloads.sleep(backoff, partUrl);
+            backoff = Math.min(settings.getMaxBackoff(), backoff * 2);
+        }
+    }
+
+    /**
+     * computed on a read-only mapping of the part, without copying it
+     */
+    private static String checksum(Path file, long offset, long length) {
+        try (FileChannel fc = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer part = fc.map(FileChannel.MapMode.READ_ONLY, offset, length);
+            return PartsUploadProtocol.crc32c(part);
+        } catch (IOException ioe) {
+            throw new ResourceAccessException("I/O error on the file " + file + ": " + ioe.getMessage(), ioe);
+        }
+    }
+
+    private static void abort(AbstractZg2proRestTemplate template, String uploadUrl) {
+        try {
+            template.executeStreaming(uploadUrl, HttpMethod.DELETE, null, null);
+        } catch (RestClientException | RestTemplateException e) {
+            //an AbstractPartsUploadController expires it once idle for its getIdleTimeout()
+        }
+    }
+
+}
@@ -0,0 +1,233 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.template;
+
+import com.github.zg2pro.spring.rest.basis.exceptions.RestTemplateException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+
+/**
+ *
+ * downloads a file with concurrent range requests when the server announces
+ * it accepts them (Accept-Ranges: bytes and a Content-Length on a HEAD
+ * request), with a single stream otherwise. The requests go through the
+ * streaming request factory of the template.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+final class RangedDownloads {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String BYTES = "bytes";
+
+    private RangedDownloads() {
+    }
+
+    static Path download(AbstractZg2proRestTemplate template, String url, Path target,
+            ParallelDownloadSettings settings, TransferDigestSettings digests) {
+        HttpHeaders headers = template.filesStreamingHeaders();
+        if (digests != null) {
+            TransferDigests.want(headers, digests);
+        }
+        HttpHeaders probe;
+        try {
+            probe = template.executeStreaming(url, HttpMethod.HEAD, headersCallback(headers),
+                    response -> response.getHeaders());
+        } catch (RestClientException | RestTemplateException e) {
+            //HEAD is not supported everywhere
+            return single(template, url, target, headers, digests);
+        }
+        long length = probe.getContentLength();
+        int parts = (int) Math.min(settings.getParts(), length / settings.getMinPartSize());
+        if (!BYTES.equalsIgnoreCase(probe.getFirst(HttpHeaders.ACCEPT_RANGES)) || parts < 2) {
+            return single(template, url, target, headers, digests);
+        }
+        try {
+            parallel(template, url, target, headers, validator(probe), length, parts, settings.getExecutor());
+        } catch (RangeNotHonoredException rnhe) {
+            //the resource changed, or a proxy does not honor the ranges
+            return single(template, url, target, headers, digests);
+        }
+        if (digests != null) {
+            //the ranges arrive out of order, the file is digested once done
+            try {
+                TransferDigests.verifyFile(target, TransferDigests.expected(probe, digests), digests);
+            } catch (IOException ioe) {
+                throw new ResourceAccessException("I/O error on the file " + target + ": " + ioe.getMessage(), ioe);
+            }
+        }
+        return target;
+    }
+
+    private static Path single(AbstractZg2proRestTemplate template, String url, Path target, HttpHeaders headers,
+            TransferDigestSettings digests) {
+        template.executeStreaming(url, HttpMethod.GET, headersCallback(headers), response -> {
+            if (digests == null) {
+                template.getDownloadSink().write(response.getBody(), response.getHeaders().getContentLength(), target);
+            } else {
+                TransferDigests.download(response, target, digests, template.getDownloadSink());
+            }
+            return null;
+        });
+        return target;
+    }
+
+    private static RequestCallback headersCallback(HttpHeaders headers) {
+        return (ClientHttpRequest request) -> request.getHeaders().putAll(headers);
+    }
+
+    /**
+     * @return a strong ETag, or the Last-Modified date, null if there is none
+     */
+    private static String validator(HttpHeaders probe) {
+        String etag = probe.getETag();
+        if (etag != null && !etag.startsWith("W/")) {
+            return etag;
+        }
+        return probe.getFirst(HttpHeaders.LAST_MODIFIED);
+    }
+
+    private static void parallel(AbstractZg2proRestTemplate template, String url, Path target,
+            HttpHeaders headers, String validator, long length, int parts, ExecutorService executor) {
+        long partSize = length / parts;
+        ExecutorService pool = executor != null ? executor : Executors.newFixedThreadPool(parts - 1, r -> {
+            Thread t = new Thread(r, "zg2pro-ranged-download");
+            t.setDaemon(true);
+            return t;
+        });
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            //preallocation, the ranges are then written at their offsets
+            channel.write(ByteBuffer.allocate(1), length - 1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 1; i < parts; i++) {
+                long first = i * partSize;
+                long last = i == parts - 1 ? length - 1 : first + partSize - 1;
+                futures.add(pool.submit(() -> range(template, url, channel, headers, validator, first, last)));
+            }
+            try {
+                range(template, url, channel, headers, validator, 0, partSize - 1);
+                for (Future<?> f : futures) {
+                    f.get();
+                }
+            } catch (RuntimeException re) {
+                cancel(futures);
+                throw re;
+            } catch (ExecutionException ee) {
+                cancel(futures);
+                if (ee.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ee.getCause();
+                }
+                throw new ResourceAccessException("ranged download of " + url + " failed: " + ee.getCause(),
+                        ee.getCause() instanceof IOException ? (IOException) ee.getCause() : null);
+            } catch (InterruptedException ie) {
+                cancel(futures);
+                Thread.currentThread().interrupt();
+                throw new ResourceAccessException("ranged download of " + url + " interrupted");
+            }
+        } catch (IOException ioe) {
+            throw new ResourceAccessException("I/O error on the file " + target + ": " + ioe.getMessage(), ioe);
+        } finally {
+            if (executor == null) {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    private static void cancel(List<Future<?>> futures) {
+        for (Future<?> f : futures) {
+            f.cancel(true);
+        }
+    }
+
+    private static Void range(AbstractZg2proRestTemplate template, String url, FileChannel channel,
+            HttpHeaders headers, String validator, long first, long last) {
+        RequestCallback callback = (ClientHttpRequest request) -> {
+            request.getHeaders().putAll(headers);
+            request.getHeaders().set(HttpHeaders.RANGE, BYTES + "=" + first + "-" + last);
+            if (validator != null) {
+                request.getHeaders().set(HttpHeaders.IF_RANGE, validator);
+            }
+        };
+        return template.executeStreaming(url, HttpMethod.GET, callback, response -> {
+            if (response.getRawStatusCode() != HttpStatus.PARTIAL_CONTENT.value()) {
+                throw new RangeNotHonoredException();
+            }
+            long written = write(response.getBody(), channel, first);
+            if (written != last - first + 1) {
+                throw new IOException("range " + first + "-" + last + " of " + url
+                        + " ended after " + written + " bytes");
+            }
+            return null;
+        });
+    }
+
+    /**
+     * @return the number of bytes written from the position
+     */
+    static long write(InputStream in, FileChannel channel, long position) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        ByteBuffer bb = ByteBuffer.wrap(buffer);
+        long written = 0;
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            bb.clear().limit(read);
+            while (bb.hasRemaining()) {
+                written += channel.write(bb, position + written);
+            }
+        }
+        return written;
+    }
+
+    /**
+     * the server replied the whole resource instead of a range
+     */
+    private static class RangeNotHonoredException extends RestClientException {
+
+        private static final long serialVersionUID = 4127518830457120659L;
+
+        RangeNotHonoredException() {
+            super("range not honored");
+        }
+    }
+
+}
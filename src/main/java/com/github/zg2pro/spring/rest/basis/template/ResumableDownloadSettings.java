@@ -0,0 +1,125 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.template;
+
+/**
+ *
+ * settings of the resumable downloads of getForObject(url, path): the partial
+ * file is kept with a sidecar state file (validators of the resource and bytes
+ * written), and the download continues with Range/If-Range requests after a
+ * connection failure, retried with an exponential backoff. Durations are in
+ * milliseconds.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public class ResumableDownloadSettings {
+
+    private static final int DEFAULT_MAX_ATTEMPTS = 5;
+    private static final long DEFAULT_INITIAL_BACKOFF = 500;
+    private static final long DEFAULT_MAX_BACKOFF = 30000;
+    private static final long DEFAULT_CHECKPOINT_INTERVAL = 4L * 1024 * 1024;
+    private static final String DEFAULT_STATE_SUFFIX = ".resume";
+
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private long initialBackoff = DEFAULT_INITIAL_BACKOFF;
+    private long maxBackoff = DEFAULT_MAX_BACKOFF;
+    private long checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+    private String stateSuffix = DEFAULT_STATE_SUFFIX;
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @param maxAttempts requests made by one call before giving up, the
+     * partial file and its state are then kept for a later call
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("a download needs at least one attempt");
+        }
+        this.maxAttempts = maxAttempts;
+    }
+
+    public long getInitialBackoff() {
+        return initialBackoff;
+    }
+
+    /**
+     * @param initialBackoff wait before the first retry, doubled at each
+     * retry
+     */
+    public void setInitialBackoff(long initialBackoff) {
+        if (initialBackoff < 0) {
+            throw new IllegalArgumentException("please provide a positive backoff");
+        }
+        this.initialBackoff = initialBackoff;
+    }
+
+    public long getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    /**
+     * @param maxBackoff upper bound of the wait between two attempts
+     */
+    public void setMaxBackoff(long maxBackoff) {
+        if (maxBackoff < 0) {
+            throw new IllegalArgumentException("please provide a positive backoff");
+        }
+        this.maxBackoff = maxBackoff;
+    }
+
+    public long getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    /**
+     * @param checkpointInterval bytes written between two updates of the
+     * state file, the state is also saved when the connection fails
+     */
+    public void setCheckpointInterval(long checkpointInterval) {
+        if (checkpointInterval < 1) {
+            throw new IllegalArgumentException("please provide a positive checkpoint interval");
+        }
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    public String getStateSuffix() {
+        return stateSuffix;
+    }
+
+    /**
+     * @param stateSuffix appended to the name of the downloaded file to name
+     * its state file
+     */
+    public void setStateSuffix(String stateSuffix) {
+        if (stateSuffix == null || stateSuffix.isEmpty()) {
+            throw new IllegalArgumentException("please provide a suffix for the state files");
+        }
+        this.stateSuffix = stateSuffix;
+    }
+
+}
@@ -0,0 +1,275 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.template;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResourceAccessException;
+
+/**
+ *
+ * downloads a file with a single stream which survives the connection
+ * failures: what was received stays in the file, the sidecar state file
+ * remembers the validators of the resource, and the next attempt asks only
+ * for the missing bytes with Range and If-Range. A server replying the whole
+ * resource (it changed, or ranges are not supported) restarts the file.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+final class ResumableDownloads {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String ETAG = "etag";
+    private static final String LAST_MODIFIED = "last-modified";
+    private static final String LENGTH = "length";
+    private static final String BYTES = "bytes";
+
+    private ResumableDownloads() {
+    }
+
+    static Path download(AbstractZg2proRestTemplate template, String url, Path target,
+            ResumableDownloadSettings settings, TransferDigestSettings digests) {
+        Path statePath = target.resolveSibling(target.getFileName() + settings.getStateSuffix());
+        HttpHeaders headers = template.filesStreamingHeaders();
+        if (digests != null) {
+            TransferDigests.want(headers, digests);
+        }
+        State state = State.load(statePath, target);
+        if (state.length >= 0 && state.bytes == state.length) {
+            //completed by a previous call which could not remove its state
+            deleteState(statePath);
+            return target;
+        }
+        long backoff = settings.getInitialBackoff();
+        for (int attempt = 1;; attempt++) {
+            try {
+                byte[] expected = template.executeStreaming(url, HttpMethod.GET, rangeCallback(headers, state),
+                        response -> {
+                            receive(response, target, statePath, state, settings);
+                            return digests == null ? null : TransferDigests.expected(response.getHeaders(), digests);
+                        });
+                deleteState(statePath);
+                if (digests != null) {
+                    //the digest covers the whole file, resumed or not
+                    verify(target, expected, digests);
+                }
+                return target;
+            } catch (ResourceAccessException rae) {
+                if (attempt >= settings.getMaxAttempts()) {
+                    throw rae;
+                }
+                sleep(backoff, url);
+                backoff = Math.min(settings.getMaxBackoff(), backoff * 2);
+            }
+        }
+    }
+
+    private static void verify(Path target, byte[] expected, TransferDigestSettings digests) {
+        try {
+            TransferDigests.verifyFile(target, expected, digests);
+        } catch (IOException ioe) {
+            throw new ResourceAccessException("I/O error on the file " + target + ": " + ioe.getMessage(), ioe);
+        }
+    }
+
+    private static void deleteState(Path statePath) {
+        try {
+            Files.deleteIfExists(statePath);
+        } catch (IOException ioe) {
+            throw new ResourceAccessException("I/O error on the state file " + statePath + ": " + ioe.getMessage(), ioe);
+        }
+    }
+
+    static void sleep(long backoff, String url) {
+        //jitter, so the clients dropped together do not come back together
+        long wait = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+        try {
+            Thread.sleep(wait);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new ResourceAccessException("transfer of " + url + " interrupted");
+        }
+    }
+
+    private static RequestCallback rangeCallback(HttpHeaders headers, State state) {
+        return (ClientHttpRequest request) -> {
+            request.getHeaders().putAll(headers);
+            String validator = state.validator();
+            if (state.bytes > 0 && validator != null) {
+                request.getHeaders().set(HttpHeaders.RANGE, BYTES + "=" + state.bytes + "-");
+                request.getHeaders().set(HttpHeaders.IF_RANGE, validator);
+            }
+        };
+    }
+
+    private static Void receive(ClientHttpResponse response, Path target, Path statePath,
+            State state, ResumableDownloadSettings settings) throws IOException {
+        int status = response.getRawStatusCode();
+        HttpHeaders h = response.getHeaders();
+        if (status != HttpStatus.PARTIAL_CONTENT.value()
+                || state.bytes != firstByte(h.getFirst(HttpHeaders.CONTENT_RANGE))) {
+            //whole resource, from the beginning
+            state.reset();
+            state.etag = h.getETag();
+            state.lastModified = h.getFirst(HttpHeaders.LAST_MODIFIED);
+            state.length = h.getContentLength();
+        }
+        state.save(statePath);
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.truncate(state.bytes);
+            copy(response.getBody(), channel, statePath, state, settings.getCheckpointInterval());
+        }
+        if (state.length >= 0 && state.bytes != state.length) {
+            state.save(statePath);
+            throw new ResourceAccessException("download ended after " + state.bytes + " of " + state.length + " bytes");
+        }
+        return null;
+    }
+
+    private static void copy(InputStream in, FileChannel channel, Path statePath, State state,
+            long checkpointInterval) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        ByteBuffer bb = ByteBuffer.wrap(buffer);
+        long checkpoint = state.bytes + checkpointInterval;
+        try {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                bb.clear().limit(read);
+                while (bb.hasRemaining()) {
+                    state.bytes += channel.write(bb, state.bytes);
+                }
+                if (state.bytes >= checkpoint) {
+                    state.save(statePath);
+                    checkpoint = state.bytes + checkpointInterval;
+                }
+            }
+        } catch (IOException ioe) {
+            //what was written is kept for the next attempt
+            state.save(statePath);
+            throw new ResourceAccessException("download interrupted after " + state.bytes + " bytes: "
+                    + ioe.getMessage(), ioe);
+        }
+    }
+
+    /**
+     * @param contentRange for instance "bytes 100-199/1000"
+     * @return the first byte of the range, -1 if unreadable
+     */
+    static long firstByte(String contentRange) {
+        if (contentRange == null || !contentRange.startsWith(BYTES + " ")) {
+            return -1;
+        }
+        int dash = contentRange.indexOf('-');
+        try {
+            return dash < 0 ? -1 : Long.parseLong(contentRange.substring(BYTES.length() + 1, dash).trim());
+        } catch (NumberFormatException nfe) {
+            return -1;
+        }
+    }
+
+    /**
+     * content of the sidecar file
+     */
+    private static final class State {
+
+        private String etag;
+        private String lastModified;
+        private long length = -1;
+        private long bytes;
+
+        static State load(Path statePath, Path target) {
+            State state = new State();
+            if (!Files.exists(statePath) || !Files.exists(target)) {
+                return state;
+            }
+            Properties p = new Properties();
+            try (Reader r = Files.newBufferedReader(statePath, StandardCharsets.UTF_8)) {
+                p.load(r);
+                state.etag = p.getProperty(ETAG);
+                state.lastModified = p.getProperty(LAST_MODIFIED);
+                state.length = Long.parseLong(p.getProperty(LENGTH, "-1"));
+                //the file is written sequentially, its size is what was
+                //received, checkpoint included
+                state.bytes = Files.size(target);
+            } catch (IOException | NumberFormatException e) {
+                //unreadable state, the download restarts
+                return new State();
+            }
+            if (state.length >= 0 && state.bytes > state.length) {
+                return new State();
+            }
+            return state;
+        }
+
+        String validator() {
+            if (etag != null && !etag.startsWith("W/")) {
+                return etag;
+            }
+            return lastModified;
+        }
+
+        void reset() {
+            etag = null;
+            lastModified = null;
+            length = -1;
+            bytes = 0;
+        }
+
+        void save(Path statePath) throws IOException {
+            Properties p = new Properties();
+            if (etag != null) {
+                p.setProperty(ETAG, etag);
+            }
+            if (lastModified != null) {
+                p.setProperty(LAST_MODIFIED, lastModified);
+            }
+            p.setProperty(LENGTH, String.valueOf(length));
+            p.setProperty(BYTES, String.valueOf(bytes));
+            Path tmp = statePath.resolveSibling(statePath.getFileName() + ".tmp");
+            try (OutputStream os = Files.newOutputStream(tmp)) {
+                p.store(os, "resumable download state");
+            }
+            Files.move(tmp, statePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+}
@@ -0,0 +1,218 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.template;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ *
+ * applies the bandwidth limits and reports the progress of one body, by
+ * chunks of 64KB: a token bucket reservation and a clock read per chunk, the
+ * listeners being called at most every 100ms. Not thread safe, a body is
+ * copied by one thread.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+final class StreamShaper {
+
+    private static final int CHUNK = 64 * 1024;
+    private static final long REPORT_INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final TokenBucket[] buckets;
+    private final List<TransferProgressListener> listeners;
+    private final URI uri;
+    private final boolean upload;
+    private final long totalBytes;
+    private long bytes;
+    private long reportedBytes;
+    private long reportedAt = System.nanoTime();
+    private boolean done;
+
+    /**
+     * @param buckets the buckets to take the bytes from
+     */
+    StreamShaper(TokenBucket[] buckets, List<TransferProgressListener> listeners, URI uri, boolean upload,
+            long totalBytes) {
+        this.buckets = buckets;
+        this.listeners = listeners;
+        this.uri = uri;
+        this.upload = upload;
+        this.totalBytes = totalBytes;
+    }
+
+    private void transferred(int n) throws IOException {
+        for (TokenBucket bucket : buckets) {
+            bucket.acquire(n);
+        }
+        bytes += n;
+        if (!listeners.isEmpty()) {
+            long now = System.nanoTime();
+            if (now - reportedAt >= REPORT_INTERVAL) {
+                report(now, false);
+            }
+        }
+    }
+
+    /**
+     * the last report, once
+     */
+    void finish() {
+        if (!done) {
+            done = true;
+            report(System.nanoTime(), true);
+        }
+    }
+
+    private void report(long now, boolean last) {
+        double rate = now == reportedAt ? 0 : (bytes - reportedBytes) * 1e9 / (now - reportedAt);
+        reportedAt = now;
+        reportedBytes = bytes;
+        TransferProgress progress = new TransferProgress(uri, upload, bytes, totalBytes, rate, last);
+        for (TransferProgressListener listener : listeners) {
+            listener.onProgress(progress);
+        }
+    }
+
+    OutputStream wrap(OutputStream os) {
+        return new FilterOutputStream(os) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                transferred(1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                for (int written = 0; written < len;) {
+                    int n = Math.min(CHUNK, len - written);
+                    out.write(b, off + written, n);
+                    transferred(n);
+                    written += n;
+                }
+            }
+        };
+    }
+
+    InputStream wrap(InputStream is) {
+        return new FilterInputStream(is) {
+            @Override
+            public int read() throws IOException {
+                int b = in.read();
+                if (b < 0) {
+                    finish();
+                } else {
+                    transferred(1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int read = in.read(b, off, Math.min(len, CHUNK));
+                if (read < 0) {
+                    finish();
+                } else {
+                    transferred(read);
+                }
+                return read;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                long skipped = in.skip(Math.min(n, CHUNK));
+                transferred((int) skipped);
+                return skipped;
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    in.close();
+                } finally {
+                    finish();
+                }
+            }
+        };
+    }
+
+    /**
+     * @return the response whose body is shaped
+     */
+    ClientHttpResponse wrap(ClientHttpResponse response) {
+        return new ClientHttpResponse() {
+            private InputStream body;
+
+            @Override
+            public InputStream getBody() throws IOException {
+                if (body == null) {
+                    body = wrap(response.getBody());
+                }
+                return body;
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return response.getHeaders();
+            }
+
+            @Override
+            public HttpStatus getStatusCode() throws IOException {
+                return response.getStatusCode();
+            }
+
+            @Override
+            public int getRawStatusCode() throws IOException {
+                return response.getRawStatusCode();
+            }
+
+            @Override
+            public String getStatusText() throws IOException {
+                return response.getStatusText();
+            }
+
+            @Override
+            public void close() {
+                try {
+                    response.close();
+                } finally {
+                    if (body != null) {
+                        finish();
+                    }
+                }
+            }
+        };
+    }
+
+}
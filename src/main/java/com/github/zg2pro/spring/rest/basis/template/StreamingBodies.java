@@ -0,0 +1,258 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.template;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import org.springframework.http.StreamingHttpOutputMessage;
+
+/**
+ *
+ * request bodies written directly toward the connection output stream, used by
+ * the files streaming operations of AbstractZg2proRestTemplate
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+final class StreamingBodies {
+
+    private static final long MAPPING_SIZE = 8L * 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private StreamingBodies() {
+    }
+
+    /**
+     * the file is handed to FileChannel.transferTo, which lets the jdk move
+     * the bytes without copying them through the java heap (sendfile toward
+     * channels supporting it, mapped or direct buffers otherwise), so the heap
+     * use does not depend on the file size
+     *
+     * @param file the file to send
+     * @return the body
+     */
+    static StreamingHttpOutputMessage.Body ofFile(Path file) {
+        return (OutputStream os) -> {
+            try (FileChannel fc = FileChannel.open(file, StandardOpenOption.READ)) {
+                transfer(fc, Channels.newChannel(os));
+            }
+            os.flush();
+        };
+    }
+
+    /**
+     * same as ofFile(), the bytes going through the digester on their way:
+     * the file is mapped region by region, each region is digested then
+     * written, so the file is read once
+     *
+     * @param file the file to send
+     * @param digester updated with the bytes sent
+     * @return the body
+     */
+    static StreamingHttpOutputMessage.Body ofFile(Path file, Digester digester) {
+        return (OutputStream os) -> {
+            WritableByteChannel target = Channels.newChannel(os);
+            try (FileChannel fc = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = fc.size();
+                for (long position = 0; position < size; position += MAPPING_SIZE) {
+                    MappedByteBuffer region = fc.map(FileChannel.MapMode.READ_ONLY, position,
+                            Math.min(MAPPING_SIZE, size - position));
+                    digester.update(region.duplicate());
+                    while (region.hasRemaining()) {
+                        target.write(region);
+                    }
+                }
+            }
+            os.flush();
+        };
+    }
+
+    /**
+     * copies the stream toward the connection, the stream is not closed
+     *
+     * @param in the stream to send
+     * @return the body
+     */
+    static StreamingHttpOutputMessage.Body ofInputStream(InputStream in) {
+        return (OutputStream os) -> {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                os.write(buffer, 0, read);
+            }
+            os.flush();
+        };
+    }
+
+    /**
+     * copies the channel toward the connection from its current position, a
+     * FileChannel goes through transferTo like ofFile() and its position is
+     * moved past the bytes sent, the channel is not closed
+     *
+     * @param channel the channel to send
+     * @param length the number of bytes sent, -1 to send until the end of
+     * the channel
+     * @return the body
+     */
+    static StreamingHttpOutputMessage.Body ofChannel(ReadableByteChannel channel, long length) {
+        return (OutputStream os) -> {
+            WritableByteChannel target = Channels.newChannel(os);
+            if (channel instanceof FileChannel) {
+                FileChannel fc = (FileChannel) channel;
+                long from = fc.position();
+                long to = length < 0 ? fc.size() : from + length;
+                transfer(fc, target, from, to);
+                fc.position(to);
+            } else {
+                ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                long remaining = length < 0 ? Long.MAX_VALUE : length;
+                while (remaining > 0) {
+                    buffer.limit((int) Math.min(BUFFER_SIZE, remaining));
+                    if (channel.read(buffer) < 0) {
+                        if (length >= 0) {
+                            throw new EOFException("the channel ends after " + (length - remaining)
+                                    + " bytes instead of " + length);
+                        }
+                        break;
+                    }
+                    buffer.flip();
+                    remaining -= buffer.remaining();
+                    while (buffer.hasRemaining()) {
+                        target.write(buffer);
+                    }
+                    buffer.clear();
+                }
+            }
+            os.flush();
+        };
+    }
+
+    /**
+     * the elements are serialized one by one by a SequenceWriter, the
+     * generator writes toward the connection each time its buffer is full,
+     * never the whole collection at once
+     *
+     * @param writer the writer of the template mapper
+     * @param elements the elements to send, consumed by the body
+     * @param format ARRAY (or AUTO) for a JSON array, NDJSON for one element
+     * per line
+     * @return the body
+     */
+    static StreamingHttpOutputMessage.Body ofJsonSequence(ObjectWriter writer, Iterator<?> elements,
+            JsonStreamFormat format) {
+        return (OutputStream os) -> {
+            boolean ndjson = format == JsonStreamFormat.NDJSON;
+            ObjectWriter w = writer.without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                    .withRootValueSeparator(ndjson ? "\n" : ",");
+            boolean any = false;
+            try (SequenceWriter sequence = ndjson ? w.writeValues(os) : w.writeValuesAsArray(os)) {
+                while (elements.hasNext()) {
+                    sequence.write(elements.next());
+                    any = true;
+                }
+            }
+            if (ndjson && any) {
+                os.write('\n');
+            }
+            os.flush();
+        };
+    }
+
+    /**
+     * @param body any body
+     * @param digester updated with the bytes written by the body
+     * @return the body, digested on its way
+     */
+    static StreamingHttpOutputMessage.Body digesting(StreamingHttpOutputMessage.Body body, Digester digester) {
+        return (OutputStream os) -> body.writeTo(new FilterOutputStream(os) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                digester.update(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                digester.update(b, off, len);
+            }
+        });
+    }
+
+    /**
+     * same as ofFile() for a slice of the file
+     *
+     * @param file the file to send a part of
+     * @param offset the position of the first byte sent
+     * @param length the number of bytes sent
+     * @return the body
+     */
+    static StreamingHttpOutputMessage.Body ofFileRange(Path file, long offset, long length) {
+        return (OutputStream os) -> {
+            try (FileChannel fc = FileChannel.open(file, StandardOpenOption.READ)) {
+                transfer(fc, Channels.newChannel(os), offset, offset + length);
+            }
+            os.flush();
+        };
+    }
+
+    private static void transfer(FileChannel fc, WritableByteChannel target) throws IOException {
+        transfer(fc, target, 0, fc.size());
+    }
+
+    /**
+     * @throws EOFException if the file ends before to, the length announced
+     * could not be sent
+     */
+    private static void transfer(FileChannel fc, WritableByteChannel target, long from, long to) throws IOException {
+        long position = from;
+        while (position < to) {
+            long sent = fc.transferTo(position, to - position, target);
+            if (sent > 0) {
+                position += sent;
+            } else if (position >= fc.size()) {
+                throw new EOFException("the file ends at byte " + fc.size() + " instead of " + to
+                        + ", was it truncated while sent?");
+            }
+        }
+    }
+
+}
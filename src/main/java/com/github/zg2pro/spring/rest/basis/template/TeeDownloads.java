@@ -0,0 +1,305 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.template;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.web.client.ResourceAccessException;
+
+/**
+ *
+ * writes a body into its file and hands each chunk to the tees. The chunks
+ * come from a fixed set of buffers: a chunk goes back to the set once written
+ * and consumed by every tee, and the download waits for a free chunk, which
+ * is the backpressure of the slowest tee. Nothing is allocated per chunk but
+ * a read-only view for each tee.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+final class TeeDownloads {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int CHUNKS = 16;
+
+    private static final ExecutorService TEES = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "zg2pro-download-tee");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private TeeDownloads() {
+    }
+
+    private static final class Chunk {
+
+        private final byte[] bytes = new byte[CHUNK_SIZE];
+        private final AtomicInteger references = new AtomicInteger();
+        private int length;
+    }
+
+    /**
+     * the chunks waiting for a tee
+     */
+    private static final class Lane {
+
+        private final BlockingQueue<Chunk> free;
+        private final ArrayDeque<Chunk> chunks = new ArrayDeque<>();
+        private boolean closed;
+        private boolean ended;
+        private IOException failure;
+
+        Lane(BlockingQueue<Chunk> free) {
+            this.free = free;
+        }
+
+        /**
+         * @return false if the tee does not take chunks anymore
+         */
+        synchronized boolean offer(Chunk chunk) {
+            if (closed) {
+                return false;
+            }
+            chunks.add(chunk);
+            notifyAll();
+            return true;
+        }
+
+        synchronized void end(IOException downloadFailure) {
+            ended = true;
+            failure = downloadFailure;
+            notifyAll();
+        }
+
+        /**
+         * @return the next chunk, null at the end of the body
+         */
+        synchronized Chunk take() throws IOException {
+            while (chunks.isEmpty() && !ended) {
+                try {
+                    wait();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("tee interrupted");
+                }
+            }
+            if (!chunks.isEmpty()) {
+                return chunks.poll();
+            }
+            if (failure != null) {
+                throw new IOException("download failed", failure);
+            }
+            return null;
+        }
+
+        /**
+         * the tee is done, early or not, its chunks are released
+         */
+        synchronized void close() {
+            closed = true;
+            Chunk chunk;
+            while ((chunk = chunks.poll()) != null) {
+                release(chunk);
+            }
+        }
+
+        void release(Chunk chunk) {
+            TeeDownloads.release(chunk, free);
+        }
+
+        void run(DownloadTee tee) throws IOException {
+            try {
+                if (tee.getParser() != null) {
+                    try (LaneInputStream in = new LaneInputStream(this)) {
+                        tee.getParser().parse(in);
+                    }
+                } else {
+                    Chunk chunk;
+                    while ((chunk = take()) != null) {
+                        try {
+                            tee.getChunkConsumer().accept(ByteBuffer.wrap(chunk.bytes, 0, chunk.length).asReadOnlyBuffer());
+                        } finally {
+                            release(chunk);
+                        }
+                    }
+                }
+            } finally {
+                close();
+            }
+        }
+    }
+
+    private static final class LaneInputStream extends InputStream {
+
+        private final Lane lane;
+        private Chunk chunk;
+        private int position;
+        private boolean ended;
+
+        LaneInputStream(Lane lane) {
+            this.lane = lane;
+        }
+
+        private boolean next() throws IOException {
+            if (chunk != null && position < chunk.length) {
+                return true;
+            }
+            if (chunk != null) {
+                lane.release(chunk);
+                chunk = null;
+            }
+            if (ended) {
+                return false;
+            }
+            chunk = lane.take();
+            position = 0;
+            ended = chunk == null;
+            return !ended;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return next() ? chunk.bytes[position++] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!next()) {
+                return -1;
+            }
+            int n = Math.min(len, chunk.length - position);
+            System.arraycopy(chunk.bytes, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+            if (chunk != null) {
+                lane.release(chunk);
+                chunk = null;
+            }
+            ended = true;
+        }
+    }
+
+    static void download(InputStream body, Path target, List<DownloadTee> tees) throws IOException {
+        BlockingQueue<Chunk> free = new ArrayBlockingQueue<>(CHUNKS);
+        for (int i = 0; i < CHUNKS; i++) {
+            free.add(new Chunk());
+        }
+        List<Lane> lanes = new ArrayList<>();
+        List<Future<?>> futures = new ArrayList<>();
+        for (DownloadTee tee : tees) {
+            Lane lane = new Lane(free);
+            lanes.add(lane);
+            futures.add(TEES.submit(() -> {
+                lane.run(tee);
+                return null;
+            }));
+        }
+        IOException failure = null;
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (true) {
+                Chunk chunk = free.take();
+                int read = body.read(chunk.bytes);
+                if (read < 0) {
+                    free.add(chunk);
+                    break;
+                }
+                chunk.length = read;
+                ByteBuffer bb = ByteBuffer.wrap(chunk.bytes, 0, read);
+                while (bb.hasRemaining()) {
+                    out.write(bb);
+                }
+                //one reference for the writer, released once offered
+                chunk.references.set(lanes.size() + 1);
+                for (Lane lane : lanes) {
+                    if (!lane.offer(chunk)) {
+                        lane.release(chunk);
+                    }
+                }
+                release(chunk, free);
+            }
+        } catch (IOException ioe) {
+            failure = ioe;
+            throw ioe;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            failure = new InterruptedIOException("download interrupted");
+            throw failure;
+        } finally {
+            for (Lane lane : lanes) {
+                lane.end(failure);
+            }
+            if (failure == null) {
+                await(futures);
+            }
+        }
+    }
+
+    private static void release(Chunk chunk, BlockingQueue<Chunk> free) {
+        if (chunk.references.decrementAndGet() == 0) {
+            free.add(chunk);
+        }
+    }
+
+    private static void await(List<Future<?>> futures) {
+        for (Future<?> f : futures) {
+            try {
+                f.get();
+            } catch (ExecutionException ee) {
+                Throwable cause = ee.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new ResourceAccessException("download tee failed: " + cause.getMessage(),
+                        cause instanceof IOException ? (IOException) cause : null);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new ResourceAccessException("interrupted while waiting for the download tees");
+            }
+        }
+    }
+
+}
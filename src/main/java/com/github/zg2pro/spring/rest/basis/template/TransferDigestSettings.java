@@ -0,0 +1,87 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.template;
+
+/**
+ *
+ * settings of the digests computed by the files streaming operations while
+ * the bytes are copied, so a file is not read again to be checked:
+ * <ul>
+ * <li>downloads ask for the digest with Want-Digest, and compare it with the
+ * Digest header of the response (or Content-MD5, or the custom header)</li>
+ * <li>uploads ask the server to reply the digest of what it received, and
+ * compare it with the digest of what was sent. postForPathAndDelete() deletes
+ * the file only when the digests match</li>
+ * </ul>
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public class TransferDigestSettings {
+
+    private DigestAlgorithm algorithm = DigestAlgorithm.SHA_256;
+    private String header;
+    private boolean required;
+
+    public DigestAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @param algorithm the digest computed, SHA-256 by default, CRC32C is
+     * much cheaper when only the transmission errors matter
+     */
+    public void setAlgorithm(DigestAlgorithm algorithm) {
+        if (algorithm == null) {
+            throw new IllegalArgumentException("please provide a digest algorithm");
+        }
+        this.algorithm = algorithm;
+    }
+
+    public String getHeader() {
+        return header;
+    }
+
+    /**
+     * @param header a custom header carrying the digest in hexadecimal, in
+     * the requests and in the responses, null (the default) uses Digest
+     */
+    public void setHeader(String header) {
+        this.header = header;
+    }
+
+    public boolean isRequired() {
+        return required;
+    }
+
+    /**
+     * @param required fails the transfers for which the server gives no
+     * digest, otherwise they are accepted without verification (but the file
+     * of postForPathAndDelete() is not deleted)
+     */
+    public void setRequired(boolean required) {
+        this.required = required;
+    }
+
+}
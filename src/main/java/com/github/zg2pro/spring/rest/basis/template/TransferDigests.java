@@ -0,0 +1,196 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.template;
+
+import com.github.zg2pro.spring.rest.basis.exceptions.TransferDigestException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ *
+ * the digest verifications of the files streaming operations
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+final class TransferDigests {
+
+    static final String WANT_DIGEST = "Want-Digest";
+    static final String DIGEST = "Digest";
+    static final String CONTENT_MD5 = "Content-MD5";
+
+    private static final long MAPPING_SIZE = 64L * 1024 * 1024;
+
+    private TransferDigests() {
+    }
+
+    /**
+     * asks the server for the digest of the representation, or of what it
+     * received for an upload
+     */
+    static void want(HttpHeaders request, TransferDigestSettings settings) {
+        request.set(WANT_DIGEST, settings.getAlgorithm().getToken());
+    }
+
+    /**
+     * @return the digest announced by the server, null if none
+     */
+    static byte[] expected(HttpHeaders response, TransferDigestSettings settings) {
+        if (settings.getHeader() != null) {
+            String value = response.getFirst(settings.getHeader());
+            return value == null ? null : Digester.decodeHex(value);
+        }
+        byte[] digest = Digester.parseDigestHeader(response.get(DIGEST), settings.getAlgorithm());
+        if (digest == null && settings.getAlgorithm() == DigestAlgorithm.MD5) {
+            String md5 = response.getFirst(CONTENT_MD5);
+            digest = md5 == null ? null : Digester.decodeBase64(md5.trim());
+        }
+        return digest;
+    }
+
+    /**
+     * @param expected the digest announced by the server
+     * @param actual the digest computed
+     * @param required whether a missing digest fails
+     * @return true if the digests were compared and match
+     */
+    static boolean check(byte[] expected, byte[] actual, boolean required, String what) {
+        if (expected == null) {
+            if (required) {
+                throw new TransferDigestException("no " + what + " digest given by the server");
+            }
+            return false;
+        }
+        if (!MessageDigest.isEqual(expected, actual)) {
+            throw new TransferDigestException(what + " digest mismatch, expected "
+                    + Digester.toHex(expected) + " but computed " + Digester.toHex(actual));
+        }
+        return true;
+    }
+
+    /**
+     * receives a file in order, digested while it is written, the file is
+     * deleted on mismatch. Without digest in the headers, a required digest
+     * fails before the body is read.
+     */
+    static void download(ClientHttpResponse response, Path target, TransferDigestSettings settings,
+            DownloadSink sink) throws IOException {
+        long contentLength = response.getHeaders().getContentLength();
+        byte[] expected = expected(response.getHeaders(), settings);
+        if (expected == null) {
+            check(null, null, settings.isRequired(), "download");
+            sink.write(response.getBody(), contentLength, target);
+            return;
+        }
+        Digester digester = settings.getAlgorithm().newDigester();
+        sink.write(new DigestingInputStream(response.getBody(), digester), contentLength, target);
+        try {
+            check(expected, digester.digest(), true, "download");
+        } catch (TransferDigestException tde) {
+            Files.deleteIfExists(target);
+            throw tde;
+        }
+    }
+
+    /**
+     * reads a file once through read-only mappings, for the downloads which
+     * do not receive the file in order
+     */
+    static byte[] digest(Path file, DigestAlgorithm algorithm) throws IOException {
+        Digester digester = algorithm.newDigester();
+        try (FileChannel fc = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = fc.size();
+            for (long position = 0; position < size; position += MAPPING_SIZE) {
+                MappedByteBuffer region = fc.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(MAPPING_SIZE, size - position));
+                digester.update(region);
+            }
+        }
+        return digester.digest();
+    }
+
+    /**
+     * verifies a file downloaded out of order, it is deleted on mismatch
+     */
+    static void verifyFile(Path file, byte[] expected, TransferDigestSettings settings) throws IOException {
+        if (expected == null) {
+            check(null, null, settings.isRequired(), "download");
+            return;
+        }
+        try {
+            check(expected, digest(file, settings.getAlgorithm()), true, "download");
+        } catch (TransferDigestException tde) {
+            Files.deleteIfExists(file);
+            throw tde;
+        }
+    }
+
+    /**
+     * digests the bytes read, whatever the sink reading them
+     */
+    private static final class DigestingInputStream extends FilterInputStream {
+
+        private final Digester digester;
+
+        DigestingInputStream(InputStream in, Digester digester) {
+            super(in);
+            this.digester = digester;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                digester.update(new byte[]{(byte) b}, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                digester.update(b, off, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            //every byte has to be digested
+            return 0;
+        }
+
+    }
+
+}
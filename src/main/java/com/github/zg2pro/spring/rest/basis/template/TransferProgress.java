@@ -0,0 +1,100 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.template;
+
+import java.net.URI;
+
+/**
+ *
+ * where a streaming request is, immutable
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public final class TransferProgress {
+
+    private final URI uri;
+    private final boolean upload;
+    private final long bytes;
+    private final long totalBytes;
+    private final double bytesPerSecond;
+    private final boolean done;
+
+    TransferProgress(URI uri, boolean upload, long bytes, long totalBytes, double bytesPerSecond, boolean done) {
+        this.uri = uri;
+        this.upload = upload;
+        this.bytes = bytes;
+        this.totalBytes = totalBytes;
+        this.bytesPerSecond = bytesPerSecond;
+        this.done = done;
+    }
+
+    public URI getUri() {
+        return uri;
+    }
+
+    /**
+     * @return true for a request body sent, false for a response body
+     * received
+     */
+    public boolean isUpload() {
+        return upload;
+    }
+
+    /**
+     * @return the bytes transferred so far
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return the Content-Length, -1 if unknown
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * @return the throughput since the previous report
+     */
+    public double getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * @return true for the last report of the body
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    @Override
+    public String toString() {
+        return (upload ? "upload to " : "download from ") + uri + ": " + bytes
+                + (totalBytes >= 0 ? "/" + totalBytes : "") + " bytes, " + (long) bytesPerSecond + " bytes/s"
+                + (done ? ", done" : "");
+    }
+
+}
@@ -26,11 +26,15 @@ package com.github.zg2pro.spring.rest.basis.template;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.github.zg2pro.spring.rest.basis.logs.LoggingRequestFactoryFactory;
 import com.github.zg2pro.spring.rest.basis.logs.LoggingRequestInterceptor;
+import com.github.zg2pro.spring.rest.basis.metrics.ExchangePhases;
+import com.github.zg2pro.spring.rest.basis.pool.ConnectionPoolSettings;
+import com.github.zg2pro.spring.rest.basis.pool.PooledRequestFactoryFactory;
 import java.util.ArrayList;
 import java.util.List;
-import org.springframework.http.client.BufferingClientHttpRequestFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
-import org.springframework.http.client.InterceptingClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.http.converter.HttpMessageConverter;
 
@@ -40,19 +44,64 @@ import org.springframework.http.converter.HttpMessageConverter;
  *
  * @author zg2pro
  */
-public class Zg2proRestTemplate extends AbstractZg2proRestTemplate {
+public class Zg2proRestTemplate extends AbstractZg2proRestTemplate implements DisposableBean {
+
+    private ConnectionPoolSettings connectionPoolSettings;
+    private ClientHttpRequestFactory baseRequestFactory;
+    private ClientHttpRequestFactory compressingRequestFactory;
+
+    /**
+     * the factory actually opening the connections, below the interceptors and
+     * the buffering: a keep-alive pool when the template was built with
+     * ConnectionPoolSettings, HttpURLConnection otherwise
+     *
+     * @return the request factory
+     */
+    protected ClientHttpRequestFactory baseRequestFactory() {
+        if (baseRequestFactory == null) {
+            if (connectionPoolSettings != null) {
+                HttpComponentsClientHttpRequestFactory pooled = PooledRequestFactoryFactory.build(connectionPoolSettings);
+                //files streaming operations share the pool but never buffer
+                setStreamingRequestFactory(AbortableRequests.httpComponentsStreaming(pooled.getHttpClient()));
+                baseRequestFactory = pooled;
+            } else {
+                SimpleClientHttpRequestFactory chrf = new SimpleClientHttpRequestFactory();
+                chrf.setOutputStreaming(false);
+                baseRequestFactory = chrf;
+            }
+        }
+        return baseRequestFactory;
+    }
+
+    /**
+     * the base request factory under the compression layer, which applies the
+     * compression settings of the template. The requests of the base factory
+     * are the ones marking the first byte of the exchange phases
+     */
+    private ClientHttpRequestFactory compressingRequestFactory() {
+        if (compressingRequestFactory == null) {
+            compressingRequestFactory = new CompressingRequestFactory(
+                    ExchangePhases.instrument(baseRequestFactory()), this::getCompressionSettings);
+        }
+        return compressingRequestFactory;
+    }
 
     @Override
     protected void interceptorsIntegration(List<ClientHttpRequestInterceptor> lInterceptors, Object sslConfiguration) {
         this.setInterceptors(lInterceptors);
-        SimpleClientHttpRequestFactory chrf = new SimpleClientHttpRequestFactory();
-        chrf.setOutputStreaming(false);
-        this.setRequestFactory(
-                new InterceptingClientHttpRequestFactory(
-                        new BufferingClientHttpRequestFactory(chrf),
-                        lInterceptors
-                )
-        );
+        this.setRequestFactory(LoggingRequestFactoryFactory.build(lInterceptors, compressingRequestFactory()));
+    }
+
+    /**
+     * closes the connection pool if the template uses one
+     *
+     * @throws Exception
+     */
+    @Override
+    public void destroy() throws Exception {
+        if (baseRequestFactory instanceof DisposableBean) {
+            ((DisposableBean) baseRequestFactory).destroy();
+        }
     }
     
     /**
@@ -80,12 +129,27 @@ public class Zg2proRestTemplate extends AbstractZg2proRestTemplate {
      * @param sm simple module from jackson
      */
     public Zg2proRestTemplate(SimpleModule sm) {
+        this(sm, null);
+    }
+
+    /**
+     * same as Zg2proRestTemplate(sm) but the connections are taken from a
+     * keep-alive pool (apache httpclient) instead of being opened for each
+     * request, the logging interceptor still applies
+     *
+     * @param sm simple module from jackson
+     * @param connectionPoolSettings pool sizing and timeouts, null to keep
+     * HttpURLConnection
+     */
+    public Zg2proRestTemplate(SimpleModule sm, ConnectionPoolSettings connectionPoolSettings) {
         super(sm);
+        this.connectionPoolSettings = connectionPoolSettings;
         //interceptors
         LoggingRequestInterceptor lri = new LoggingRequestInterceptor();
         this.setInterceptors(new ArrayList<>());
         this.getInterceptors().add(lri);
-        this.setRequestFactory(LoggingRequestFactoryFactory.build(lri));
+        //the chain keeps the list, so interceptors can be added afterwards
+        this.setRequestFactory(LoggingRequestFactoryFactory.build(this.getInterceptors(), compressingRequestFactory()));
     }
 
     /**
@@ -100,7 +164,25 @@ public class Zg2proRestTemplate extends AbstractZg2proRestTemplate {
     public Zg2proRestTemplate(
             List<HttpMessageConverter<?>> lConverters, 
             List<ClientHttpRequestInterceptor> lInterceptors) {
+        this(lConverters, lInterceptors, null);
+    }
+
+    /**
+     * same as Zg2proRestTemplate(lConverters, lInterceptors) but the
+     * connections are taken from a keep-alive pool (apache httpclient)
+     *
+     * @param lConverters - among which could jackson customized with the
+     * CamelCaseToKebabCase policy
+     * @param lInterceptors - among which could be LoggingRequestInterceptor
+     * @param connectionPoolSettings pool sizing and timeouts, null to keep
+     * HttpURLConnection
+     */
+    public Zg2proRestTemplate(
+            List<HttpMessageConverter<?>> lConverters,
+            List<ClientHttpRequestInterceptor> lInterceptors,
+            ConnectionPoolSettings connectionPoolSettings) {
         super(lConverters, lInterceptors);
+        this.connectionPoolSettings = connectionPoolSettings;
         interceptorsIntegration(lInterceptors, null);
     }
 
@@ -23,6 +23,7 @@
  */
 package com.github.zg2pro.spring.rest.basis.template;
 
+import com.github.zg2pro.spring.rest.basis.pool.ConnectionPoolSettings;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.boot.web.client.RestTemplateCustomizer;
 import org.springframework.web.client.RestTemplate;
@@ -36,6 +37,7 @@ import org.springframework.web.client.RestTemplate;
 public class Zg2proRestTemplateBuilder extends RestTemplateBuilder {
 
     private Zg2proRestTemplate zrst;
+    private ConnectionPoolSettings connectionPoolSettings;
     
     public Zg2proRestTemplateBuilder(RestTemplateCustomizer... customizers) {
         super(customizers);
@@ -46,10 +48,20 @@ public class Zg2proRestTemplateBuilder extends RestTemplateBuilder {
         zrst = inputExample;
     }
 
+    /**
+     * the template built will take its connections from a keep-alive pool
+     *
+     * @param connectionPoolSettings pool sizing and timeouts
+     */
+    public Zg2proRestTemplateBuilder(ConnectionPoolSettings connectionPoolSettings) {
+        super();
+        this.connectionPoolSettings = connectionPoolSettings;
+    }
+
     @Override
     public RestTemplate build() {
         if (zrst == null){
-            zrst = new Zg2proRestTemplate();
+            zrst = new Zg2proRestTemplate(null, connectionPoolSettings);
         }
         return zrst;
     }
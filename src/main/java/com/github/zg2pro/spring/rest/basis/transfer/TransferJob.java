@@ -0,0 +1,98 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.transfer;
+
+import java.nio.file.Path;
+
+/**
+ *
+ * a file to upload with postForPath() or to download with getForObject(),
+ * immutable
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public final class TransferJob {
+
+    public enum Direction {
+        UPLOAD,
+        DOWNLOAD
+    }
+
+    private final Direction direction;
+    private final String url;
+    private final Path file;
+    private final Class<?> returnType;
+
+    private TransferJob(Direction direction, String url, Path file, Class<?> returnType) {
+        if (url == null || file == null) {
+            throw new IllegalArgumentException("please provide an url and a file");
+        }
+        this.direction = direction;
+        this.url = url;
+        this.file = file;
+        this.returnType = returnType;
+    }
+
+    /**
+     * @param url the url toward which the file is posted
+     * @param file the file to upload
+     * @param returnType the return type of the webmethod
+     * @return the job
+     */
+    public static TransferJob upload(String url, Path file, Class<?> returnType) {
+        return new TransferJob(Direction.UPLOAD, url, file, returnType);
+    }
+
+    /**
+     * @param url service url of the file
+     * @param target where the file is downloaded
+     * @return the job
+     */
+    public static TransferJob download(String url, Path target) {
+        return new TransferJob(Direction.DOWNLOAD, url, target, Path.class);
+    }
+
+    public Direction getDirection() {
+        return direction;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public Class<?> getReturnType() {
+        return returnType;
+    }
+
+    @Override
+    public String toString() {
+        return direction + " " + file + (direction == Direction.UPLOAD ? " to " : " from ") + url;
+    }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.transfer;
+
+/**
+ *
+ * follows a batch of the TransferManager, called from its worker threads
+ * concurrently
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public interface TransferListener {
+
+    /**
+     * @param job the job starting its first attempt
+     */
+    default void onStarted(TransferJob job) {
+    }
+
+    /**
+     * @param job the job to be tried again
+     * @param attempt the attempt which failed
+     * @param failure its failure
+     */
+    default void onRetry(TransferJob job, int attempt, Throwable failure) {
+    }
+
+    /**
+     * @param outcome the end of a job
+     * @param progress the progress of the batch, outcomes excluded
+     */
+    default void onCompleted(TransferOutcome outcome, TransferReport progress) {
+    }
+
+}
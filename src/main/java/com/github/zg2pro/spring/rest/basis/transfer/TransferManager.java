@@ -0,0 +1,324 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.transfer;
+
+import com.github.zg2pro.spring.rest.basis.exceptions.RestTemplateException;
+import com.github.zg2pro.spring.rest.basis.template.AbstractZg2proRestTemplate;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.web.client.RestClientException;
+
+/**
+ *
+ * runs batches of uploads (postForPath) and downloads (getForObject) through
+ * a template:
+ * <ul>
+ * <li>each host has a lane of at most maxPerHost running transfers, all
+ * batches together, a transfer ending hands its slot to the next file of the
+ * host at once, so a busy host does not hold the threads of the others.
+ * Files are not pipelined on a connection: a file starts once a slot is free,
+ * overlapping the end of a file with the next one takes a maxPerHost above 1</li>
+ * <li>a failing job is retried alone with an exponential backoff, its final
+ * failure is reported in its outcome without stopping the batch</li>
+ * <li>the listener receives the progress after each job, the future
+ * completes with the report once every job ended</li>
+ * <li>if the executor rejects a worker while none runs for the host, the
+ * waiting jobs fail with the RejectedExecutionException</li>
+ * </ul>
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public class TransferManager implements DisposableBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TransferManager.class);
+
+    private static final TransferListener NO_LISTENER = new TransferListener() {
+    };
+
+    private final AbstractZg2proRestTemplate template;
+    private final TransferManagerSettings settings;
+    private final ExecutorService executor;
+    private final boolean ownExecutor;
+    private final Map<String, HostLane> lanes = new ConcurrentHashMap<>();
+
+    public TransferManager(AbstractZg2proRestTemplate template) {
+        this(template, new TransferManagerSettings());
+    }
+
+    public TransferManager(AbstractZg2proRestTemplate template, TransferManagerSettings settings) {
+        if (template == null || settings == null) {
+            throw new IllegalArgumentException("please provide a template and settings");
+        }
+        this.template = template;
+        this.settings = settings;
+        this.ownExecutor = settings.getExecutor() == null;
+        this.executor = ownExecutor ? Executors.newFixedThreadPool(settings.getThreads(), r -> {
+            Thread t = new Thread(r, "zg2pro-transfer");
+            t.setDaemon(true);
+            return t;
+        }) : settings.getExecutor();
+    }
+
+    /**
+     * @param jobs the transfers
+     * @return the future of the report
+     */
+    public CompletableFuture<TransferReport> submit(List<TransferJob> jobs) {
+        return submit(jobs, NO_LISTENER);
+    }
+
+    /**
+     * @param jobs the transfers
+     * @param listener follows the batch
+     * @return the future of the report, it never completes exceptionally: the
+     * failures are in the outcomes
+     */
+    public CompletableFuture<TransferReport> submit(List<TransferJob> jobs, TransferListener listener) {
+        if (jobs == null || listener == null) {
+            throw new IllegalArgumentException("please provide jobs and a listener");
+        }
+        Batch batch = new Batch(jobs.size(), listener);
+        if (jobs.isEmpty()) {
+            batch.future.complete(batch.report(true));
+            return batch.future;
+        }
+        for (int i = 0; i < jobs.size(); i++) {
+            TransferJob job = jobs.get(i);
+            lanes.computeIfAbsent(hostOf(job), h -> new HostLane()).add(new Task(batch, i, job));
+        }
+        return batch.future;
+    }
+
+    private String hostOf(TransferJob job) {
+        URI uri = template.getUriTemplateHandler().expand(job.getUrl());
+        return String.valueOf(uri.getAuthority());
+    }
+
+    @Override
+    public void destroy() {
+        if (ownExecutor) {
+            executor.shutdownNow();
+        }
+    }
+
+    private Object run(TransferJob job) {
+        if (job.getDirection() == TransferJob.Direction.UPLOAD) {
+            return template.postForPath(job.getUrl(), job.getFile(), job.getReturnType());
+        }
+        return template.getForObject(job.getUrl(), job.getFile().toString());
+    }
+
+    private void execute(Task task) {
+        TransferJob job = task.job;
+        Batch batch = task.batch;
+        notify(() -> batch.listener.onStarted(job));
+        long start = System.nanoTime();
+        long backoff = settings.getInitialBackoff();
+        TransferOutcome outcome;
+        for (int attempt = 1;; attempt++) {
+            try {
+                long size = job.getDirection() == TransferJob.Direction.UPLOAD ? Files.size(job.getFile()) : 0;
+                Object result = run(job);
+                if (job.getDirection() == TransferJob.Direction.DOWNLOAD) {
+                    size = Files.size(job.getFile());
+                }
+                outcome = new TransferOutcome(job, result, null, attempt, size, System.nanoTime() - start);
+                break;
+            } catch (RestClientException | RestTemplateException | UncheckedIOException | IOException e) {
+                if (attempt >= settings.getMaxAttempts() || !sleep(backoff)) {
+                    outcome = new TransferOutcome(job, null, e, attempt, 0, System.nanoTime() - start);
+                    break;
+                }
+                int failed = attempt;
+                notify(() -> batch.listener.onRetry(job, failed, e));
+                backoff = Math.min(settings.getMaxBackoff(), backoff * 2);
+            } catch (RuntimeException re) {
+                //not a transfer failure, retrying would not help
+                outcome = new TransferOutcome(job, null, re, attempt, 0, System.nanoTime() - start);
+                break;
+            }
+        }
+        batch.complete(task.index, outcome);
+    }
+
+    /**
+     * @return false if interrupted
+     */
+    private static boolean sleep(long backoff) {
+        //jitter, so the jobs failing together do not come back together
+        long wait = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+        try {
+            Thread.sleep(wait);
+            return true;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static void notify(Runnable listenerCall) {
+        try {
+            listenerCall.run();
+        } catch (RuntimeException re) {
+            LOG.warn("transfer listener failed", re);
+        }
+    }
+
+    private static final class Task {
+
+        private final Batch batch;
+        private final int index;
+        private final TransferJob job;
+
+        Task(Batch batch, int index, TransferJob job) {
+            this.batch = batch;
+            this.index = index;
+            this.job = job;
+        }
+    }
+
+    /**
+     * the tasks waiting for a host, and the number of its running workers
+     */
+    private final class HostLane {
+
+        private final Queue<Task> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger workers = new AtomicInteger();
+
+        void add(Task task) {
+            tasks.add(task);
+            startWorkers();
+        }
+
+        private void startWorkers() {
+            while (!tasks.isEmpty()) {
+                int running = workers.get();
+                if (running >= settings.getMaxPerHost()) {
+                    return;
+                }
+                if (workers.compareAndSet(running, running + 1)) {
+                    try {
+                        executor.execute(this::work);
+                    } catch (RejectedExecutionException ree) {
+                        //the running workers, if any, take the waiting tasks
+                        if (workers.decrementAndGet() == 0) {
+                            failWaiting(ree);
+                        }
+                        return;
+                    }
+                }
+            }
+        }
+
+        private void failWaiting(RejectedExecutionException ree) {
+            LOG.warn("transfer executor rejected a worker, failing the waiting jobs", ree);
+            Task task;
+            while ((task = tasks.poll()) != null) {
+                task.batch.complete(task.index, new TransferOutcome(task.job, null, ree, 0, 0, 0));
+            }
+        }
+
+        private void work() {
+            while (true) {
+                Task task;
+                while ((task = tasks.poll()) != null) {
+                    execute(task);
+                }
+                workers.decrementAndGet();
+                //a task added while this worker was leaving
+                if (tasks.isEmpty() || !claim()) {
+                    return;
+                }
+            }
+        }
+
+        private boolean claim() {
+            int running = workers.get();
+            return running < settings.getMaxPerHost() && workers.compareAndSet(running, running + 1);
+        }
+    }
+
+    private static final class Batch {
+
+        private final int jobs;
+        private final TransferListener listener;
+        private final CompletableFuture<TransferReport> future = new CompletableFuture<>();
+        private final AtomicReferenceArray<TransferOutcome> outcomes;
+        private final AtomicInteger succeeded = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicInteger remaining;
+        private final long start = System.nanoTime();
+
+        Batch(int jobs, TransferListener listener) {
+            this.jobs = jobs;
+            this.listener = listener;
+            this.outcomes = new AtomicReferenceArray<>(jobs);
+            this.remaining = new AtomicInteger(jobs);
+        }
+
+        void complete(int index, TransferOutcome outcome) {
+            outcomes.set(index, outcome);
+            bytes.addAndGet(outcome.getBytes());
+            (outcome.isSucceeded() ? succeeded : failed).incrementAndGet();
+            TransferReport progress = report(false);
+            TransferManager.notify(() -> listener.onCompleted(outcome, progress));
+            if (remaining.decrementAndGet() == 0) {
+                future.complete(report(true));
+            }
+        }
+
+        TransferReport report(boolean done) {
+            List<TransferOutcome> list = new ArrayList<>();
+            if (done) {
+                for (int i = 0; i < jobs; i++) {
+                    list.add(outcomes.get(i));
+                }
+            }
+            return new TransferReport(jobs, succeeded.get(), failed.get(), bytes.get(),
+                    System.nanoTime() - start, list);
+        }
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.transfer;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ *
+ * settings of the TransferManager. Durations are in milliseconds.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public class TransferManagerSettings {
+
+    private static final int DEFAULT_MAX_PER_HOST = 4;
+    private static final int DEFAULT_THREADS = 16;
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+    private static final long DEFAULT_INITIAL_BACKOFF = 500;
+    private static final long DEFAULT_MAX_BACKOFF = 10000;
+
+    private int maxPerHost = DEFAULT_MAX_PER_HOST;
+    private int threads = DEFAULT_THREADS;
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private long initialBackoff = DEFAULT_INITIAL_BACKOFF;
+    private long maxBackoff = DEFAULT_MAX_BACKOFF;
+    private ExecutorService executor;
+
+    public int getMaxPerHost() {
+        return maxPerHost;
+    }
+
+    /**
+     * @param maxPerHost transfers running at the same time toward a host (and
+     * port), all batches together, keep it within the connections per route
+     * of the connection pool
+     */
+    public void setMaxPerHost(int maxPerHost) {
+        if (maxPerHost < 1) {
+            throw new IllegalArgumentException("please allow at least one transfer per host");
+        }
+        this.maxPerHost = maxPerHost;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @param threads transfers running at the same time, all hosts together,
+     * ignored with an executor
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("please allow at least one thread");
+        }
+        this.threads = threads;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @param maxAttempts attempts of a job before its failure is reported,
+     * the other jobs go on
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("a transfer needs at least one attempt");
+        }
+        this.maxAttempts = maxAttempts;
+    }
+
+    public long getInitialBackoff() {
+        return initialBackoff;
+    }
+
+    /**
+     * @param initialBackoff wait before the first retry of a job, doubled at
+     * each retry
+     */
+    public void setInitialBackoff(long initialBackoff) {
+        if (initialBackoff < 0) {
+            throw new IllegalArgumentException("please provide a positive backoff");
+        }
+        this.initialBackoff = initialBackoff;
+    }
+
+    public long getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    /**
+     * @param maxBackoff upper bound of the wait between two attempts
+     */
+    public void setMaxBackoff(long maxBackoff) {
+        if (maxBackoff < 0) {
+            throw new IllegalArgumentException("please provide a positive backoff");
+        }
+        this.maxBackoff = maxBackoff;
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * @param executor runs the transfers, if null the manager creates its
+     * pool and shuts it down in destroy()
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.transfer;
+
+/**
+ *
+ * the end of a TransferJob, successful or not, immutable
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public final class TransferOutcome {
+
+    private final TransferJob job;
+    private final Object result;
+    private final Throwable failure;
+    private final int attempts;
+    private final long bytes;
+    private final long nanos;
+
+    TransferOutcome(TransferJob job, Object result, Throwable failure, int attempts, long bytes, long nanos) {
+        this.job = job;
+        this.result = result;
+        this.failure = failure;
+        this.attempts = attempts;
+        this.bytes = bytes;
+        this.nanos = nanos;
+    }
+
+    public TransferJob getJob() {
+        return job;
+    }
+
+    public boolean isSucceeded() {
+        return failure == null;
+    }
+
+    /**
+     * @return the response of an upload, the path of a download, null if
+     * failed
+     */
+    public Object getResult() {
+        return result;
+    }
+
+    /**
+     * @return the failure of the last attempt, null if succeeded
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * @return the size of the file transferred, 0 if failed
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return the duration of the job, retries included
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.transfer;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ *
+ * the progress of a batch of transfers, given to the listener after each
+ * job, and its final report once every job ended. Immutable.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public final class TransferReport {
+
+    private final int jobs;
+    private final int succeeded;
+    private final int failed;
+    private final long bytes;
+    private final long elapsedNanos;
+    private final List<TransferOutcome> outcomes;
+
+    TransferReport(int jobs, int succeeded, int failed, long bytes, long elapsedNanos,
+            List<TransferOutcome> outcomes) {
+        this.jobs = jobs;
+        this.succeeded = succeeded;
+        this.failed = failed;
+        this.bytes = bytes;
+        this.elapsedNanos = elapsedNanos;
+        this.outcomes = Collections.unmodifiableList(outcomes);
+    }
+
+    public int getJobs() {
+        return jobs;
+    }
+
+    public int getSucceeded() {
+        return succeeded;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public int getCompleted() {
+        return succeeded + failed;
+    }
+
+    public boolean isDone() {
+        return getCompleted() == jobs;
+    }
+
+    /**
+     * @return the bytes transferred by the succeeded jobs
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return the aggregate throughput since the batch started
+     */
+    public double getBytesPerSecond() {
+        return elapsedNanos == 0 ? 0 : bytes * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @return the outcomes in the order of the jobs, empty until the batch is
+     * done
+     */
+    public List<TransferOutcome> getOutcomes() {
+        return outcomes;
+    }
+
+    @Override
+    public String toString() {
+        return getCompleted() + "/" + jobs + " transfers (" + failed + " failed), " + bytes + " bytes, "
+                + (long) getBytesPerSecond() + " bytes/s";
+    }
+
+}
@@ -0,0 +1,366 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.upload;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+import javax.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+/**
+ *
+ * server side of the parts uploads (see PartsUploadProtocol) sent by
+ * AbstractZg2proRestTemplate.postForPathInParts(). Inherit it with a
+ * @RestController and a @RequestMapping giving the url of the uploads, next
+ * to your Zg2proRestServerExceptionsHandler which serializes the errors.
+ *
+ * Each part is read from the servlet input stream and written at its offset
+ * in a file preallocated in the upload directory, its CRC32C being computed
+ * on the way; there is no other copy of the data. Once complete, the file is
+ * handed to onUploadCompleted().
+ *
+ * An upload which receives no part for getIdleTimeout() is expired: its file
+ * is closed and deleted, a client which never completes nor aborts does not
+ * hold a file descriptor and disk space forever. The size announced by the
+ * client cannot exceed getMaxUploadSize().
+ *
+ * @param <T>: what is replied for a completed upload
+ * @author zg2pro
+ * @since 0.7
+ */
+public abstract class AbstractPartsUploadController<T> implements DisposableBean {
+
+    public static final long DEFAULT_IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(15);
+    public static final long DEFAULT_MAX_UPLOAD_SIZE = 10L * 1024 * 1024 * 1024;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AbstractPartsUploadController.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String BYTES = "bytes ";
+    private static final long MIN_SWEEP_PERIOD = 1000;
+
+    private final Map<String, Upload> uploads = new ConcurrentHashMap<>();
+    private ScheduledExecutorService sweeper;
+
+    /**
+     * @return the directory where the files are assembled, the same file
+     * system as their final destination avoids a copy when they are moved
+     */
+    protected abstract Path getUploadDirectory();
+
+    /**
+     * @param uploadId the id of the upload
+     * @param file the assembled file, in the upload directory, it is yours to
+     * move or delete
+     * @return the reply to the client
+     * @throws IOException
+     */
+    protected abstract T onUploadCompleted(String uploadId, Path file) throws IOException;
+
+    /**
+     * @return milliseconds without any part received after which an upload
+     * is expired, DEFAULT_IDLE_TIMEOUT unless overridden
+     */
+    protected long getIdleTimeout() {
+        return DEFAULT_IDLE_TIMEOUT;
+    }
+
+    /**
+     * @return the maximum size in bytes a client can announce for an upload,
+     * DEFAULT_MAX_UPLOAD_SIZE unless overridden
+     */
+    protected long getMaxUploadSize() {
+        return DEFAULT_MAX_UPLOAD_SIZE;
+    }
+
+    private static final class Upload {
+
+        private final Path file;
+        private final FileChannel channel;
+        private final long size;
+        //length of the parts received, by index
+        private final Map<Integer, Long> parts = new ConcurrentHashMap<>();
+        //guarded by this: parts being received, and once expired no part is accepted
+        private int receiving;
+        private boolean expired;
+        private volatile long lastActivity = System.nanoTime();
+
+        Upload(Path file, long size) throws IOException {
+            this.file = file;
+            this.size = size;
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            if (size > 0) {
+                channel.write(ByteBuffer.allocate(1), size - 1);
+            }
+        }
+
+        synchronized boolean startPart() {
+            if (expired) {
+                return false;
+            }
+            receiving++;
+            lastActivity = System.nanoTime();
+            return true;
+        }
+
+        synchronized void endPart() {
+            receiving--;
+            lastActivity = System.nanoTime();
+        }
+
+        synchronized boolean expireIfIdle(long now, long idleNanos) {
+            if (!expired && receiving == 0 && now - lastActivity > idleNanos) {
+                expired = true;
+            }
+            return expired;
+        }
+
+        void delete() throws IOException {
+            channel.close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private Path fileOf(String uploadId) {
+        if (!PartsUploadProtocol.isValidUploadId(uploadId)) {
+            throw new IllegalArgumentException("invalid upload id " + uploadId);
+        }
+        return getUploadDirectory().resolve(uploadId + ".upload");
+    }
+
+    private Upload upload(String uploadId, long size) throws IOException {
+        Path file = fileOf(uploadId);
+        if (size > getMaxUploadSize()) {
+            throw new IllegalArgumentException("upload " + uploadId + " of " + size
+                    + " bytes exceeds the maximum of " + getMaxUploadSize() + " bytes");
+        }
+        expireIdleUploads();
+        Upload upload;
+        try {
+            upload = uploads.computeIfAbsent(uploadId, id -> {
+                try {
+                    return new Upload(file, size);
+                } catch (IOException ioe) {
+                    throw new UncheckedIOException(ioe);
+                }
+            });
+        } catch (UncheckedIOException uioe) {
+            throw uioe.getCause();
+        }
+        if (upload.size != size) {
+            throw new IllegalArgumentException("upload " + uploadId + " has a size of " + upload.size
+                    + " bytes, not " + size);
+        }
+        startSweeper();
+        return upload;
+    }
+
+    /**
+     * closes and deletes the uploads idle for longer than getIdleTimeout(),
+     * done on each request and periodically
+     */
+    private void expireIdleUploads() {
+        long now = System.nanoTime();
+        long idleNanos = TimeUnit.MILLISECONDS.toNanos(getIdleTimeout());
+        uploads.forEach((uploadId, upload) -> {
+            if (upload.expireIfIdle(now, idleNanos) && uploads.remove(uploadId, upload)) {
+                LOGGER.info("upload {} expired after {} ms without any part", uploadId, getIdleTimeout());
+                try {
+                    upload.delete();
+                } catch (IOException ioe) {
+                    LOGGER.warn("could not delete expired upload " + upload.file, ioe);
+                }
+            }
+        });
+    }
+
+    private synchronized void startSweeper() {
+        if (sweeper == null) {
+            sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "parts-uploads-sweeper");
+                t.setDaemon(true);
+                return t;
+            });
+            long period = Math.max(MIN_SWEEP_PERIOD, getIdleTimeout() / 2);
+            sweeper.scheduleWithFixedDelay(this::expireIdleUploads, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * stops the expiry and deletes the uploads in progress
+     *
+     * @throws IOException
+     */
+    @Override
+    public void destroy() throws IOException {
+        synchronized (this) {
+            if (sweeper != null) {
+                sweeper.shutdownNow();
+            }
+        }
+        for (String uploadId : uploads.keySet()) {
+            abort(uploadId);
+        }
+    }
+
+    /**
+     * receives a part, it can be received again if the client retries
+     *
+     * @param uploadId the id of the upload
+     * @param index the index of the part
+     * @param contentRange "bytes first-last/total"
+     * @param checksum CRC32C of the part
+     * @param request the request, its body is the part
+     * @throws IOException
+     */
+    @PutMapping(PartsUploadProtocol.PART_PATH)
+    @ResponseBody
+    public void receivePart(@PathVariable("uploadId") String uploadId, @PathVariable("index") int index,
+            @RequestHeader(HttpHeaders.CONTENT_RANGE) String contentRange,
+            @RequestHeader(PartsUploadProtocol.PART_CHECKSUM_HEADER) String checksum,
+            HttpServletRequest request) throws IOException {
+        long[] range = parseContentRange(contentRange);
+        Upload upload = upload(uploadId, range[2]);
+        if (!upload.startPart()) {
+            throw new IllegalArgumentException("upload " + uploadId + " expired");
+        }
+        try {
+            writePart(uploadId, index, range, checksum, upload, request);
+        } finally {
+            upload.endPart();
+        }
+    }
+
+    private void writePart(String uploadId, int index, long[] range, String checksum, Upload upload,
+            HttpServletRequest request) throws IOException {
+        long expected = range[1] - range[0] + 1;
+        CRC32C crc = new CRC32C();
+        long written = 0;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        ByteBuffer bb = ByteBuffer.wrap(buffer);
+        try (InputStream in = request.getInputStream()) {
+            int read;
+            while (written < expected && (read = in.read(buffer, 0, (int) Math.min(buffer.length, expected - written))) > 0) {
+                crc.update(buffer, 0, read);
+                bb.clear().limit(read);
+                while (bb.hasRemaining()) {
+                    written += upload.channel.write(bb, range[0] + written);
+                }
+            }
+        }
+        if (written != expected) {
+            throw new IllegalArgumentException("part " + index + " of upload " + uploadId + " has "
+                    + written + " bytes instead of " + expected);
+        }
+        if (!PartsUploadProtocol.toHex(crc.getValue()).equalsIgnoreCase(checksum)) {
+            throw new IllegalArgumentException("part " + index + " of upload " + uploadId + " is corrupted");
+        }
+        upload.parts.put(index, expected);
+    }
+
+    /**
+     * @param uploadId the id of the upload
+     * @param size the total size announced by the client
+     * @param partsCount the number of parts announced by the client
+     * @return what onUploadCompleted() returns
+     * @throws IOException
+     */
+    @PostMapping(PartsUploadProtocol.COMPLETE_PATH)
+    @ResponseBody
+    public T complete(@PathVariable("uploadId") String uploadId,
+            @RequestHeader(PartsUploadProtocol.UPLOAD_SIZE_HEADER) long size,
+            @RequestHeader(PartsUploadProtocol.UPLOAD_PARTS_HEADER) int partsCount) throws IOException {
+        Upload upload = size == 0 ? upload(uploadId, 0) : uploads.get(uploadId);
+        if (upload == null) {
+            throw new IllegalArgumentException("unknown upload " + uploadId);
+        }
+        long received = upload.parts.values().stream().mapToLong(Long::longValue).sum();
+        if (upload.parts.size() != partsCount || received != size) {
+            throw new IllegalArgumentException("upload " + uploadId + " incomplete: " + upload.parts.size()
+                    + " parts of " + partsCount + ", " + received + " bytes of " + size);
+        }
+        if (!uploads.remove(uploadId, upload)) {
+            throw new IllegalArgumentException("upload " + uploadId + " expired");
+        }
+        upload.channel.close();
+        return onUploadCompleted(uploadId, upload.file);
+    }
+
+    /**
+     * @param uploadId the id of the upload to abandon
+     * @throws IOException
+     */
+    @DeleteMapping(PartsUploadProtocol.UPLOAD_PATH)
+    @ResponseBody
+    public void abort(@PathVariable("uploadId") String uploadId) throws IOException {
+        Upload upload = uploads.remove(uploadId);
+        if (upload != null) {
+            upload.delete();
+        }
+    }
+
+    /**
+     * @return first byte, last byte, total size
+     */
+    static long[] parseContentRange(String contentRange) {
+        try {
+            if (contentRange.startsWith(BYTES)) {
+                int dash = contentRange.indexOf('-');
+                int slash = contentRange.indexOf('/');
+                long[] range = new long[]{
+                    Long.parseLong(contentRange.substring(BYTES.length(), dash).trim()),
+                    Long.parseLong(contentRange.substring(dash + 1, slash).trim()),
+                    Long.parseLong(contentRange.substring(slash + 1).trim())};
+                if (range[0] >= 0 && range[0] <= range[1] && range[1] < range[2]) {
+                    return range;
+                }
+            }
+        } catch (RuntimeException re) {
+            //invalid below
+        }
+        throw new IllegalArgumentException("invalid Content-Range " + contentRange);
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2017 zg2pro.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.zg2pro.spring.rest.basis.upload;
+
+import java.nio.ByteBuffer;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32C;
+
+/**
+ *
+ * the exchanges of a parts upload, relative to the url of the upload
+ * controller:
+ * <ul>
+ * <li>PUT /{uploadId}/parts/{index} with a Content-Range "bytes
+ * first-last/total" and the CRC32C of the part in X-Part-Checksum, the
+ * parts can be sent concurrently and again after a failure</li>
+ * <li>POST /{uploadId}/complete with the total size and the number of parts
+ * in X-Upload-Size and X-Upload-Parts, replies what the controller returns
+ * for the assembled file</li>
+ * <li>DELETE /{uploadId} abandons the upload</li>
+ * </ul>
+ * The upload id is chosen by the client.
+ *
+ * @author zg2pro
+ * @since 0.7
+ */
+public final class PartsUploadProtocol {
+
+    public static final String PART_CHECKSUM_HEADER = "X-Part-Checksum";
+    public static final String UPLOAD_SIZE_HEADER = "X-Upload-Size";
+    public static final String UPLOAD_PARTS_HEADER = "X-Upload-Parts";
+    public static final String PART_PATH = "/{uploadId}/parts/{index}";
+    public static final String COMPLETE_PATH = "/{uploadId}/complete";
+    public static final String UPLOAD_PATH = "/{uploadId}";
+
+    private static final Pattern UPLOAD_ID = Pattern.compile("[A-Za-z0-9-]{1,64}");
+
+    private PartsUploadProtocol() {
+    }
+
+    /**
+     * @param uploadId an upload id
+     * @return true if the id can name a file safely
+     */
+    public static boolean isValidUploadId(String uploadId) {
+        return uploadId != null && UPLOAD_ID.matcher(uploadId).matches();
+    }
+
+    /**
+     * @param bytes the bytes of the part, consumed
+     * @return the CRC32C of the bytes, as 8 hexadecimal digits
+     */
+    public static String crc32c(ByteBuffer bytes) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes);
+        return toHex(crc.getValue());
+    }
+
+    static String toHex(long crc) {
+        return String.format("%08x", crc);
+    }
+
+}
@@ -0,0 +1,164 @@
+package com.github.zg2pro.spring.rest.basis;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.github.zg2pro.spring.rest.basis.logs.Redactor;
+import com.github.zg2pro.spring.rest.basis.serialization.KebabCaseConverters;
+import com.github.zg2pro.spring.rest.basis.template.DownloadSink;
+import com.github.zg2pro.spring.rest.basis.template.DownloadSinks;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * rough timings, out of the build: surefire only runs the *Test classes, run
+ * them with mvn test -Dtest=Benchmarks, the results are logged at INFO
+ *
+ * @author zg2pro
+ */
+public class Benchmarks {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Benchmarks.class);
+
+    @Test
+    public void redactor() {
+        Redactor redactor = Redactor.of(Arrays.asList("password", "access_token", "refresh_token", "iban",
+                "email", "phone", "card-number", "ssn"), Arrays.asList("Authorization", "Cookie"));
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < 4000; i++) {
+            sb.append("{\"id\":").append(i).append(",\"name\":\"user ").append(i)
+                    .append("\",\"email\":\"user").append(i).append("@example.org\",\"roles\":[\"a\",\"b\"]},");
+        }
+        sb.setCharAt(sb.length() - 1, ']');
+        byte[] source = sb.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = new byte[source.length];
+        for (int i = 0; i < 20; i++) {
+            System.arraycopy(source, 0, bytes, 0, source.length);
+            redactor.redact(bytes, 0, bytes.length);
+        }
+        int rounds = 50;
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            System.arraycopy(source, 0, bytes, 0, source.length);
+            redactor.redact(bytes, 0, bytes.length);
+        }
+        long elapsed = System.nanoTime() - start;
+        LOGGER.info("redaction: {} ns/KB over {} KB",
+                elapsed * 1024 / ((long) rounds * source.length), source.length / 1024);
+        assertThat(new String(bytes, StandardCharsets.UTF_8)).doesNotContain("@example.org");
+    }
+
+    /**
+     * up to 16MB by default, -Dzg2pro.benchmark.maxSize=4294967296 to
+     * compare the sinks up to 4GB
+     */
+    @Test
+    public void downloadSinks() throws Exception {
+        long maxSize = Long.getLong("zg2pro.benchmark.maxSize", 16L * 1024 * 1024);
+        Path target = Paths.get("target/benchmark-sink.tmp");
+        String[] names = {"stream copy", "preallocated channel", "memory mapped"};
+        DownloadSink[] sinks = {DownloadSinks.streamCopy(), DownloadSinks.preallocatedChannel(),
+            DownloadSinks.memoryMapped()};
+        for (long size = 1024 * 1024; size <= maxSize; size *= 16) {
+            for (int i = 0; i < sinks.length; i++) {
+                //warm up, then the best of 3
+                sinks[i].write(new GeneratedInputStream(Math.min(size, 1024 * 1024)), Math.min(size, 1024 * 1024), target);
+                long best = Long.MAX_VALUE;
+                for (int round = 0; round < 3; round++) {
+                    long start = System.nanoTime();
+                    sinks[i].write(new GeneratedInputStream(size), size, target);
+                    best = Math.min(best, System.nanoTime() - start);
+                }
+                assertThat(Files.size(target)).isEqualTo(size);
+                LOGGER.info("download sink {}: {} MB in {} ms, {} MB/s", names[i],
+                        size / (1024 * 1024), best / 1000000, size * 1000 / Math.max(1, best));
+            }
+        }
+        Files.deleteIfExists(target);
+    }
+
+    /**
+     * a body of the given size, generated without allocating
+     */
+    private static class GeneratedInputStream extends InputStream {
+
+        private long remaining;
+
+        GeneratedInputStream(long size) {
+            this.remaining = size;
+        }
+
+        @Override
+        public int read() {
+            return remaining-- > 0 ? (int) (remaining & 0x7f) : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = (int) Math.min(len, remaining);
+            Arrays.fill(b, off, off + n, (byte) remaining);
+            remaining -= n;
+            return n;
+        }
+    }
+
+    /**
+     * payload size and encode/decode throughput of 1000 structures
+     */
+    @Test
+    public void binaryFormats() throws Exception {
+        List<ReturnedStructure> structures = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            ReturnedStructure rs = new ReturnedStructure();
+            rs.setFieldOne(i);
+            rs.setFieldTwo("test string value " + i);
+            rs.setFieldThree(i * 0.8965);
+            structures.add(rs);
+        }
+        String[] names = {"json", "smile", "cbor"};
+        ObjectMapper[] mappers = {KebabCaseConverters.objectMapper(null, null),
+            KebabCaseConverters.objectMapper(new SmileFactory(), null),
+            KebabCaseConverters.objectMapper(new CBORFactory(), null)};
+        JavaType listType = mappers[0].getTypeFactory().constructCollectionType(List.class, ReturnedStructure.class);
+        for (int f = 0; f < mappers.length; f++) {
+            byte[] payload = mappers[f].writeValueAsBytes(structures);
+            //warm up, then the best of 3 rounds of 200
+            long bestEncode = Long.MAX_VALUE;
+            long bestDecode = Long.MAX_VALUE;
+            for (int round = 0; round < 4; round++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < 200; i++) {
+                    mappers[f].writeValueAsBytes(structures);
+                }
+                long encoded = System.nanoTime();
+                for (int i = 0; i < 200; i++) {
+                    mappers[f].readValue(payload, listType);
+                }
+                if (round > 0) {
+                    bestEncode = Math.min(bestEncode, encoded - start);
+                    bestDecode = Math.min(bestDecode, System.nanoTime() - encoded);
+                }
+            }
+            //200 rounds of 1000 structures, in thousands of structures per second
+            LOGGER.info("format {}: {} bytes, encode {} k/s, decode {} k/s", names[f],
+                    payload.length, 200L * 1000 * 1000000 / Math.max(1, bestEncode),
+                    200L * 1000 * 1000000 / Math.max(1, bestDecode));
+        }
+    }
+
+}
@@ -1,14 +1,33 @@
 package com.github.zg2pro.spring.rest.basis;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Random;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.zg2pro.spring.rest.basis.template.DigestAlgorithm;
+import com.github.zg2pro.spring.rest.basis.template.Digester;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.util.StreamUtils;
 
 /**
  *
@@ -22,9 +41,18 @@ public class MockedControllers {
     public static final String TEST_URL_GET_BLANK_REPLY = "/testLoggerBlankReply";
     public static final String TEST_URL_GET_LONG_REPLY = "/testLoggerLongReply";
     public static final String TEST_URL_GET_STRUCTURE = "/testStructure";
+    public static final String TEST_URL_ECHO_STRUCTURE = "/echoStructure";
     public static final String TEST_URL_ERROR_REPLY = "/errorReply";
     public static final String TEST_URL_FILE_UPLOAD = "/upload";
     public static final String TEST_URL_FILE_DOWNLOAD = "/download";
+    public static final String TEST_URL_RANGED_DOWNLOAD = "/rangedDownload";
+    public static final String TEST_URL_DIGEST_DOWNLOAD = "/digestDownload";
+    public static final String TEST_URL_DIGEST_UPLOAD = "/digestUpload";
+    public static final String TEST_URL_JSON_STREAM = "/jsonStream";
+    public static final String TEST_URL_JSON_STREAM_UPLOAD = "/jsonStreamUpload";
+    public static final String TEST_URL_COMPRESSED_ECHO = "/compressedEcho";
+    public static final String TEST_URL_COMPRESSIBLE_TEXT = "/compressibleText";
+    public static final String TEST_RANGED_RESOURCE = "com/github/zg2pro/spring/rest/basis/streaming/test-binary.JPG";
 
     public static final String EXCEPTION_MESSAGE = "testing an execption serialization";
 
@@ -58,6 +86,12 @@ public class MockedControllers {
         return rs;
     }
 
+    @RequestMapping(value = TEST_URL_ECHO_STRUCTURE, method = RequestMethod.POST)
+    public @ResponseBody
+    ReturnedStructure testEchoStructure(@RequestBody ReturnedStructure rs) {
+        return rs;
+    }
+
     @RequestMapping(value = TEST_URL_ERROR_REPLY, method = RequestMethod.GET)
     public @ResponseBody
     ReturnedStructure testError() {
@@ -81,4 +115,139 @@ public class MockedControllers {
         Files.delete(p);
         return inMemory;
     }
+
+    private final AtomicInteger rangeRequests = new AtomicInteger();
+
+    public int getRangeRequests() {
+        return rangeRequests.get();
+    }
+
+    /**
+     * spring answers the Range requests of a Resource with 206 replies
+     */
+    @RequestMapping(value = TEST_URL_RANGED_DOWNLOAD, method = RequestMethod.GET)
+    public ResponseEntity<Resource> testRangedDownload(
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range) {
+        if (range != null) {
+            rangeRequests.incrementAndGet();
+        }
+        return ResponseEntity.ok().eTag("\"v1\"").body(new ClassPathResource(TEST_RANGED_RESOURCE));
+    }
+
+    private static DigestAlgorithm wanted(String wantDigest) {
+        for (DigestAlgorithm algorithm : DigestAlgorithm.values()) {
+            if (algorithm.getToken().equalsIgnoreCase(wantDigest)) {
+                return algorithm;
+            }
+        }
+        return DigestAlgorithm.SHA_256;
+    }
+
+    private static String digest(String wantDigest, byte[] bytes, boolean corrupt) {
+        Digester digester = wanted(wantDigest).newDigester();
+        digester.update(bytes, 0, corrupt ? bytes.length - 1 : bytes.length);
+        return Digester.toDigestHeader(digester.getAlgorithm(), digester.digest());
+    }
+
+    /**
+     * replies the digest wanted of the resource, wrong if corrupt
+     */
+    @RequestMapping(value = TEST_URL_DIGEST_DOWNLOAD, method = RequestMethod.GET)
+    public ResponseEntity<byte[]> testDigestDownload(
+            @RequestHeader(value = "Want-Digest", required = false) String wantDigest,
+            @RequestParam(value = "corrupt", defaultValue = "false") boolean corrupt) throws IOException {
+        byte[] bytes = StreamUtils.copyToByteArray(new ClassPathResource(TEST_RANGED_RESOURCE).getInputStream());
+        if (wantDigest == null || wanted(wantDigest) == DigestAlgorithm.MD5) {
+            //this server does not give md5
+            return ResponseEntity.ok().body(bytes);
+        }
+        return ResponseEntity.ok().header("Digest", digest(wantDigest, bytes, corrupt)).body(bytes);
+    }
+
+    /**
+     * acknowledges the upload with the digest wanted, wrong if corrupt
+     */
+    @RequestMapping(value = TEST_URL_DIGEST_UPLOAD, method = RequestMethod.POST)
+    public ResponseEntity<String> testDigestUpload(@RequestBody byte[] body,
+            @RequestHeader(value = "Want-Digest", required = false) String wantDigest,
+            @RequestParam(value = "corrupt", defaultValue = "false") boolean corrupt) {
+        return ResponseEntity.ok().header("Digest", digest(wantDigest, body, corrupt)).body("ok");
+    }
+
+    /**
+     * a listing of count structures, as an array or as ndjson, in kebab-case
+     * like the template expects
+     */
+    @RequestMapping(value = TEST_URL_JSON_STREAM, method = RequestMethod.GET)
+    public ResponseEntity<String> testJsonStream(@RequestParam("count") int count,
+            @RequestParam(value = "format", defaultValue = "array") String format) {
+        boolean array = "array".equals(format);
+        StringBuilder sb = new StringBuilder(array ? "[" : "");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(array ? ",\n" : "\n");
+            }
+            sb.append("{\"field-one\":").append(i)
+                    .append(",\"field-two\":\"element ").append(i)
+                    .append("\",\"field-three\":").append(i / 2.0).append('}');
+        }
+        sb.append(array ? "]" : "\n");
+        return ResponseEntity.ok()
+                .contentType(array ? MediaType.APPLICATION_JSON : MediaType.valueOf("application/x-ndjson"))
+                .body(sb.toString());
+    }
+
+    /**
+     * counts the kebab-case elements received, array or ndjson
+     */
+    @RequestMapping(value = TEST_URL_JSON_STREAM_UPLOAD, method = RequestMethod.POST)
+    public @ResponseBody
+    String testJsonStreamUpload(@RequestBody byte[] body,
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            @RequestHeader(value = HttpHeaders.TRANSFER_ENCODING, required = false) String transferEncoding)
+            throws IOException {
+        int count = 0;
+        try (MappingIterator<JsonNode> it = new ObjectMapper().readerFor(JsonNode.class).readValues(body)) {
+            while (it.hasNext()) {
+                if (it.next().get("field-one").asInt() != count++) {
+                    return "unordered";
+                }
+            }
+        }
+        return count + " " + transferEncoding + " " + MediaType.parseMediaType(contentType).getSubtype();
+    }
+
+    /**
+     * a text of the given size, compressed by tomcat when the client accepts
+     * it
+     */
+    @RequestMapping(value = TEST_URL_COMPRESSIBLE_TEXT, method = RequestMethod.GET, produces = "text/plain")
+    public @ResponseBody
+    String testCompressibleText(@RequestParam("size") int size) {
+        StringBuilder sb = new StringBuilder(size);
+        for (int i = 0; sb.length() < size; i++) {
+            sb.append("line ").append(i).append(" of a compressible text\n");
+        }
+        return sb.substring(0, size);
+    }
+
+    /**
+     * replies "coding:length:" followed by the body decoded
+     */
+    @RequestMapping(value = TEST_URL_COMPRESSED_ECHO, method = RequestMethod.POST, produces = "text/plain")
+    public @ResponseBody
+    String testCompressedEcho(@RequestBody byte[] body,
+            @RequestHeader(value = HttpHeaders.CONTENT_ENCODING, required = false) String contentEncoding)
+            throws IOException {
+        byte[] decoded = body;
+        if (contentEncoding != null) {
+            try (InputStream is = "gzip".equals(contentEncoding)
+                    ? new GZIPInputStream(new ByteArrayInputStream(body))
+                    : new InflaterInputStream(new ByteArrayInputStream(body))) {
+                decoded = StreamUtils.copyToByteArray(is);
+            }
+        }
+        return (contentEncoding == null ? "none" : contentEncoding) + ":" + decoded.length + ":"
+                + new String(decoded, StandardCharsets.UTF_8);
+    }
 }
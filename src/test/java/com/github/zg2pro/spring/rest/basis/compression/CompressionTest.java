@@ -0,0 +1,159 @@
+package com.github.zg2pro.spring.rest.basis.compression;
+
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.github.zg2pro.spring.rest.basis.*;
+import static com.github.zg2pro.spring.rest.basis.MockedControllers.TEST_URL_COMPRESSED_ECHO;
+import static com.github.zg2pro.spring.rest.basis.MockedControllers.TEST_URL_COMPRESSIBLE_TEXT;
+import com.github.zg2pro.spring.rest.basis.logs.JsonLinesLoggingRequestInterceptor;
+import com.github.zg2pro.spring.rest.basis.pool.ConnectionPoolSettings;
+import com.github.zg2pro.spring.rest.basis.template.CompressionAlgorithm;
+import com.github.zg2pro.spring.rest.basis.template.CompressionSettings;
+import com.github.zg2pro.spring.rest.basis.template.Zg2proRestTemplate;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.slf4j.event.Level;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Spring boot server (tomcat embedded) runner, compressing its text replies
+ *
+ * @author zg2pro
+ */
+@RunWith(MockitoJUnitRunner.class)
+@EnableAutoConfiguration
+@Configuration
+class ApplicationBoot {
+
+    @Bean
+    public MockedControllers mockedControllers() {
+        return new MockedControllers();
+    }
+
+}
+
+/**
+ *
+ * tests about the compression of the exchanges
+ *
+ * @author zg2pro
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(
+        classes = {ApplicationBoot.class},
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"server.compression.enabled=true", "server.compression.min-response-size=1024",
+            "server.compression.mime-types=text/plain,application/json"})
+public class CompressionTest {
+
+    @Autowired
+    private TestRestTemplate rt;
+
+    private Zg2proRestTemplate template(CompressionSettings settings) {
+        Zg2proRestTemplate z = new Zg2proRestTemplate(new SimpleModule());
+        z.setUriTemplateHandler(rt.getRestTemplate().getUriTemplateHandler());
+        z.setFilesStreamingOperationsHttpHeaders(null);
+        z.setCompressionSettings(settings);
+        return z;
+    }
+
+    private static String text(int size) {
+        StringBuilder sb = new StringBuilder(size);
+        for (int i = 0; sb.length() < size; i++) {
+            sb.append("element ").append(i).append(' ');
+        }
+        return sb.substring(0, size);
+    }
+
+    @Test
+    public void testRequestCompression() {
+        Zg2proRestTemplate z = template(new CompressionSettings());
+        assertThat(z.postForObject(TEST_URL_COMPRESSED_ECHO, text(100), String.class))
+                .isEqualTo("none:100:" + text(100));
+        assertThat(z.postForObject(TEST_URL_COMPRESSED_ECHO, text(20000), String.class))
+                .isEqualTo("gzip:20000:" + text(20000));
+        //the length of a json body is unknown until it is written
+        List<ReturnedStructure> structures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            ReturnedStructure rs = new ReturnedStructure();
+            rs.setFieldOne(i);
+            structures.add(rs);
+        }
+        String echo = z.postForObject(TEST_URL_COMPRESSED_ECHO, structures, String.class);
+        assertThat(echo).startsWith("gzip:");
+        assertThat(echo).contains("\"field-one\":199");
+        CompressionSettings deflate = new CompressionSettings();
+        deflate.setAlgorithm(CompressionAlgorithm.DEFLATE);
+        deflate.setLevel(1);
+        z.setCompressionSettings(deflate);
+        assertThat(z.postForObject(TEST_URL_COMPRESSED_ECHO, text(20000), String.class))
+                .isEqualTo("deflate:20000:" + text(20000));
+        z.setCompressionSettings(null);
+        assertThat(z.postForObject(TEST_URL_COMPRESSED_ECHO, text(20000), String.class))
+                .isEqualTo("none:20000:" + text(20000));
+    }
+
+    @Test
+    public void testResponseDecompression() throws Exception {
+        //the server does compress
+        RestTemplate plain = new RestTemplate(new SimpleClientHttpRequestFactory());
+        plain.setUriTemplateHandler(rt.getRestTemplate().getUriTemplateHandler());
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        ResponseEntity<byte[]> raw = plain.exchange(TEST_URL_COMPRESSIBLE_TEXT + "?size=50000", HttpMethod.GET,
+                new HttpEntity<>(headers), byte[].class);
+        assertThat(raw.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        assertThat(raw.getBody().length).isLessThan(50000);
+
+        Zg2proRestTemplate z = template(new CompressionSettings());
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        z.getInterceptors().add(new JsonLinesLoggingRequestInterceptor(StandardCharsets.UTF_8, 40, Level.INFO, sink));
+        String text = z.getForObject(TEST_URL_COMPRESSIBLE_TEXT + "?size=50000", String.class);
+        assertThat(text.length()).isEqualTo(50000);
+        assertThat(text).startsWith("line 0 of a compressible text");
+        //the interceptors log the decoded preview
+        assertThat(new String(sink.toByteArray(), StandardCharsets.UTF_8)).contains("line 0 of a compressible");
+        Path target = Paths.get("target/test-content-compressed.tmp");
+        z.getForObject(TEST_URL_COMPRESSIBLE_TEXT + "?size=50000", target.toString());
+        assertThat(new String(Files.readAllBytes(target), StandardCharsets.UTF_8)).isEqualTo(text);
+        Files.delete(target);
+    }
+
+    @Test
+    public void testPooledTemplateLeavesCompressionToTheSettings() throws Exception {
+        Zg2proRestTemplate pooled = new Zg2proRestTemplate(new SimpleModule(), new ConnectionPoolSettings());
+        pooled.setUriTemplateHandler(rt.getRestTemplate().getUriTemplateHandler());
+        //httpclient asks for nothing by itself, the reply keeps its length
+        ResponseEntity<String> raw = pooled.getForEntity(TEST_URL_COMPRESSIBLE_TEXT + "?size=50000", String.class);
+        assertThat(raw.getHeaders().getContentLength()).isEqualTo(50000L);
+        assertThat(raw.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isNull();
+        //the compression layer decodes
+        pooled.setCompressionSettings(new CompressionSettings());
+        ResponseEntity<String> decoded = pooled.getForEntity(TEST_URL_COMPRESSIBLE_TEXT + "?size=50000", String.class);
+        assertThat(decoded.getBody()).isEqualTo(raw.getBody());
+        assertThat(pooled.postForObject(TEST_URL_COMPRESSED_ECHO, text(20000), String.class))
+                .isEqualTo("gzip:20000:" + text(20000));
+        pooled.destroy();
+    }
+
+}
@@ -1,20 +1,40 @@
 package com.github.zg2pro.spring.rest.basis.logs;
 
 import com.github.zg2pro.spring.rest.basis.MockedControllers;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import static com.github.zg2pro.spring.rest.basis.MockedControllers.TEST_URL_ERROR_REPLY;
 import static com.github.zg2pro.spring.rest.basis.MockedControllers.TEST_URL_GET;
 import static com.github.zg2pro.spring.rest.basis.MockedControllers.TEST_URL_GET_LONG_REPLY;
 import static com.github.zg2pro.spring.rest.basis.MockedControllers.TEST_URL_GET_STRUCTURE;
 import com.github.zg2pro.spring.rest.basis.ReturnedStructure;
 import com.github.zg2pro.spring.rest.basis.exceptions.RestTemplateErrorHandler;
+import com.github.zg2pro.spring.rest.basis.pool.ConnectionPoolSettings;
+import com.github.zg2pro.spring.rest.basis.pool.PooledRequestFactoryFactory;
 import com.github.zg2pro.spring.rest.basis.template.Zg2proRestTemplate;
+import com.github.zg2pro.spring.rest.basis.template.Zg2proRestTemplateBuilder;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.junit.Assert.assertNotNull;
+import org.junit.Assume;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.slf4j.LoggerFactory;
 import org.slf4j.event.Level;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
@@ -22,13 +42,23 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.BufferingClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestExecution;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.http.client.InterceptingClientHttpRequestFactory;
 import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.util.StreamUtils;
 
 /**
  * Spring boot server (tomcat embedded) runner
@@ -135,4 +165,482 @@ public class LogsTest {
         assertThat(rs.getFieldOne()).isEqualTo(12);
     }
 
+    @Test(expected = IllegalArgumentException.class)
+    public void poolConstructions() {
+        new ConnectionPoolSettings().setMaxPerRoute(0);
+    }
+
+    @Test
+    public void testPooledTemplate() throws Exception {
+        ConnectionPoolSettings cps = new ConnectionPoolSettings();
+        cps.setMaxTotal(4);
+        cps.setMaxPerRoute(2);
+        cps.setMaxIdleTime(1000);
+        Zg2proRestTemplate z = (Zg2proRestTemplate) new Zg2proRestTemplateBuilder(cps).build();
+        assertThat(z.getInterceptors().get(0)).isInstanceOf(LoggingRequestInterceptor.class);
+        rt.getRestTemplate().setRequestFactory(z.getRequestFactory());
+        //more calls than connections in the pool, so connections get reused
+        for (int i = 0; i < 6; i++) {
+            ReturnedStructure rs = rt.getForObject(TEST_URL_GET_STRUCTURE, ReturnedStructure.class);
+            assertThat(rs.getFieldOne()).isEqualTo(12);
+            assertThat(rt.getForObject(TEST_URL_GET_LONG_REPLY, String.class)).isNotEmpty();
+        }
+        z.destroy();
+        assertThat(LoggingRequestFactoryFactory.build(new LoggingRequestInterceptor(),
+                new HttpComponentsClientHttpRequestFactory())).isNotNull();
+    }
+
+    @Test
+    public void testTeeInterceptor() {
+        for (Level l : new Level[]{Level.INFO, Level.TRACE}) {
+            rt.getRestTemplate().setRequestFactory(
+                    LoggingRequestFactoryFactory.build(new TeeLoggingRequestInterceptor(StandardCharsets.UTF_8, 50, l))
+            );
+            assertThat(rt.getForObject(TEST_URL_GET_LONG_REPLY, String.class)).isNotEmpty();
+            assertThat(rt.getForObject(TEST_URL_GET, String.class)).isEqualTo(MockedControllers.TEST_RETURN_VALUE);
+            ReturnedStructure rs = rt.getForObject(TEST_URL_GET_STRUCTURE, ReturnedStructure.class);
+            assertThat(rs.getFieldTwo()).isEqualTo("test string value");
+        }
+    }
+
+    @Test
+    public void testDisabledInterceptorsLeaveTheChain() throws Exception {
+        URI uri = new URI("http://localhost/whatever");
+        //the logback configuration of the tests is at DEBUG
+        LoggingRequestFactory disabled = LoggingRequestFactoryFactory.build(
+                new TeeLoggingRequestInterceptor(StandardCharsets.UTF_8, 50, Level.TRACE));
+        assertThat(disabled.createRequest(uri, HttpMethod.GET).getClass().getSimpleName())
+                .doesNotStartWith("Intercepting");
+        LoggingRequestFactory enabled = LoggingRequestFactoryFactory.build(
+                new TeeLoggingRequestInterceptor(StandardCharsets.UTF_8, 50, Level.DEBUG));
+        assertThat(enabled.createRequest(uri, HttpMethod.GET).getClass().getSimpleName())
+                .startsWith("Intercepting");
+    }
+
+    @Test
+    public void testAsyncInterceptor() {
+        AsyncLoggingRequestInterceptor ali = new AsyncLoggingRequestInterceptor(StandardCharsets.UTF_8, 100,
+                Level.INFO, 16, OverflowPolicy.BLOCK);
+        rt.getRestTemplate().setRequestFactory(LoggingRequestFactoryFactory.build(ali));
+        for (int i = 0; i < 40; i++) {
+            ReturnedStructure rs = rt.getForObject(TEST_URL_GET_STRUCTURE, ReturnedStructure.class);
+            assertThat(rs.getFieldOne()).isEqualTo(12);
+        }
+        ali.getEmitter().close();
+        assertThat(ali.getEmitter().getDroppedCount()).isEqualTo(0);
+        assertThat(ali.getEmitter().getWrittenCount()).isEqualTo(40);
+        assertThat(ali.getEmitter().getPendingCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testAsyncOverflowDrops() throws InterruptedException {
+        CountDownLatch slowAppender = new CountDownLatch(1);
+        AsyncLogEmitter emitter = new AsyncLogEmitter(2, OverflowPolicy.DROP, e -> {
+            try {
+                slowAppender.await();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        LoggedExchange exchange = new LoggedExchange("http://localhost/", "GET", 200, 0, 0, 0,
+                new byte[0], 0, new byte[0], 0, "main");
+        for (int i = 0; i < 10; i++) {
+            emitter.emit(exchange);
+        }
+        assertThat(emitter.getDroppedCount()).isGreaterThan(0);
+        assertThat(emitter.getPublishedCount() + emitter.getDroppedCount()).isEqualTo(10);
+        slowAppender.countDown();
+        emitter.close();
+        assertThat(emitter.getWrittenCount()).isEqualTo(emitter.getPublishedCount());
+        assertThat(emitter.emit(exchange)).isFalse();
+    }
+
+    @Test
+    public void testAsyncCloseLosesNothing() throws Exception {
+        LoggedExchange exchange = new LoggedExchange("http://localhost/", "GET", 200, 0, 0, 0,
+                new byte[0], 0, new byte[0], 0, "main");
+        for (int round = 0; round < 20; round++) {
+            AsyncLogEmitter emitter = new AsyncLogEmitter(64, OverflowPolicy.BLOCK, e -> {
+            });
+            CountDownLatch started = new CountDownLatch(4);
+            List<Thread> callers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                Thread caller = new Thread(() -> {
+                    started.countDown();
+                    for (int i = 0; i < 5000; i++) {
+                        emitter.emit(exchange);
+                    }
+                });
+                caller.start();
+                callers.add(caller);
+            }
+            started.await();
+            //closed while the callers publish
+            emitter.close();
+            for (Thread caller : callers) {
+                caller.join();
+            }
+            assertThat(emitter.getPublishedCount() + emitter.getDroppedCount()).isEqualTo(20000L);
+            assertThat(emitter.getWrittenCount()).isEqualTo(emitter.getPublishedCount());
+        }
+    }
+
+    @Test
+    public void testFlightRecorder() throws Exception {
+        FlightRecorderInterceptor fri = new FlightRecorderInterceptor(4, 60000, 64, StandardCharsets.UTF_8);
+        rt.getRestTemplate().setRequestFactory(LoggingRequestFactoryFactory.build(
+                Collections.singletonList(fri), new SimpleClientHttpRequestFactory()));
+        rt.getForObject(TEST_URL_GET, String.class);
+        //fast and successful, nothing kept
+        assertThat(fri.getRecords().isEmpty()).isTrue();
+        rt.getForObject(TEST_URL_ERROR_REPLY, String.class);
+        assertThat(fri.getRecords().size()).isEqualTo(1);
+        FlightRecord error = fri.getRecords().get(0);
+        assertThat(error.isFailed()).isTrue();
+        assertThat(error.getStatus()).isGreaterThanOrEqualTo(400);
+        assertThat(error.getResponseHeaders().isEmpty()).isFalse();
+        assertThat(error.getResponsePreview().remaining()).isBetween(1, 64);
+        //everything is slow now, the ring keeps the last 4
+        fri.setSlowThresholdMillis(0);
+        for (int i = 0; i < 6; i++) {
+            rt.getForObject(TEST_URL_GET, String.class);
+        }
+        List<FlightRecord> records = fri.getRecords();
+        assertThat(records.size()).isEqualTo(4);
+        assertThat(records.get(0).getSequence()).isEqualTo(3);
+        assertThat(records.get(3).getSequence()).isEqualTo(6);
+        assertThat(records.get(3).isFailed()).isFalse();
+        //the simple factory does not tell when it connected
+        assertThat(records.get(3).getConnectNanos()).isEqualTo(-1L);
+        assertThat(records.get(3).getTimeToFirstByteNanos()).isGreaterThan(0L);
+        assertThat(records.get(3).getBodyReadNanos()).isGreaterThanOrEqualTo(0L);
+        Path dump = fri.dumpToFile(Files.createTempFile("flight-recorder", ".json"));
+        String json = new String(Files.readAllBytes(dump), StandardCharsets.UTF_8);
+        assertThat(json).contains(TEST_URL_GET);
+        assertThat(json).contains(MockedControllers.TEST_RETURN_VALUE);
+        Files.delete(dump);
+        fri.clear();
+        assertThat(fri.getRecords().isEmpty()).isTrue();
+        //the pooled factory marks the connection and the request write
+        rt.getRestTemplate().setRequestFactory(LoggingRequestFactoryFactory.build(
+                Collections.singletonList(fri), PooledRequestFactoryFactory.build()));
+        rt.getForObject(TEST_URL_GET, String.class);
+        FlightRecord pooled = fri.getRecords().get(0);
+        assertThat(pooled.getConnectNanos()).isGreaterThanOrEqualTo(0L);
+        assertThat(pooled.getRequestNanos()).isGreaterThanOrEqualTo(0L);
+        assertThat(pooled.getTimeToFirstByteNanos()).isGreaterThanOrEqualTo(pooled.getConnectNanos());
+        assertThat(pooled.getBodyReadNanos()).isGreaterThanOrEqualTo(0L);
+        assertThat(fri.toJson()).contains("\"connect-us\"", "\"request-us\"", "\"first-byte-us\"",
+                "\"body-read-us\"");
+    }
+
+    @Test
+    public void testFlightRecorderRedactsItsOwnCopy() throws Exception {
+        FlightRecorderInterceptor fri = new FlightRecorderInterceptor(4, 0, 64, StandardCharsets.UTF_8);
+        fri.setRedactor(Redactor.of(Arrays.asList("password"), Arrays.asList("Authorization")));
+        byte[] body = "{\"user\":\"a\",\"password\":\"secret\"}".getBytes(StandardCharsets.UTF_8);
+        byte[] sent = body.clone();
+        MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.POST, new URI("http://localhost/login"));
+        request.getHeaders().add("Authorization", "Bearer abc");
+        try (ClientHttpResponse response = fri.intercept(request, body,
+                (r, b) -> new MockClientHttpResponse("ok".getBytes(StandardCharsets.UTF_8), HttpStatus.OK))) {
+            StreamUtils.drain(response.getBody());
+        }
+        FlightRecord record = fri.getRecords().get(0);
+        //the body sent is left as it is, the record masks its own copy
+        assertThat(body).isEqualTo(sent);
+        assertThat(record.requestPreviewBytes() != body).isTrue();
+        assertThat(StandardCharsets.UTF_8.decode(record.getRequestPreview()).toString()).doesNotContain("secret");
+        assertThat(record.getRequestHeaders().getFirst("Authorization")).isNotEqualTo("Bearer abc");
+        assertThat(StandardCharsets.UTF_8.decode(record.getResponsePreview()).toString()).isEqualTo("ok");
+    }
+
+    @Test
+    public void testLoggingRules() throws Exception {
+        LoggingRules rules = LoggingRules.builder()
+                .sampleEvery(0)
+                .alwaysLogErrors(true)
+                .override(null, "/api", 1)
+                .override("Example.org", null, 0)
+                .override("example.org", "/api/v2", 1)
+                .build();
+        assertThat(rules.decide(new URI("http://localhost/other"))).isEqualTo(LoggingRules.Decision.ERRORS_ONLY);
+        assertThat(rules.decide(new URI("http://localhost/api/users"))).isEqualTo(LoggingRules.Decision.LOG);
+        assertThat(rules.decide(new URI("http://example.org/api/users"))).isEqualTo(LoggingRules.Decision.ERRORS_ONLY);
+        assertThat(rules.decide(new URI("http://EXAMPLE.org/api/v2/users"))).isEqualTo(LoggingRules.Decision.LOG);
+        LoggingRules silent = rules.toBuilder().alwaysLogErrors(false).override("example.org", "/api/v2", 0).build();
+        assertThat(silent.getOverrides().size()).isEqualTo(3);
+        assertThat(silent.decide(new URI("http://example.org/api/v2/users"))).isEqualTo(LoggingRules.Decision.SKIP);
+        int sampled = 0;
+        LoggingRules oneInTen = LoggingRules.builder().sampleEvery(10).build();
+        for (int i = 0; i < 10000; i++) {
+            if (oneInTen.decide(new URI("http://localhost/")) == LoggingRules.Decision.LOG) {
+                sampled++;
+            }
+        }
+        assertThat(sampled).isBetween(700, 1300);
+    }
+
+    @Test
+    public void testSampledInterceptor() {
+        AsyncLoggingRequestInterceptor ali = new AsyncLoggingRequestInterceptor(StandardCharsets.UTF_8, 100,
+                Level.INFO, 16, OverflowPolicy.BLOCK);
+        LoggingRulesEndpoint endpoint = new LoggingRulesEndpoint(ali);
+        endpoint.update(0, true, null, null);
+        rt.getRestTemplate().setRequestFactory(LoggingRequestFactoryFactory.build(ali));
+        for (int i = 0; i < 5; i++) {
+            assertThat(rt.getForObject(TEST_URL_GET, String.class)).isEqualTo(MockedControllers.TEST_RETURN_VALUE);
+        }
+        rt.getForObject(TEST_URL_ERROR_REPLY, String.class);
+        endpoint.update(1, null, null, TEST_URL_GET);
+        rt.getForObject(TEST_URL_GET, String.class);
+        assertThat(endpoint.rules().get("sample-every")).isEqualTo(0);
+        ali.getEmitter().close();
+        //only the error and the overridden path were logged
+        assertThat(ali.getEmitter().getWrittenCount()).isEqualTo(2);
+        endpoint.reset();
+        assertThat(ali.getRules()).isEqualTo(LoggingRules.logAll());
+    }
+
+    @Test
+    public void testDecisionCarriedByTheRequest() throws Exception {
+        TeeLoggingRequestInterceptor tli = new TeeLoggingRequestInterceptor(StandardCharsets.UTF_8, 50, Level.INFO);
+        tli.setRules(LoggingRules.builder().sampleEvery(0).alwaysLogErrors(false).build());
+        LoggingRequestFactory factory = LoggingRequestFactoryFactory.build(tli, new SimpleClientHttpRequestFactory());
+        //created but never executed, nothing is left for the next request of the thread
+        factory.createRequest(new URI("http://localhost/never"), HttpMethod.GET);
+        assertThat(tli.takeDecision()).isNull();
+        tli.setRules(LoggingRules.logAll());
+        rt.getRestTemplate().setRequestFactory(factory);
+        assertThat(rt.getForObject(TEST_URL_GET, String.class)).isEqualTo(MockedControllers.TEST_RETURN_VALUE);
+        assertThat(tli.takeDecision()).isNull();
+    }
+
+    @Test
+    public void testLevelChangedAtRuntime() throws Exception {
+        URI uri = new URI("http://localhost/whatever");
+        ch.qos.logback.classic.Logger logger = (ch.qos.logback.classic.Logger) LoggerFactory
+                .getLogger(LoggingRequestInterceptor.class);
+        ch.qos.logback.classic.Level initial = logger.getLevel();
+        LoggingRequestFactory lrf = LoggingRequestFactoryFactory.build(
+                new TeeLoggingRequestInterceptor(StandardCharsets.UTF_8, 50, Level.DEBUG));
+        try {
+            logger.setLevel(ch.qos.logback.classic.Level.INFO);
+            assertThat(lrf.createRequest(uri, HttpMethod.GET).getClass().getSimpleName())
+                    .doesNotStartWith("Intercepting");
+            logger.setLevel(ch.qos.logback.classic.Level.DEBUG);
+            assertThat(lrf.createRequest(uri, HttpMethod.GET).getClass().getSimpleName())
+                    .startsWith("Intercepting");
+        } finally {
+            logger.setLevel(initial);
+        }
+    }
+
+    @Test
+    public void testJsonLinesEncoder() throws Exception {
+        byte[] request = "{\"name\":\"caf\u00e9\\n\"}\t".getBytes(StandardCharsets.UTF_8);
+        //the euro sign is cut after its first byte
+        byte[] response = Arrays.copyOf("ok \u20ac".getBytes(StandardCharsets.UTF_8), 4);
+        LoggedExchange exchange = new LoggedExchange("http://localhost/caf\u00e9?q=\"x\"", "POST", 201,
+                1497543876123L, 1250000, 1310000, request, request.length, response, response.length, "main");
+        String line = new JsonLinesEncoder(StandardCharsets.UTF_8).toString(exchange);
+        Map<?, ?> json = new ObjectMapper().readValue(line, Map.class);
+        assertThat(json.get("uri")).isEqualTo("http://localhost/caf\u00e9?q=\"x\"");
+        assertThat(json.get("status")).isEqualTo(201);
+        assertThat(json.get("start")).isEqualTo(1497543876123L);
+        assertThat(json.get("total-us")).isEqualTo(1310);
+        assertThat(json.get("request")).isEqualTo("{\"name\":\"caf\u00e9\\n\"}\t");
+        assertThat(json.get("response")).isEqualTo("ok ");
+        byte[] latin = "r\u00e9ponse".getBytes(StandardCharsets.ISO_8859_1);
+        LoggedExchange latinExchange = new LoggedExchange("http://localhost/", "GET", 200, 0, 0, 0,
+                new byte[0], 0, latin, latin.length, "main");
+        json = new ObjectMapper().readValue(new JsonLinesEncoder(StandardCharsets.ISO_8859_1)
+                .toString(latinExchange), Map.class);
+        assertThat(json.get("response")).isEqualTo("r\u00e9ponse");
+    }
+
+    @Test
+    public void testJsonLinesEncoderNonUtf8Preview() throws Exception {
+        //gzip magic, then latin-1, an overlong slash, a surrogate, and a valid e acute
+        byte[] gzip = {0x1f, (byte) 0x8b, 0x08, (byte) 0xff, (byte) 0x80, 0x61};
+        byte[] mixed = {'r', (byte) 0xe9, 'p', (byte) 0xc0, (byte) 0xaf, (byte) 0xed, (byte) 0xa0, (byte) 0x80,
+            (byte) 0xc3, (byte) 0xa9};
+        LoggedExchange exchange = new LoggedExchange("http://localhost/", "POST", 200, 0, 0, 0,
+                mixed, mixed.length, gzip, gzip.length, "main");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new JsonLinesEncoder(StandardCharsets.UTF_8).writeTo(exchange, out);
+        byte[] line = out.toByteArray();
+        //strict decoding, throws on malformed input
+        StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(line));
+        Map<?, ?> json = new ObjectMapper().readValue(line, Map.class);
+        assertThat(json.get("response")).isEqualTo("\u001f\ufffd\u0008\ufffd\ufffda");
+        assertThat(json.get("request")).isEqualTo("r\ufffdp\ufffd\ufffd\ufffd\ufffd\ufffd\u00e9");
+    }
+
+    @Test
+    public void testJsonLinesEncodingDoesNotAllocate() throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        byte[] body = new byte[2048];
+        Arrays.fill(body, (byte) 'a');
+        body[100] = '"';
+        LoggedExchange exchange = new LoggedExchange("http://localhost/users/12", "GET", 200,
+                System.currentTimeMillis(), 1000000, 2000000, body, 512, body, body.length, "main");
+        JsonLinesEncoder encoder = new JsonLinesEncoder(StandardCharsets.UTF_8);
+        OutputStream sink = OutputStream.nullOutputStream();
+        for (int i = 0; i < 20000; i++) {
+            encoder.writeTo(exchange, sink);
+        }
+        long tid = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(tid);
+        for (int i = 0; i < 100000; i++) {
+            encoder.writeTo(exchange, sink);
+        }
+        long allocated = threads.getThreadAllocatedBytes(tid) - before;
+        //flat: far less than one byte per exchange, the measure itself allocates a little
+        assertThat(allocated).isLessThan(100000L);
+    }
+
+    @Test
+    public void testJsonLinesInterceptorAllocation() throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        int previewLength = 10000;
+        JsonLinesLoggingRequestInterceptor jli = new JsonLinesLoggingRequestInterceptor(StandardCharsets.UTF_8,
+                previewLength, Level.INFO, OutputStream.nullOutputStream());
+        byte[] requestBody = new byte[4096];
+        Arrays.fill(requestBody, (byte) 'q');
+        byte[] responseBody = new byte[3 * previewLength];
+        Arrays.fill(responseBody, (byte) 'r');
+        HttpRequest request = new HttpRequest() {
+            private final URI uri = URI.create("http://localhost/users/12");
+            private final HttpHeaders headers = new HttpHeaders();
+
+            @Override
+            public String getMethodValue() {
+                return "POST";
+            }
+
+            @Override
+            public URI getURI() {
+                return uri;
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return headers;
+            }
+        };
+        ReplayedResponse response = new ReplayedResponse(responseBody);
+        ClientHttpRequestExecution execution = (r, b) -> response;
+        byte[] read = new byte[8192];
+        for (int i = 0; i < 20000; i++) {
+            exchange(jli, request, requestBody, execution, read);
+        }
+        long tid = Thread.currentThread().getId();
+        int exchanges = 20000;
+        long before = threads.getThreadAllocatedBytes(tid);
+        for (int i = 0; i < exchanges; i++) {
+            exchange(jli, request, requestBody, execution, read);
+        }
+        long perExchange = (threads.getThreadAllocatedBytes(tid) - before) / exchanges;
+        //the interceptor path allocates a few small wrappers, never a preview
+        assertThat(perExchange).isLessThan(previewLength / 10L);
+    }
+
+    private static void exchange(JsonLinesLoggingRequestInterceptor jli, HttpRequest request, byte[] body,
+            ClientHttpRequestExecution execution, byte[] read) throws Exception {
+        ClientHttpResponse r = jli.intercept(request, body, execution);
+        InputStream in = r.getBody();
+        while (in.read(read) >= 0) {
+            //consumed as a RestTemplate would
+        }
+        r.close();
+    }
+
+    /**
+     * a response replaying the same body, without allocating
+     */
+    private static class ReplayedResponse implements ClientHttpResponse {
+
+        private final ByteArrayInputStream body;
+        private final HttpHeaders headers = new HttpHeaders();
+
+        ReplayedResponse(byte[] body) {
+            this.body = new ByteArrayInputStream(body);
+        }
+
+        @Override
+        public HttpStatus getStatusCode() {
+            return HttpStatus.OK;
+        }
+
+        @Override
+        public int getRawStatusCode() {
+            return 200;
+        }
+
+        @Override
+        public String getStatusText() {
+            return "OK";
+        }
+
+        @Override
+        public void close() {
+            body.reset();
+        }
+
+        @Override
+        public InputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+    }
+
+    @Test
+    public void testJsonLinesInterceptor() {
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        JsonLinesLoggingRequestInterceptor jli = new JsonLinesLoggingRequestInterceptor(StandardCharsets.UTF_8, 100,
+                Level.INFO, sink);
+        rt.getRestTemplate().setRequestFactory(LoggingRequestFactoryFactory.build(jli));
+        for (int i = 0; i < 3; i++) {
+            assertThat(rt.getForObject(TEST_URL_GET, String.class)).isEqualTo(MockedControllers.TEST_RETURN_VALUE);
+        }
+        String[] lines = new String(sink.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertThat(lines.length).isEqualTo(3);
+        assertThat(lines[2]).contains("\"response\":\"" + MockedControllers.TEST_RETURN_VALUE + "\"");
+    }
+
+    @Test
+    public void testRedactor() {
+        Redactor redactor = Redactor.of(Arrays.asList("password", "token", "card"), Arrays.asList("Authorization"));
+        String json = "{\"user\":\"password\",\"password\" : \"s3c\\\"ret\",\"token\":12345,"
+                + "\"card\":{\"number\":\"4111\",\"cvv\":[1,2]},\"nested\":{\"token\":true},\"tokens\":1}";
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        redactor.redact(bytes, 0, bytes.length);
+        assertThat(new String(bytes, StandardCharsets.UTF_8)).isEqualTo(
+                "{\"user\":\"password\",\"password\" : \"********\",\"token\":*****,"
+                + "\"card\":{***************************},\"nested\":{\"token\":****},\"tokens\":1}");
+        //chunks of a stream are masked the same way
+        byte[] chunked = json.getBytes(StandardCharsets.UTF_8);
+        Redactor.Session session = redactor.newSession();
+        for (int i = 0; i < chunked.length; i += 7) {
+            session.redact(chunked, i, Math.min(7, chunked.length - i));
+        }
+        assertThat(chunked).isEqualTo(bytes);
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("authorization", "Bearer abc");
+        headers.add("Accept", "*/*");
+        HttpHeaders redacted = redactor.redact(headers);
+        assertThat(redacted.getFirst("Authorization")).isEqualTo("******");
+        assertThat(redacted.getFirst("Accept")).isEqualTo("*/*");
+        assertThat(headers.getFirst("Authorization")).isEqualTo("Bearer abc");
+    }
+
 }
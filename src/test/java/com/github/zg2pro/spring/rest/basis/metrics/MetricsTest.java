@@ -0,0 +1,234 @@
+package com.github.zg2pro.spring.rest.basis.metrics;
+
+import com.github.zg2pro.spring.rest.basis.MockedControllers;
+import static com.github.zg2pro.spring.rest.basis.MockedControllers.TEST_URL_ERROR_REPLY;
+import static com.github.zg2pro.spring.rest.basis.MockedControllers.TEST_URL_GET;
+import static com.github.zg2pro.spring.rest.basis.MockedControllers.TEST_URL_GET_STRUCTURE;
+import com.github.zg2pro.spring.rest.basis.ReturnedStructure;
+import com.github.zg2pro.spring.rest.basis.exceptions.RestTemplateErrorHandler;
+import com.github.zg2pro.spring.rest.basis.exceptions.RestTemplateException;
+import com.github.zg2pro.spring.rest.basis.exceptions.Zg2proRestServerExceptionsHandler;
+import com.github.zg2pro.spring.rest.basis.pool.ConnectionPoolSettings;
+import com.github.zg2pro.spring.rest.basis.template.Zg2proRestTemplate;
+import com.github.zg2pro.spring.rest.basis.template.Zg2proRestTemplateBuilder;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.fail;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.LocalHostUriTemplateHandler;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+
+@ControllerAdvice
+class ServiceAdvisor extends Zg2proRestServerExceptionsHandler {
+
+}
+
+/**
+ * Spring boot server (tomcat embedded) runner
+ *
+ * @author zg2pro
+ */
+@RunWith(MockitoJUnitRunner.class)
+@EnableAutoConfiguration
+@Configuration
+class ApplicationBoot {
+
+    @Bean
+    public MockedControllers mockedControllers() {
+        return new MockedControllers();
+    }
+
+    @Bean
+    public ServiceAdvisor serviceAdvisor() {
+        return new ServiceAdvisor();
+    }
+
+    @Bean
+    @Primary
+    public TestRestTemplate zg2TestRestTemplate(Environment environment) {
+        TestRestTemplate trt = new TestRestTemplate(new Zg2proRestTemplateBuilder(new Zg2proRestTemplate()));
+        trt.setUriTemplateHandler(new LocalHostUriTemplateHandler(environment));
+        return trt;
+    }
+
+}
+
+/**
+ *
+ * unit tests about the metrics interceptor and its histograms
+ *
+ * @author zg2pro
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(
+        classes = {ApplicationBoot.class},
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class MetricsTest {
+
+    @Autowired
+    private TestRestTemplate rt;
+
+    @Test
+    public void testHistogram() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertThat(h.getValueAtPercentile(50)).isEqualTo(0);
+        for (long i = 1; i <= 10000; i++) {
+            h.record(i);
+        }
+        h.record(-5);
+        HistogramSnapshot hs = h.snapshot();
+        assertThat(hs.getCount()).isEqualTo(10000);
+        assertThat(hs.getMax()).isEqualTo(10000);
+        assertThat(hs.getMean()).isEqualTo(5000);
+        //log-linear buckets are precise within about 3%
+        assertThat(hs.getP50()).isBetween(5000L, 5160L);
+        assertThat(hs.getP99()).isBetween(9900L, 10000L);
+        for (int i = 0; i < 2000; i++) {
+            assertThat(LatencyHistogram.bucketUpperBound(LatencyHistogram.bucketIndex(i * 997L)))
+                    .isGreaterThanOrEqualTo(i * 997L);
+        }
+    }
+
+    @Test
+    public void testInterceptor() {
+        Zg2proRestTemplate z = (Zg2proRestTemplate) rt.getRestTemplate();
+        //TestRestTemplate replaces the error handler
+        z.setErrorHandler(new RestTemplateErrorHandler());
+        MetricsRegistry registry = new MetricsRegistry();
+        z.getInterceptors().add(new MetricsRequestInterceptor(registry));
+        for (int i = 0; i < 5; i++) {
+            //the mocked server is not kebab-case, only the call matters here
+            assertThat(z.getForObject(TEST_URL_GET_STRUCTURE, ReturnedStructure.class)).isNotNull();
+            assertThat(z.getForObject(TEST_URL_GET, String.class)).isEqualTo(MockedControllers.TEST_RETURN_VALUE);
+        }
+        try {
+            z.getForObject(TEST_URL_ERROR_REPLY, ReturnedStructure.class);
+            fail("an exception was expected");
+        } catch (RestTemplateException rte) {
+            assertThat(rte.getCause()).isNotNull();
+        }
+        EndpointMetrics structure = registry.endpoint("GET", TEST_URL_GET_STRUCTURE);
+        assertThat(structure.getCount()).isEqualTo(5);
+        assertThat(structure.getInFlight()).isEqualTo(0);
+        assertThat(structure.getBytesReceived()).isGreaterThan(0);
+        assertThat(structure.getLatency(200).snapshot().getMax()).isGreaterThan(0);
+        EndpointMetrics error = registry.endpoint("GET", TEST_URL_ERROR_REPLY);
+        assertThat(error.getErrors()).isEqualTo(1);
+        assertThat(error.getLatency(400).getCount()).isEqualTo(1);
+
+        RestClientMetricsEndpoint endpoint = new RestClientMetricsEndpoint(registry);
+        Map<String, Object> snapshot = endpoint.metrics();
+        assertThat(snapshot.containsKey("GET " + TEST_URL_GET)).isTrue();
+        endpoint.reset();
+        assertThat(endpoint.metrics().isEmpty()).isTrue();
+        z.getInterceptors().remove(z.getInterceptors().size() - 1);
+    }
+
+    @Test
+    public void testTemplatesWithoutContext() {
+        assertThat(MetricsRequestInterceptor.uriTemplate(new MockClientHttpRequest(HttpMethod.GET,
+                URI.create("http://localhost/users/12/files/3f2504e0-4f89-11d3-9a0c-0305e82c3301"))))
+                .isEqualTo("/users/{id}/files/{id}");
+    }
+
+    @Test
+    public void testTemplatesFromConcatenatedUrls() {
+        MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.GET, URI.create("http://localhost/"));
+        String previous = UriTemplateContext.enter("http://localhost:8080/users/12/files?page=3#top");
+        try {
+            assertThat(MetricsRequestInterceptor.uriTemplate(request)).isEqualTo("/users/{id}/files");
+        } finally {
+            UriTemplateContext.exit(previous);
+        }
+        previous = UriTemplateContext.enter("https://example.org/users/{user}/files/7?sort={sort}");
+        try {
+            assertThat(MetricsRequestInterceptor.uriTemplate(request)).isEqualTo("/users/{user}/files/{id}");
+        } finally {
+            UriTemplateContext.exit(previous);
+        }
+        MetricsRegistry registry = new MetricsRegistry(3);
+        for (int i = 0; i < 10; i++) {
+            registry.endpoint("GET", "/page" + i).requestStarted(0);
+        }
+        assertThat(registry.getEndpoints().size()).isEqualTo(4);
+        assertThat(registry.endpoint("GET", "/page2").getInFlight()).isEqualTo(1);
+        assertThat(registry.endpoint("GET", MetricsRegistry.OVERFLOW_TEMPLATE).getInFlight()).isEqualTo(7);
+    }
+
+    @Test
+    public void testPhaseTimings() throws Exception {
+        List<ExchangeTimings> timings = new ArrayList<>();
+        Zg2proRestTemplate z = new Zg2proRestTemplate(null, new ConnectionPoolSettings());
+        try {
+            z.setUriTemplateHandler(rt.getRestTemplate().getUriTemplateHandler());
+            z.addExchangeTimingListener(timings::add);
+            assertThat(z.getForObject(TEST_URL_GET, String.class)).isEqualTo(MockedControllers.TEST_RETURN_VALUE);
+            ExchangeTimings et = timings.get(0);
+            assertThat(et.getStatus()).isEqualTo(200);
+            assertThat(et.getMethod()).isEqualTo("GET");
+            //the pooled client sees the connection and the request phases
+            assertThat(et.getConnectNanos()).isGreaterThanOrEqualTo(0);
+            assertThat(et.getRequestNanos()).isGreaterThanOrEqualTo(0);
+            assertThat(et.getTimeToFirstByteNanos()).isGreaterThanOrEqualTo(et.getConnectNanos());
+            assertThat(et.getDeserializeNanos()).isGreaterThanOrEqualTo(0);
+            assertThat(et.getTotalNanos()).isGreaterThanOrEqualTo(et.getTimeToFirstByteNanos());
+            assertThat(et.getServerNanos()).isEqualTo(-1);
+        } finally {
+            z.destroy();
+        }
+        Zg2proRestTemplate simple = new Zg2proRestTemplate();
+        simple.setUriTemplateHandler(rt.getRestTemplate().getUriTemplateHandler());
+        simple.addExchangeTimingListener(timings::add);
+        simple.getForObject(TEST_URL_GET, String.class);
+        //HttpURLConnection does not tell when it is connected
+        assertThat(timings.get(1).getConnectNanos()).isEqualTo(-1);
+        assertThat(timings.get(1).getTimeToFirstByteNanos()).isGreaterThan(0);
+        //the first byte is marked under an interceptor lingering on the response
+        simple.getInterceptors().add((request, body, execution) -> {
+            ClientHttpResponse response = execution.execute(request, body);
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            return response;
+        });
+        simple.getForObject(TEST_URL_GET, String.class);
+        assertThat(timings.get(2).getTotalNanos()).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(300));
+        assertThat(timings.get(2).getTimeToFirstByteNanos()).isLessThan(TimeUnit.MILLISECONDS.toNanos(300));
+        assertThat(ExchangePhases.current()).isNull();
+    }
+
+    @Test
+    public void testServerTiming() {
+        Map<String, Double> st = ServerTimingParser.parse(Arrays.asList(
+                "db;dur=53, app;dur=47.2;desc=\"render\"", "cache;desc=hit, broken;dur=abc"));
+        assertThat(st.size()).isEqualTo(2);
+        assertThat(st.get("app")).isEqualTo(47.2);
+        assertThat(ServerTimingParser.serverNanos(st)).isEqualTo(100200000L);
+        st.put("total", 120d);
+        assertThat(ServerTimingParser.serverNanos(st)).isEqualTo(120000000L);
+        ExchangeTimings et = new ExchangeTimings("/", "GET", 200, -1, -1, 150000000L, 0, 0, 160000000L, st, 120000000L);
+        assertThat(et.getNetworkNanos()).isEqualTo(30000000L);
+    }
+
+}
@@ -0,0 +1,205 @@
+package com.github.zg2pro.spring.rest.basis.serialization;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.github.zg2pro.spring.rest.basis.*;
+import static com.github.zg2pro.spring.rest.basis.MockedControllers.TEST_URL_ECHO_STRUCTURE;
+import static com.github.zg2pro.spring.rest.basis.MockedControllers.TEST_URL_GET_STRUCTURE;
+import com.github.zg2pro.spring.rest.basis.template.Zg2proRestTemplate;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.fail;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Spring boot server (tomcat embedded) runner, answering in kebab-case JSON,
+ * Smile or CBOR
+ *
+ * @author zg2pro
+ */
+@RunWith(MockitoJUnitRunner.class)
+@EnableAutoConfiguration
+@Configuration
+class ApplicationBoot {
+
+    @Bean
+    public MockedControllers mockedControllers() {
+        return new MockedControllers();
+    }
+
+    @Bean
+    public HttpMessageConverter<?> kebabJsonConverter() {
+        return KebabCaseConverters.json(null);
+    }
+
+    @Bean
+    public HttpMessageConverter<?> kebabSmileConverter() {
+        return KebabCaseConverters.smile(null);
+    }
+
+    @Bean
+    public HttpMessageConverter<?> kebabCborConverter() {
+        return KebabCaseConverters.cbor(null);
+    }
+
+}
+
+/**
+ *
+ * tests about the binary formats negotiation
+ *
+ * @author zg2pro
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(
+        classes = {ApplicationBoot.class},
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class BinaryFormatsTest {
+
+    @Autowired
+    private TestRestTemplate rt;
+
+    private static ReturnedStructure structure(int i) {
+        ReturnedStructure rs = new ReturnedStructure();
+        rs.setFieldOne(i);
+        rs.setFieldTwo("test string value " + i);
+        rs.setFieldThree(i * 0.8965);
+        return rs;
+    }
+
+    @Test
+    public void testNegotiation() {
+        Zg2proRestTemplate z = new Zg2proRestTemplate(new SimpleModule());
+        z.setUriTemplateHandler(rt.getRestTemplate().getUriTemplateHandler());
+        ResponseEntity<ReturnedStructure> json = z.getForEntity(TEST_URL_GET_STRUCTURE, ReturnedStructure.class);
+        assertThat(json.getHeaders().getContentType().isCompatibleWith(MediaType.APPLICATION_JSON)).isTrue();
+        assertThat(json.getBody().getFieldOne()).isEqualTo(12);
+        for (MediaType format : new MediaType[]{KebabCaseConverters.APPLICATION_SMILE,
+            KebabCaseConverters.APPLICATION_CBOR}) {
+            z.setPreferredFormat(format);
+            ResponseEntity<ReturnedStructure> binary = z.getForEntity(TEST_URL_GET_STRUCTURE, ReturnedStructure.class);
+            assertThat(binary.getHeaders().getContentType().isCompatibleWith(format)).isTrue();
+            assertThat(binary.getBody().getFieldTwo()).isEqualTo("test string value");
+            assertThat(binary.getBody().getFieldThree()).isEqualTo(0.8965);
+            ResponseEntity<ReturnedStructure> echo = z.postForEntity(TEST_URL_ECHO_STRUCTURE, structure(7),
+                    ReturnedStructure.class);
+            assertThat(echo.getHeaders().getContentType().isCompatibleWith(format)).isTrue();
+            assertThat(echo.getBody().getFieldTwo()).isEqualTo("test string value 7");
+        }
+        z.setPreferredFormat(MediaType.APPLICATION_JSON);
+        assertThat(z.getForEntity(TEST_URL_GET_STRUCTURE, ReturnedStructure.class).getHeaders().getContentType()
+                .isCompatibleWith(MediaType.APPLICATION_JSON)).isTrue();
+        try {
+            z.setPreferredFormat(MediaType.APPLICATION_XML);
+            fail("xml is not a jackson format of the template");
+        } catch (IllegalArgumentException iae) {
+            //expected
+        }
+    }
+
+    /**
+     * smile and cbor are optional dependencies, a template must still be
+     * built without their jars
+     */
+    @Test
+    public void testWithoutBinaryFormatJars() throws Exception {
+        ClassLoader withoutJars = new WithoutBinaryFormatsClassLoader(getClass().getClassLoader());
+        Class<?> kebab = withoutJars.loadClass(KebabCaseConverters.class.getName());
+        assertThat(kebab.getClassLoader()).isSameAs(withoutJars);
+        assertThat(kebab.getMethod("isSmilePresent").invoke(null)).isEqualTo(false);
+        assertThat(kebab.getMethod("isCborPresent").invoke(null)).isEqualTo(false);
+        Object template = withoutJars.loadClass(Zg2proRestTemplate.class.getName()).getConstructor().newInstance();
+        for (HttpMessageConverter<?> converter : ((RestTemplate) template).getMessageConverters()) {
+            assertThat(converter.getSupportedMediaTypes().contains(KebabCaseConverters.APPLICATION_SMILE)).isFalse();
+            assertThat(converter.getSupportedMediaTypes().contains(KebabCaseConverters.APPLICATION_CBOR)).isFalse();
+        }
+    }
+
+    /**
+     * defines the classes of this project itself, and hides the smile and
+     * cbor jars from them
+     */
+    private static class WithoutBinaryFormatsClassLoader extends ClassLoader {
+
+        WithoutBinaryFormatsClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (name.startsWith("com.fasterxml.jackson.dataformat.smile.")
+                    || name.startsWith("com.fasterxml.jackson.dataformat.cbor.")) {
+                throw new ClassNotFoundException(name);
+            }
+            if (!name.startsWith("com.github.zg2pro.spring.rest.basis.")) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> c = findLoadedClass(name);
+                if (c == null) {
+                    try (InputStream is = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+                        if (is == null) {
+                            throw new ClassNotFoundException(name);
+                        }
+                        byte[] bytes = StreamUtils.copyToByteArray(is);
+                        c = defineClass(name, bytes, 0, bytes.length);
+                    } catch (IOException ioe) {
+                        throw new ClassNotFoundException(name, ioe);
+                    }
+                }
+                if (resolve) {
+                    resolveClass(c);
+                }
+                return c;
+            }
+        }
+    }
+
+    /**
+     * the binary formats read back 1000 structures, from smaller payloads
+     * than json, see Benchmarks for their throughput
+     */
+    @Test
+    public void testBinaryFormatsPayloads() throws Exception {
+        List<ReturnedStructure> structures = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            structures.add(structure(i));
+        }
+        ObjectMapper[] mappers = {KebabCaseConverters.objectMapper(null, null),
+            KebabCaseConverters.objectMapper(new SmileFactory(), null),
+            KebabCaseConverters.objectMapper(new CBORFactory(), null)};
+        JavaType listType = mappers[0].getTypeFactory().constructCollectionType(List.class, ReturnedStructure.class);
+        int jsonSize = 0;
+        for (int f = 0; f < mappers.length; f++) {
+            byte[] payload = mappers[f].writeValueAsBytes(structures);
+            List<ReturnedStructure> read = mappers[f].readValue(payload, listType);
+            assertThat(read.get(999).getFieldTwo()).isEqualTo("test string value 999");
+            if (f == 0) {
+                jsonSize = payload.length;
+            } else {
+                assertThat(payload.length).isLessThan(jsonSize);
+            }
+        }
+    }
+
+}
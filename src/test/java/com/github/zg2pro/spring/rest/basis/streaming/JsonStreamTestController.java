@@ -0,0 +1,63 @@
+package com.github.zg2pro.spring.rest.basis.streaming;
+
+import com.github.zg2pro.spring.rest.basis.ReturnedStructure;
+import com.github.zg2pro.spring.rest.basis.serialization.JsonStreamCursor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ *
+ * large results written by JsonStreamHttpMessageConverter, failing at the
+ * element asked
+ *
+ * @author zg2pro
+ */
+@RestController
+public class JsonStreamTestController {
+
+    public static final String TEST_URL_SERVER_STREAM = "/serverStream";
+    public static final String TEST_URL_SERVER_CURSOR = "/serverCursor";
+
+    private final AtomicLong emitted = new AtomicLong();
+
+    /**
+     * @return the number of elements written by the cursors so far
+     */
+    public long getEmitted() {
+        return emitted.get();
+    }
+
+    private static ReturnedStructure element(int i, int failAt) {
+        if (i == failAt) {
+            throw new IllegalStateException("failing at " + i);
+        }
+        ReturnedStructure rs = new ReturnedStructure();
+        rs.setFieldOne(i);
+        rs.setFieldTwo("element " + i);
+        rs.setFieldThree(i / 2.0);
+        return rs;
+    }
+
+    @RequestMapping(value = TEST_URL_SERVER_STREAM, method = RequestMethod.GET)
+    public Stream<ReturnedStructure> stream(@RequestParam("count") int count,
+            @RequestParam(value = "failAt", defaultValue = "-1") int failAt) {
+        return IntStream.range(0, count).mapToObj(i -> element(i, failAt));
+    }
+
+    @RequestMapping(value = TEST_URL_SERVER_CURSOR, method = RequestMethod.GET, produces = "application/x-ndjson")
+    public JsonStreamCursor<ReturnedStructure> cursor(@RequestParam("count") int count,
+            @RequestParam(value = "failAt", defaultValue = "-1") int failAt) {
+        return elements -> {
+            for (int i = 0; i < count; i++) {
+                elements.accept(element(i, failAt));
+                emitted.incrementAndGet();
+            }
+        };
+    }
+
+}
@@ -0,0 +1,47 @@
+package com.github.zg2pro.spring.rest.basis.streaming;
+
+import com.github.zg2pro.spring.rest.basis.upload.AbstractPartsUploadController;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ *
+ * assembles the parts uploads into target/, replies the path of the file
+ *
+ * @author zg2pro
+ */
+@RestController
+@RequestMapping(PartsUploadTestController.TEST_URL_PARTS_UPLOAD)
+public class PartsUploadTestController extends AbstractPartsUploadController<String> {
+
+    public static final String TEST_URL_PARTS_UPLOAD = "/partsUpload";
+
+    private volatile long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+
+    public void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    @Override
+    protected long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    @Override
+    protected Path getUploadDirectory() {
+        return Paths.get("target");
+    }
+
+    @Override
+    protected String onUploadCompleted(String uploadId, Path file) throws IOException {
+        Path done = file.resolveSibling(uploadId + ".done");
+        Files.move(file, done, StandardCopyOption.REPLACE_EXISTING);
+        return done.toAbsolutePath().toString();
+    }
+
+}
@@ -2,16 +2,65 @@ package com.github.zg2pro.spring.rest.basis.streaming;
 
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.github.zg2pro.spring.rest.basis.*;
+import static com.github.zg2pro.spring.rest.basis.MockedControllers.TEST_URL_DIGEST_DOWNLOAD;
+import static com.github.zg2pro.spring.rest.basis.MockedControllers.TEST_URL_DIGEST_UPLOAD;
 import static com.github.zg2pro.spring.rest.basis.MockedControllers.TEST_URL_FILE_DOWNLOAD;
 import static com.github.zg2pro.spring.rest.basis.MockedControllers.TEST_URL_FILE_UPLOAD;
+import static com.github.zg2pro.spring.rest.basis.MockedControllers.TEST_URL_GET;
+import static com.github.zg2pro.spring.rest.basis.MockedControllers.TEST_URL_JSON_STREAM;
+import static com.github.zg2pro.spring.rest.basis.MockedControllers.TEST_URL_JSON_STREAM_UPLOAD;
+import static com.github.zg2pro.spring.rest.basis.MockedControllers.TEST_URL_RANGED_DOWNLOAD;
+import com.github.zg2pro.spring.rest.basis.exceptions.RestTemplateException;
+import com.github.zg2pro.spring.rest.basis.exceptions.TransferDigestException;
+import com.github.zg2pro.spring.rest.basis.pool.ConnectionPoolSettings;
+import com.github.zg2pro.spring.rest.basis.serialization.JsonStreamHttpMessageConverter;
+import static com.github.zg2pro.spring.rest.basis.streaming.JsonStreamTestController.TEST_URL_SERVER_CURSOR;
+import static com.github.zg2pro.spring.rest.basis.streaming.JsonStreamTestController.TEST_URL_SERVER_STREAM;
+import com.github.zg2pro.spring.rest.basis.template.BandwidthSettings;
+import com.github.zg2pro.spring.rest.basis.template.BufferDownload;
+import com.github.zg2pro.spring.rest.basis.template.BufferDownloadSettings;
+import com.github.zg2pro.spring.rest.basis.template.DigestAlgorithm;
+import com.github.zg2pro.spring.rest.basis.template.DirectBufferPool;
+import com.github.zg2pro.spring.rest.basis.template.DownloadSink;
+import com.github.zg2pro.spring.rest.basis.template.DownloadTee;
+import com.github.zg2pro.spring.rest.basis.template.DownloadSinks;
+import com.github.zg2pro.spring.rest.basis.template.JsonStreamFormat;
+import com.github.zg2pro.spring.rest.basis.template.ParallelDownloadSettings;
+import com.github.zg2pro.spring.rest.basis.template.PartsUploadSettings;
+import com.github.zg2pro.spring.rest.basis.template.ResumableDownloadSettings;
+import com.github.zg2pro.spring.rest.basis.template.TransferDigestSettings;
+import com.github.zg2pro.spring.rest.basis.template.TransferProgress;
 import com.github.zg2pro.spring.rest.basis.template.Zg2proRestTemplate;
 import com.github.zg2pro.spring.rest.basis.template.Zg2proRestTemplateBuilder;
+import com.github.zg2pro.spring.rest.basis.upload.AbstractPartsUploadController;
+import com.github.zg2pro.spring.rest.basis.upload.PartsUploadProtocol;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.fail;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -27,8 +76,21 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 import org.springframework.core.env.Environment;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.InterceptingClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
 
 /**
  * Spring boot server (tomcat embedded) runner
@@ -45,6 +107,21 @@ class ApplicationBoot {
         return new MockedControllers();
     }
 
+    @Bean
+    public PartsUploadTestController partsUploadTestController() {
+        return new PartsUploadTestController();
+    }
+
+    @Bean
+    public JsonStreamTestController jsonStreamTestController() {
+        return new JsonStreamTestController();
+    }
+
+    @Bean
+    public JsonStreamHttpMessageConverter jsonStreamHttpMessageConverter() {
+        return new JsonStreamHttpMessageConverter();
+    }
+
     @Bean
     @Primary
     public TestRestTemplate zg2TestRestTemplate(ObjectProvider<RestTemplateBuilder> builderProvider, Environment environment) {
@@ -72,6 +149,12 @@ public class StreamingTest {
     @Autowired
     private TestRestTemplate rt;
 
+    @Autowired
+    private MockedControllers mockedControllers;
+
+    @Autowired
+    private PartsUploadTestController partsUploadTestController;
+
     private Path originalFile;
 
     @Before
@@ -101,4 +184,554 @@ public class StreamingTest {
         assertThat(oldFile).isEqualTo(newFile);
     }
 
+    @Test
+    public void testStreamAndDelete() throws Exception {
+        Path copy = Files.createTempFile("test-upload", ".tmp");
+        Files.copy(originalFile, copy, StandardCopyOption.REPLACE_EXISTING);
+        Zg2proRestTemplate pooled = new Zg2proRestTemplate(new SimpleModule(), new ConnectionPoolSettings());
+        pooled.setUriTemplateHandler(rt.getRestTemplate().getUriTemplateHandler());
+        String s = pooled.postForPathAndDelete(TEST_URL_FILE_UPLOAD, copy, String.class);
+        assertThat(s).isEqualTo("ok");
+        assertThat(Files.exists(copy)).isFalse();
+        pooled.setFilesStreamingOperationsHttpHeaders(null);
+        Path sp = pooled.getForObject(TEST_URL_FILE_DOWNLOAD, "target/test-content-pooled.tmp");
+        assertThat(Files.readAllBytes(sp)).isEqualTo(Files.readAllBytes(originalFile));
+        Files.delete(sp);
+        pooled.destroy();
+    }
+
+    @Test
+    public void testParallelDownload() throws Exception {
+        Zg2proRestTemplate pooled = new Zg2proRestTemplate(new SimpleModule(), new ConnectionPoolSettings());
+        pooled.setUriTemplateHandler(rt.getRestTemplate().getUriTemplateHandler());
+        ParallelDownloadSettings pds = new ParallelDownloadSettings();
+        pds.setParts(4);
+        pds.setMinPartSize(64 * 1024);
+        pooled.setParallelDownloadSettings(pds);
+        int ranges = mockedControllers.getRangeRequests();
+        Path sp = pooled.getForObject(TEST_URL_RANGED_DOWNLOAD, "target/test-content-ranged.tmp");
+        assertThat(mockedControllers.getRangeRequests() - ranges).isEqualTo(4);
+        assertThat(Files.readAllBytes(sp)).isEqualTo(Files.readAllBytes(originalFile));
+        Files.delete(sp);
+        //no Accept-Ranges, single stream
+        Path single = pooled.getForObject(TEST_URL_GET, "target/test-content-single.tmp");
+        assertThat(new String(Files.readAllBytes(single), StandardCharsets.UTF_8))
+                .isEqualTo(MockedControllers.TEST_RETURN_VALUE);
+        Files.delete(single);
+        pooled.destroy();
+    }
+
+    @Test
+    public void testResumableDownload() throws Exception {
+        Zg2proRestTemplate z = new Zg2proRestTemplate(new SimpleModule());
+        z.setUriTemplateHandler(rt.getRestTemplate().getUriTemplateHandler());
+        //the first two responses are cut after 1MB
+        AtomicInteger cuts = new AtomicInteger(2);
+        ClientHttpRequestInterceptor flaky = (request, body, execution) -> {
+            ClientHttpResponse response = execution.execute(request, body);
+            return cuts.getAndDecrement() > 0 ? new CutResponse(response, 1000000) : response;
+        };
+        SimpleClientHttpRequestFactory simple = new SimpleClientHttpRequestFactory();
+        simple.setBufferRequestBody(false);
+        z.setStreamingRequestFactory(new InterceptingClientHttpRequestFactory(simple, Collections.singletonList(flaky)));
+        ResumableDownloadSettings rds = new ResumableDownloadSettings();
+        rds.setMaxAttempts(1);
+        rds.setInitialBackoff(10);
+        rds.setCheckpointInterval(300000);
+        z.setResumableDownloadSettings(rds);
+        Path target = Paths.get("target/test-content-resumed.tmp");
+        Path state = Paths.get("target/test-content-resumed.tmp.resume");
+        try {
+            z.getForObject(TEST_URL_RANGED_DOWNLOAD, target.toString());
+            fail("the download should have been cut");
+        } catch (ResourceAccessException rae) {
+            assertThat(Files.size(target)).isEqualTo(1000000);
+            assertThat(Files.exists(state)).isTrue();
+        }
+        rds.setMaxAttempts(3);
+        int ranges = mockedControllers.getRangeRequests();
+        z.getForObject(TEST_URL_RANGED_DOWNLOAD, target.toString());
+        //cut once more, then completed, both times from where it stopped
+        assertThat(mockedControllers.getRangeRequests() - ranges).isEqualTo(2);
+        assertThat(Files.readAllBytes(target)).isEqualTo(Files.readAllBytes(originalFile));
+        assertThat(Files.exists(state)).isFalse();
+        Files.delete(target);
+    }
+
+    @Test
+    public void testPartsUpload() throws Exception {
+        Zg2proRestTemplate z = new Zg2proRestTemplate(new SimpleModule());
+        z.setUriTemplateHandler(rt.getRestTemplate().getUriTemplateHandler());
+        //the first part sent fails
+        AtomicInteger failures = new AtomicInteger(1);
+        AtomicInteger puts = new AtomicInteger();
+        ClientHttpRequestInterceptor flaky = (request, body, execution) -> {
+            if (request.getMethod() == HttpMethod.PUT) {
+                puts.incrementAndGet();
+                if (failures.getAndDecrement() > 0) {
+                    throw new IOException("connection reset");
+                }
+            }
+            return execution.execute(request, body);
+        };
+        SimpleClientHttpRequestFactory simple = new SimpleClientHttpRequestFactory();
+        simple.setBufferRequestBody(false);
+        z.setStreamingRequestFactory(new InterceptingClientHttpRequestFactory(simple, Collections.singletonList(flaky)));
+        PartsUploadSettings pus = new PartsUploadSettings();
+        pus.setPartSize(500000);
+        pus.setParallelism(3);
+        pus.setInitialBackoff(10);
+        z.setPartsUploadSettings(pus);
+        long size = Files.size(originalFile);
+        int parts = (int) ((size + 499999) / 500000);
+        Path assembled = Paths.get(z.postForPathInParts(PartsUploadTestController.TEST_URL_PARTS_UPLOAD,
+                originalFile, String.class));
+        assertThat(puts.get()).isEqualTo(parts + 1);
+        assertThat(Files.readAllBytes(assembled)).isEqualTo(Files.readAllBytes(originalFile));
+        Files.delete(assembled);
+    }
+
+    @Test
+    public void testPartsUploadExpiryAndMaximumSize() throws Exception {
+        Path idle = Paths.get("target/idle-upload.upload");
+        assertThat(putPart("idle-upload", "bytes 0-3/100").getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(Files.exists(idle)).isTrue();
+        partsUploadTestController.setIdleTimeout(1);
+        try {
+            Thread.sleep(20);
+            //any request expires the idle uploads
+            assertThat(putPart("other-upload", "bytes 0-3/4").getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(Files.exists(idle)).isFalse();
+        } finally {
+            partsUploadTestController.setIdleTimeout(AbstractPartsUploadController.DEFAULT_IDLE_TIMEOUT);
+        }
+        rt.delete(PartsUploadTestController.TEST_URL_PARTS_UPLOAD + "/other-upload");
+        long tooLarge = AbstractPartsUploadController.DEFAULT_MAX_UPLOAD_SIZE + 1;
+        assertThat(putPart("huge-upload", "bytes 0-3/" + tooLarge).getStatusCode().is2xxSuccessful()).isFalse();
+        assertThat(Files.exists(Paths.get("target/huge-upload.upload"))).isFalse();
+    }
+
+    private ResponseEntity<String> putPart(String uploadId, String contentRange) {
+        byte[] part = new byte[]{1, 2, 3, 4};
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.CONTENT_RANGE, contentRange);
+        headers.set(PartsUploadProtocol.PART_CHECKSUM_HEADER, PartsUploadProtocol.crc32c(ByteBuffer.wrap(part)));
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        return rt.exchange(PartsUploadTestController.TEST_URL_PARTS_UPLOAD + "/" + uploadId + "/parts/0",
+                HttpMethod.PUT, new HttpEntity<>(part, headers), String.class);
+    }
+
+    @Test
+    public void testTransferDigests() throws Exception {
+        Zg2proRestTemplate z = new Zg2proRestTemplate(new SimpleModule());
+        z.setUriTemplateHandler(rt.getRestTemplate().getUriTemplateHandler());
+        z.setFilesStreamingOperationsHttpHeaders(null);
+        TransferDigestSettings tds = new TransferDigestSettings();
+        z.setTransferDigestSettings(tds);
+        Path target = Paths.get("target/test-content-digest.tmp");
+        z.getForObject(TEST_URL_DIGEST_DOWNLOAD, target.toString());
+        assertThat(Files.readAllBytes(target)).isEqualTo(Files.readAllBytes(originalFile));
+        Files.delete(target);
+        try {
+            z.getForObject(TEST_URL_DIGEST_DOWNLOAD + "?corrupt=true", target.toString());
+            fail("the digests should differ");
+        } catch (TransferDigestException tde) {
+            assertThat(Files.exists(target)).isFalse();
+        }
+        //no md5 given by the server
+        tds.setAlgorithm(DigestAlgorithm.MD5);
+        tds.setRequired(true);
+        try {
+            z.getForObject(TEST_URL_DIGEST_DOWNLOAD, target.toString());
+            fail("the digest should be missing");
+        } catch (TransferDigestException tde) {
+            assertThat(Files.exists(target)).isFalse();
+        }
+
+        tds.setAlgorithm(DigestAlgorithm.CRC32C);
+        Path copy = Files.createTempFile("test-upload", ".tmp");
+        Files.copy(originalFile, copy, StandardCopyOption.REPLACE_EXISTING);
+        try {
+            z.postForPathAndDelete(TEST_URL_DIGEST_UPLOAD + "?corrupt=true", copy, String.class);
+            fail("the digests should differ");
+        } catch (TransferDigestException tde) {
+            assertThat(Files.exists(copy)).isTrue();
+        }
+        assertThat(z.postForPathAndDelete(TEST_URL_DIGEST_UPLOAD, copy, String.class)).isEqualTo("ok");
+        assertThat(Files.exists(copy)).isFalse();
+    }
+
+    @Test
+    public void testDownloadSinks() throws Exception {
+        Zg2proRestTemplate z = new Zg2proRestTemplate(new SimpleModule());
+        z.setUriTemplateHandler(rt.getRestTemplate().getUriTemplateHandler());
+        z.setFilesStreamingOperationsHttpHeaders(null);
+        byte[] original = Files.readAllBytes(originalFile);
+        Path target = Paths.get("target/test-content-sink.tmp");
+        for (DownloadSink sink : Arrays.asList(DownloadSinks.preallocatedChannel(100000),
+                DownloadSinks.memoryMapped(1000000))) {
+            z.setDownloadSink(sink);
+            z.getForObject(TEST_URL_RANGED_DOWNLOAD, target.toString());
+            assertThat(Files.readAllBytes(target)).isEqualTo(original);
+            //unknown, longer and shorter than announced
+            for (long announced : new long[]{-1, original.length - 1000, original.length + 1000}) {
+                sink.write(new ByteArrayInputStream(original), announced, target);
+                assertThat(Files.readAllBytes(target)).isEqualTo(original);
+            }
+        }
+        Files.delete(target);
+    }
+
+    @Test
+    public void testBufferDownload() throws Exception {
+        Zg2proRestTemplate z = new Zg2proRestTemplate(new SimpleModule());
+        z.setUriTemplateHandler(rt.getRestTemplate().getUriTemplateHandler());
+        BufferDownloadSettings bds = new BufferDownloadSettings();
+        bds.setPool(new DirectBufferPool(4096, 1024 * 1024, 16L * 1024 * 1024));
+        z.setBufferDownloadSettings(bds);
+        byte[] original = Files.readAllBytes(originalFile);
+        for (int i = 0; i < 2; i++) {
+            try (BufferDownload download = z.getForBuffer(TEST_URL_RANGED_DOWNLOAD)) {
+                assertThat(download.isSpilled()).isFalse();
+                assertThat(download.size()).isEqualTo(original.length);
+                assertThat(StreamUtils.copyToByteArray(download.getInputStream())).isEqualTo(original);
+                //the buffers of the first download are reused by the second
+                assertThat(bds.getPool().getRetainedBytes()).isEqualTo(0);
+            }
+            assertThat(bds.getPool().getRetainedBytes()).isEqualTo(4L * 1024 * 1024);
+        }
+        try (BufferDownload download = z.getForBuffer(TEST_URL_GET)) {
+            assertThat(download.getBuffers().size()).isEqualTo(1);
+            assertThat(StreamUtils.copyToString(download.getInputStream(), StandardCharsets.UTF_8))
+                    .isEqualTo(MockedControllers.TEST_RETURN_VALUE);
+        }
+        bds.setSpillThreshold(1024 * 1024);
+        Path spilled;
+        try (BufferDownload download = z.getForBuffer(TEST_URL_RANGED_DOWNLOAD)) {
+            assertThat(download.isSpilled()).isTrue();
+            spilled = download.getFile();
+            assertThat(Files.readAllBytes(spilled)).isEqualTo(original);
+        }
+        assertThat(Files.exists(spilled)).isFalse();
+    }
+
+    @Test
+    public void testBandwidthAndProgress() throws Exception {
+        Zg2proRestTemplate z = new Zg2proRestTemplate(new SimpleModule());
+        z.setUriTemplateHandler(rt.getRestTemplate().getUriTemplateHandler());
+        z.setFilesStreamingOperationsHttpHeaders(null);
+        List<TransferProgress> reports = new CopyOnWriteArrayList<>();
+        z.addTransferProgressListener(reports::add);
+        BandwidthSettings bs = new BandwidthSettings();
+        bs.setGlobalBytesPerSecond(8L * 1024 * 1024);
+        bs.setPerOperationBytesPerSecond(16L * 1024 * 1024);
+        z.setBandwidthSettings(bs);
+        long size = Files.size(originalFile);
+        long start = System.nanoTime();
+        assertThat(z.postForPath(TEST_URL_FILE_UPLOAD, originalFile, String.class)).isEqualTo("ok");
+        long elapsed = System.nanoTime() - start;
+        //the burst goes at once, the rest at 8MB/s
+        assertThat(elapsed).isGreaterThan((size - bs.getBurstBytes()) * 1000000000L / (8L * 1024 * 1024) - 50000000L);
+        TransferProgress last = reports.get(reports.size() - 1);
+        assertThat(last.isUpload()).isTrue();
+        assertThat(last.isDone()).isTrue();
+        assertThat(last.getBytes()).isEqualTo(size);
+        assertThat(last.getTotalBytes()).isEqualTo(size);
+        assertThat(reports.size()).isGreaterThan(2);
+
+        reports.clear();
+        z.setBandwidthSettings(null);
+        Path target = Paths.get("target/test-content-shaped.tmp");
+        z.getForObject(TEST_URL_RANGED_DOWNLOAD, target.toString());
+        last = reports.get(reports.size() - 1);
+        assertThat(last.isUpload()).isFalse();
+        assertThat(last.isDone()).isTrue();
+        assertThat(last.getBytes()).isEqualTo(size);
+        assertThat(Files.readAllBytes(target)).isEqualTo(Files.readAllBytes(originalFile));
+        Files.delete(target);
+    }
+
+    @Test
+    public void testStreamingUploads() throws Exception {
+        Zg2proRestTemplate z = new Zg2proRestTemplate(new SimpleModule());
+        z.setUriTemplateHandler(rt.getRestTemplate().getUriTemplateHandler());
+        z.setFilesStreamingOperationsHttpHeaders(null);
+        byte[] original = Files.readAllBytes(originalFile);
+        Path target = Paths.get("target/test-content-streamed.tmp");
+        //chunked
+        assertThat(z.postForInputStream(TEST_URL_FILE_UPLOAD, new ByteArrayInputStream(original), String.class))
+                .isEqualTo("ok");
+        z.getForObject(TEST_URL_FILE_DOWNLOAD, target.toString());
+        assertThat(Files.readAllBytes(target)).isEqualTo(original);
+        //fixed length, transferTo
+        try (FileChannel fc = FileChannel.open(originalFile, StandardOpenOption.READ)) {
+            fc.position(1000);
+            assertThat(z.postForChannel(TEST_URL_FILE_UPLOAD, fc, original.length - 1000, String.class))
+                    .isEqualTo("ok");
+        }
+        z.getForObject(TEST_URL_FILE_DOWNLOAD, target.toString());
+        assertThat(Files.readAllBytes(target)).isEqualTo(Arrays.copyOfRange(original, 1000, original.length));
+        //a slice of the channel, which is consumed
+        try (FileChannel fc = FileChannel.open(originalFile, StandardOpenOption.READ)) {
+            fc.position(1000);
+            assertThat(z.postForChannel(TEST_URL_FILE_UPLOAD, fc, 5000, String.class)).isEqualTo("ok");
+            assertThat(fc.position()).isEqualTo(6000);
+        }
+        z.getForObject(TEST_URL_FILE_DOWNLOAD, target.toString());
+        assertThat(Files.readAllBytes(target)).isEqualTo(Arrays.copyOfRange(original, 1000, 6000));
+        ReadableByteChannel in = Channels.newChannel(new ByteArrayInputStream(original));
+        assertThat(z.postForChannel(TEST_URL_FILE_UPLOAD, in, 3000, String.class)).isEqualTo("ok");
+        z.getForObject(TEST_URL_FILE_DOWNLOAD, target.toString());
+        assertThat(Files.readAllBytes(target)).isEqualTo(Arrays.copyOf(original, 3000));
+        //generated while sent
+        assertThat(z.postForWriter(TEST_URL_FILE_UPLOAD, os -> {
+            for (int i = 0; i < 1000; i++) {
+                os.write(("line " + i + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        }, String.class)).isEqualTo("ok");
+        z.getForObject(TEST_URL_FILE_DOWNLOAD, target.toString());
+        assertThat(Files.readAllLines(target).size()).isEqualTo(1000);
+        Files.delete(target);
+    }
+
+    @Test
+    public void testTeeDownload() throws Exception {
+        Zg2proRestTemplate z = new Zg2proRestTemplate(new SimpleModule());
+        z.setUriTemplateHandler(rt.getRestTemplate().getUriTemplateHandler());
+        z.setFilesStreamingOperationsHttpHeaders(null);
+        byte[] original = Files.readAllBytes(originalFile);
+        ByteArrayOutputStream chunks = new ByteArrayOutputStream();
+        ByteArrayOutputStream channel = new ByteArrayOutputStream();
+        AtomicInteger parsed = new AtomicInteger();
+        Path target = Paths.get("target/test-content-tee.tmp");
+        z.getForObjectAndTee(TEST_URL_RANGED_DOWNLOAD, target.toString(),
+                DownloadTee.of(chunk -> {
+                    byte[] bytes = new byte[chunk.remaining()];
+                    chunk.get(bytes);
+                    chunks.write(bytes, 0, bytes.length);
+                }),
+                DownloadTee.of(Channels.newChannel(channel)),
+                //reads by small pieces
+                DownloadTee.ofParser(in -> {
+                    byte[] buffer = new byte[1000];
+                    int read;
+                    while ((read = in.read(buffer)) >= 0) {
+                        parsed.addAndGet(read);
+                    }
+                }),
+                //stops early
+                DownloadTee.ofParser(in -> in.read()));
+        assertThat(Files.readAllBytes(target)).isEqualTo(original);
+        assertThat(chunks.toByteArray()).isEqualTo(original);
+        assertThat(channel.toByteArray()).isEqualTo(original);
+        assertThat(parsed.get()).isEqualTo(original.length);
+        try {
+            z.getForObjectAndTee(TEST_URL_RANGED_DOWNLOAD, target.toString(), DownloadTee.of(chunk -> {
+                throw new IllegalStateException("tee failure");
+            }));
+            fail("the tee failure should be thrown");
+        } catch (IllegalStateException ise) {
+            assertThat(Files.readAllBytes(target)).isEqualTo(original);
+        }
+        Files.delete(target);
+    }
+
+    /**
+     * a response whose connection drops after some bytes
+     */
+    private static class CutResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse response;
+        private final long cutAfter;
+
+        CutResponse(ClientHttpResponse response, long cutAfter) {
+            this.response = response;
+            this.cutAfter = cutAfter;
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return new FilterInputStream(response.getBody()) {
+                private long count;
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    if (count >= cutAfter) {
+                        throw new IOException("connection reset");
+                    }
+                    int read = super.read(b, off, (int) Math.min(len, cutAfter - count));
+                    count += Math.max(read, 0);
+                    return read;
+                }
+            };
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return response.getHeaders();
+        }
+
+        @Override
+        public HttpStatus getStatusCode() throws IOException {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public int getRawStatusCode() throws IOException {
+            return response.getRawStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return response.getStatusText();
+        }
+
+        @Override
+        public void close() {
+            response.close();
+        }
+    }
+
+
+    @Test
+    public void testJsonStream() throws Exception {
+        Zg2proRestTemplate z = new Zg2proRestTemplate(new SimpleModule());
+        z.setUriTemplateHandler(rt.getRestTemplate().getUriTemplateHandler());
+        z.setFilesStreamingOperationsHttpHeaders(null);
+        for (String format : Arrays.asList("array", "ndjson")) {
+            AtomicInteger expected = new AtomicInteger();
+            try (Stream<ReturnedStructure> elements = z.getForStream(TEST_URL_JSON_STREAM
+                    + "?count=5000&format=" + format, ReturnedStructure.class)) {
+                elements.forEach(rs -> {
+                    int i = expected.getAndIncrement();
+                    assertThat(rs.getFieldOne()).isEqualTo(i);
+                    assertThat(rs.getFieldTwo()).isEqualTo("element " + i);
+                    assertThat(rs.getFieldThree()).isEqualTo(i / 2.0);
+                });
+            }
+            assertThat(expected.get()).isEqualTo(5000);
+        }
+        //stopping early closes the connection with the stream
+        try (Stream<ReturnedStructure> elements = z.getForStream(TEST_URL_JSON_STREAM + "?count=5000",
+                ReturnedStructure.class, JsonStreamFormat.ARRAY)) {
+            Iterator<ReturnedStructure> it = elements.iterator();
+            assertThat(it.next().getFieldOne()).isEqualTo(0);
+            assertThat(it.next().getFieldOne()).isEqualTo(1);
+        }
+        try (Stream<ReturnedStructure> elements = z.getForStream(TEST_URL_JSON_STREAM + "?count=0",
+                ReturnedStructure.class)) {
+            assertThat(elements.count()).isEqualTo(0L);
+        }
+        try (Stream<ReturnedStructure> elements = z.getForStream(TEST_URL_JSON_STREAM + "?count=3&format=ndjson",
+                ReturnedStructure.class, JsonStreamFormat.ARRAY)) {
+            elements.count();
+            fail("ndjson is not an array");
+        } catch (RestClientException rce) {
+            assertThat(rce.getMessage()).contains("not a JSON array");
+        }
+    }
+
+    private static Stream<ReturnedStructure> structures(int count) {
+        return IntStream.range(0, count).mapToObj(i -> {
+            ReturnedStructure rs = new ReturnedStructure();
+            rs.setFieldOne(i);
+            rs.setFieldTwo("element " + i);
+            return rs;
+        });
+    }
+
+    @Test
+    public void testJsonStreamUpload() throws Exception {
+        Zg2proRestTemplate z = new Zg2proRestTemplate(new SimpleModule());
+        z.setUriTemplateHandler(rt.getRestTemplate().getUriTemplateHandler());
+        z.setFilesStreamingOperationsHttpHeaders(null);
+        assertThat(z.postForJsonStream(TEST_URL_JSON_STREAM_UPLOAD, structures(20000),
+                JsonStreamFormat.ARRAY, String.class)).isEqualTo("20000 chunked json");
+        assertThat(z.postForJsonStream(TEST_URL_JSON_STREAM_UPLOAD, structures(20000).iterator(),
+                JsonStreamFormat.NDJSON, String.class)).isEqualTo("20000 chunked x-ndjson");
+        assertThat(z.postForJsonStream(TEST_URL_JSON_STREAM_UPLOAD, structures(0),
+                JsonStreamFormat.AUTO, String.class)).isEqualTo("0 chunked json");
+    }
+
+    private static int countElements(Stream<ReturnedStructure> elements) {
+        AtomicInteger expected = new AtomicInteger();
+        elements.forEach(rs -> {
+            int i = expected.getAndIncrement();
+            assertThat(rs.getFieldOne()).isEqualTo(i);
+            assertThat(rs.getFieldTwo()).isEqualTo("element " + i);
+        });
+        return expected.get();
+    }
+
+    @Test
+    public void testServerJsonStream() throws Exception {
+        Zg2proRestTemplate z = new Zg2proRestTemplate(new SimpleModule());
+        z.setUriTemplateHandler(rt.getRestTemplate().getUriTemplateHandler());
+        z.setFilesStreamingOperationsHttpHeaders(null);
+        try (Stream<ReturnedStructure> elements = z.getForStream(TEST_URL_SERVER_STREAM + "?count=20000",
+                ReturnedStructure.class, JsonStreamFormat.ARRAY)) {
+            assertThat(countElements(elements)).isEqualTo(20000);
+        }
+        try (Stream<ReturnedStructure> elements = z.getForStream(TEST_URL_SERVER_CURSOR + "?count=20000",
+                ReturnedStructure.class, JsonStreamFormat.NDJSON)) {
+            assertThat(countElements(elements)).isEqualTo(20000);
+        }
+        try (Stream<ReturnedStructure> elements = z.getForStream(TEST_URL_SERVER_STREAM + "?count=0",
+                ReturnedStructure.class)) {
+            assertThat(elements.count()).isEqualTo(0L);
+        }
+        //nothing written yet, the exceptions handler replies
+        try {
+            z.getForStream(TEST_URL_SERVER_STREAM + "?count=10&failAt=0", ReturnedStructure.class).close();
+            fail("the error should be replied");
+        } catch (RestTemplateException | RestClientException e) {
+            //no element was received
+        }
+        //the elements received can not be taken for the whole result
+        for (String url : Arrays.asList(TEST_URL_SERVER_STREAM, TEST_URL_SERVER_CURSOR)) {
+            AtomicInteger received = new AtomicInteger();
+            try (Stream<ReturnedStructure> elements = z.getForStream(url + "?count=20000&failAt=15000",
+                    ReturnedStructure.class)) {
+                elements.forEach(rs -> received.incrementAndGet());
+                fail("the failure should be seen by the client");
+            } catch (RestClientException rce) {
+                assertThat(received.get()).isEqualTo(15000);
+            }
+        }
+    }
+
+    @Autowired
+    private JsonStreamTestController jsonStreamTestController;
+
+    /**
+     * a listing of about 1.5GB given up after a few elements: the connection
+     * is cut, the rest is not downloaded
+     */
+    @Test
+    public void testJsonStreamClosedEarly() throws Exception {
+        Zg2proRestTemplate pooled = new Zg2proRestTemplate(new SimpleModule(), new ConnectionPoolSettings());
+        for (Zg2proRestTemplate z : Arrays.asList(new Zg2proRestTemplate(new SimpleModule()), pooled)) {
+            z.setUriTemplateHandler(rt.getRestTemplate().getUriTemplateHandler());
+            z.setFilesStreamingOperationsHttpHeaders(null);
+            long before = jsonStreamTestController.getEmitted();
+            long start = System.nanoTime();
+            try (Stream<ReturnedStructure> elements = z.getForStream(TEST_URL_SERVER_CURSOR + "?count=20000000",
+                    ReturnedStructure.class, JsonStreamFormat.NDJSON)) {
+                Iterator<ReturnedStructure> it = elements.iterator();
+                for (int i = 0; i < 10; i++) {
+                    assertThat(it.next().getFieldOne()).isEqualTo(i);
+                }
+            }
+            assertThat(System.nanoTime() - start).isLessThan(5_000_000_000L);
+            //the server stops once its writes fail
+            long emitted;
+            long previous = -1;
+            do {
+                Thread.sleep(200);
+                emitted = jsonStreamTestController.getEmitted();
+                assertThat(emitted - before).isLessThan(20000000L);
+            } while (emitted != previous && (previous = emitted) >= 0);
+        }
+        pooled.destroy();
+    }
 }
@@ -0,0 +1,153 @@
+package com.github.zg2pro.spring.rest.basis.transfer;
+
+import com.github.zg2pro.spring.rest.basis.MockedControllers;
+import static com.github.zg2pro.spring.rest.basis.MockedControllers.TEST_URL_FILE_UPLOAD;
+import static com.github.zg2pro.spring.rest.basis.MockedControllers.TEST_URL_RANGED_DOWNLOAD;
+import com.github.zg2pro.spring.rest.basis.pool.ConnectionPoolSettings;
+import com.github.zg2pro.spring.rest.basis.template.Zg2proRestTemplate;
+import com.github.zg2pro.spring.rest.basis.template.Zg2proRestTemplateBuilder;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.LocalHostUriTemplateHandler;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.test.context.junit4.SpringRunner;
+
+/**
+ * Spring boot server (tomcat embedded) runner
+ *
+ * @author zg2pro
+ */
+@RunWith(MockitoJUnitRunner.class)
+@EnableAutoConfiguration
+@Configuration
+class ApplicationBoot {
+
+    @Bean
+    public MockedControllers mockedControllers() {
+        return new MockedControllers();
+    }
+
+    @Bean
+    @Primary
+    public TestRestTemplate zg2TestRestTemplate(Environment environment) {
+        TestRestTemplate trt = new TestRestTemplate(new Zg2proRestTemplateBuilder(new Zg2proRestTemplate()));
+        trt.setUriTemplateHandler(new LocalHostUriTemplateHandler(environment));
+        return trt;
+    }
+
+}
+
+/**
+ *
+ * unit tests about the transfer manager
+ *
+ * @author zg2pro
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(
+        classes = {ApplicationBoot.class},
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class TransferTest {
+
+    @Autowired
+    private TestRestTemplate rt;
+
+    @Test
+    public void testTransferManager() throws Exception {
+        Zg2proRestTemplate pooled = new Zg2proRestTemplate(new SimpleModule(), new ConnectionPoolSettings());
+        pooled.setUriTemplateHandler(rt.getRestTemplate().getUriTemplateHandler());
+        pooled.setFilesStreamingOperationsHttpHeaders(null);
+        TransferManagerSettings tms = new TransferManagerSettings();
+        tms.setMaxPerHost(2);
+        tms.setMaxAttempts(2);
+        tms.setInitialBackoff(10);
+        TransferManager manager = new TransferManager(pooled, tms);
+        Path original = new File(getClass().getClassLoader()
+                .getResource(MockedControllers.TEST_RANGED_RESOURCE).getFile()).toPath();
+        List<TransferJob> jobs = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            jobs.add(TransferJob.upload(TEST_URL_FILE_UPLOAD, original, String.class));
+            jobs.add(TransferJob.download(TEST_URL_RANGED_DOWNLOAD, Paths.get("target/test-transfer-" + i + ".tmp")));
+        }
+        jobs.add(TransferJob.download("/missing", Paths.get("target/test-transfer-missing.tmp")));
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicInteger retries = new AtomicInteger();
+        AtomicInteger progressed = new AtomicInteger();
+        TransferReport report = manager.submit(jobs, new TransferListener() {
+            @Override
+            public void onStarted(TransferJob job) {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            }
+
+            @Override
+            public void onRetry(TransferJob job, int attempt, Throwable failure) {
+                retries.incrementAndGet();
+            }
+
+            @Override
+            public void onCompleted(TransferOutcome outcome, TransferReport progress) {
+                running.decrementAndGet();
+                progressed.incrementAndGet();
+            }
+        }).get(60, TimeUnit.SECONDS);
+        assertThat(maxRunning.get()).isLessThanOrEqualTo(2);
+        assertThat(progressed.get()).isEqualTo(9);
+        assertThat(retries.get()).isEqualTo(1);
+        assertThat(report.isDone()).isTrue();
+        assertThat(report.getSucceeded()).isEqualTo(8);
+        assertThat(report.getFailed()).isEqualTo(1);
+        assertThat(report.getBytes()).isEqualTo(8 * Files.size(original));
+        assertThat(report.getOutcomes().get(0).getResult()).isEqualTo("ok");
+        TransferOutcome missing = report.getOutcomes().get(8);
+        assertThat(missing.isSucceeded()).isFalse();
+        assertThat(missing.getAttempts()).isEqualTo(2);
+        for (int i = 0; i < 4; i++) {
+            Path downloaded = (Path) report.getOutcomes().get(2 * i + 1).getResult();
+            assertThat(Files.readAllBytes(downloaded)).isEqualTo(Files.readAllBytes(original));
+            Files.delete(downloaded);
+        }
+        manager.destroy();
+        pooled.destroy();
+    }
+
+    @Test
+    public void testTransferManagerRejected() throws Exception {
+        Zg2proRestTemplate z = new Zg2proRestTemplate();
+        z.setUriTemplateHandler(rt.getRestTemplate().getUriTemplateHandler());
+        ExecutorService stopped = Executors.newSingleThreadExecutor();
+        stopped.shutdown();
+        TransferManagerSettings tms = new TransferManagerSettings();
+        tms.setExecutor(stopped);
+        TransferManager manager = new TransferManager(z, tms);
+        List<TransferJob> jobs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            jobs.add(TransferJob.download(TEST_URL_RANGED_DOWNLOAD, Paths.get("target/test-rejected-" + i + ".tmp")));
+        }
+        TransferReport report = manager.submit(jobs).get(10, TimeUnit.SECONDS);
+        assertThat(report.getFailed()).isEqualTo(3);
+        assertThat(report.getOutcomes().get(0).getFailure()).isInstanceOf(RejectedExecutionException.class);
+    }
+
+}